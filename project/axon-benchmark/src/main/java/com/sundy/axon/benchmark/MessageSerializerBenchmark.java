@@ -0,0 +1,63 @@
+package com.sundy.axon.benchmark;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sundy.axon.domain.EventMessage;
+import com.sundy.axon.domain.GenericEventMessage;
+import com.sundy.axon.serializer.MessageSerializer;
+import com.sundy.axon.serializer.SerializedObject;
+
+/**
+ * 通过{@link MessageSerializer}完整地序列化事件消息的负载和元数据，再反序列化回来。
+ * 表现形式为InputStream时，序列化和反序列化都需要经过ChainingConverterFactory的转换
+ * @author Administrator
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MessageSerializerBenchmark {
+
+	@Param({ "JAVA", "XSTREAM", "JACKSON", "BINARY" })
+	private SerializerType serializerType;
+
+	@Param({ "byte[]", "InputStream" })
+	private String representation;
+
+	private MessageSerializer messageSerializer;
+	private Class<?> representationType;
+	private EventMessage<?> message;
+
+	@Setup
+	public void setUp() {
+		messageSerializer = new MessageSerializer(serializerType.create());
+		representationType = "InputStream".equals(representation) ? InputStream.class : byte[].class;
+		message = new GenericEventMessage<Object>(Payloads.orderPlaced(5), Payloads.metaData());
+	}
+
+	@Benchmark
+	public void roundTrip(Blackhole blackhole) {
+		SerializedObject<?> payload = messageSerializer.serializePayload(message, representationType);
+		SerializedObject<?> metaData = messageSerializer.serializeMetaData(message, representationType);
+		blackhole.consume(messageSerializer.deserialize(payload));
+		blackhole.consume(messageSerializer.deserialize(metaData));
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.sundy.axon.benchmark;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.sundy.axon.domain.MetaData;
+
+/**
+ * 基准测试使用的事件和元数据。事件类同时满足所有序列化器的要求：实现了Serializable，并且提供了无参构造函数和getter/setter
+ * @author Administrator
+ *
+ */
+public final class Payloads {
+
+	public static final String EVENT = "event";
+	public static final String META_DATA = "metaData";
+
+	private Payloads() {
+	}
+
+	/**
+	 * @param type 负载的名称，见{@link #EVENT}和{@link #META_DATA}
+	 */
+	public static Object create(String type) {
+		if (EVENT.equals(type)) {
+			return orderPlaced(5);
+		} else if (META_DATA.equals(type)) {
+			return metaData();
+		}
+		throw new IllegalArgumentException("Unknown payload type " + type);
+	}
+
+	/**
+	 * 一个典型的领域事件：订单及其若干订单行
+	 */
+	public static OrderPlacedEvent orderPlaced(int lineCount) {
+		OrderPlacedEvent event = new OrderPlacedEvent();
+		event.setOrderId(UUID.nameUUIDFromBytes("order".getBytes()).toString());
+		event.setCustomerId("customer-4711");
+		event.setPlacedAt(1400000000000L);
+		event.setExpress(true);
+		event.setCurrency("EUR");
+		List<OrderLine> lines = new ArrayList<OrderLine>();
+		for (int i = 0; i < lineCount; i++) {
+			OrderLine line = new OrderLine();
+			line.setProductId("product-" + i);
+			line.setDescription("A product description of moderate length #" + i);
+			line.setQuantity(i + 1);
+			line.setUnitPriceInCents(1999L * (i + 1));
+			lines.add(line);
+		}
+		event.setLines(lines);
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("channel", "web");
+		attributes.put("campaign", "spring-sale");
+		event.setAttributes(attributes);
+		return event;
+	}
+
+	/**
+	 * 典型的消息元数据：关联标识、用户和跟踪信息
+	 */
+	public static MetaData metaData() {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		values.put("correlationId", UUID.nameUUIDFromBytes("correlation".getBytes()).toString());
+		values.put("traceId", UUID.nameUUIDFromBytes("trace".getBytes()).toString());
+		values.put("userId", "user-42");
+		values.put("tenant", "acme");
+		values.put("retries", 0);
+		return MetaData.from(values);
+	}
+
+	public static class OrderPlacedEvent implements Serializable {
+
+		private static final long serialVersionUID = 2735918532497150471L;
+
+		private String orderId;
+		private String customerId;
+		private long placedAt;
+		private boolean express;
+		private String currency;
+		private List<OrderLine> lines;
+		private Map<String, String> attributes;
+
+		public String getOrderId() {
+			return orderId;
+		}
+
+		public void setOrderId(String orderId) {
+			this.orderId = orderId;
+		}
+
+		public String getCustomerId() {
+			return customerId;
+		}
+
+		public void setCustomerId(String customerId) {
+			this.customerId = customerId;
+		}
+
+		public long getPlacedAt() {
+			return placedAt;
+		}
+
+		public void setPlacedAt(long placedAt) {
+			this.placedAt = placedAt;
+		}
+
+		public boolean isExpress() {
+			return express;
+		}
+
+		public void setExpress(boolean express) {
+			this.express = express;
+		}
+
+		public String getCurrency() {
+			return currency;
+		}
+
+		public void setCurrency(String currency) {
+			this.currency = currency;
+		}
+
+		public List<OrderLine> getLines() {
+			return lines;
+		}
+
+		public void setLines(List<OrderLine> lines) {
+			this.lines = lines;
+		}
+
+		public Map<String, String> getAttributes() {
+			return attributes;
+		}
+
+		public void setAttributes(Map<String, String> attributes) {
+			this.attributes = attributes;
+		}
+	}
+
+	public static class OrderLine implements Serializable {
+
+		private static final long serialVersionUID = -4377412150532318235L;
+
+		private String productId;
+		private String description;
+		private int quantity;
+		private long unitPriceInCents;
+
+		public String getProductId() {
+			return productId;
+		}
+
+		public void setProductId(String productId) {
+			this.productId = productId;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public void setDescription(String description) {
+			this.description = description;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public void setQuantity(int quantity) {
+			this.quantity = quantity;
+		}
+
+		public long getUnitPriceInCents() {
+			return unitPriceInCents;
+		}
+
+		public void setUnitPriceInCents(long unitPriceInCents) {
+			this.unitPriceInCents = unitPriceInCents;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.sundy.axon.benchmark;
+
+import com.sundy.axon.serializer.Serializer;
+
+/**
+ * 打印每个序列化器序列化事件和元数据后的字节数，与吞吐量的基准测试结果一起用于比较存储格式
+ * @author Administrator
+ *
+ */
+public final class SerializedSizeReport {
+
+	private SerializedSizeReport() {
+	}
+
+	public static void main(String[] args) {
+		System.out.printf("%-10s %10s %10s%n", "serializer", Payloads.EVENT, Payloads.META_DATA);
+		for (SerializerType type : SerializerType.values()) {
+			Serializer serializer = type.create();
+			System.out.printf("%-10s %10d %10d%n", type,
+					serializer.serialize(Payloads.create(Payloads.EVENT), byte[].class).getData().length,
+					serializer.serialize(Payloads.create(Payloads.META_DATA), byte[].class).getData().length);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.sundy.axon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.Serializer;
+
+/**
+ * 直接调用{@link Serializer}序列化和反序列化事件与元数据的吞吐量。使用<code>-prof gc</code>运行可以得到每次操作分配的内存
+ * @author Administrator
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SerializerBenchmark {
+
+	@Param({ "JAVA", "XSTREAM", "JACKSON", "BINARY" })
+	private SerializerType serializerType;
+
+	@Param({ Payloads.EVENT, Payloads.META_DATA })
+	private String payloadType;
+
+	private Serializer serializer;
+	private Object payload;
+	private SerializedObject<byte[]> serialized;
+
+	@Setup
+	public void setUp() {
+		serializer = serializerType.create();
+		payload = Payloads.create(payloadType);
+		serialized = serializer.serialize(payload, byte[].class);
+	}
+
+	@Benchmark
+	public SerializedObject<byte[]> serialize() {
+		return serializer.serialize(payload, byte[].class);
+	}
+
+	@Benchmark
+	public Object deserialize() {
+		return serializer.deserialize(serialized);
+	}
+
+}
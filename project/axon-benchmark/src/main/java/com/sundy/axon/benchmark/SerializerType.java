@@ -0,0 +1,44 @@
+package com.sundy.axon.benchmark;
+
+import com.sundy.axon.serializer.JavaSerializer;
+import com.sundy.axon.serializer.Serializer;
+import com.sundy.axon.serializer.binary.BinarySerializer;
+import com.sundy.axon.serializer.json.JacksonSerializer;
+import com.sundy.axon.serializer.xml.XStreamSerializer;
+
+/**
+ * 参与比较的序列化器，名称用作JMH的参数值
+ * @author Administrator
+ *
+ */
+public enum SerializerType {
+
+	JAVA {
+		@Override
+		public Serializer create() {
+			return new JavaSerializer();
+		}
+	},
+	XSTREAM {
+		@Override
+		public Serializer create() {
+			return new XStreamSerializer();
+		}
+	},
+	JACKSON {
+		@Override
+		public Serializer create() {
+			return new JacksonSerializer();
+		}
+	},
+	BINARY {
+		@Override
+		public Serializer create() {
+			BinarySerializer serializer = new BinarySerializer();
+			serializer.addAllowedPackage(Payloads.class.getPackage().getName());
+			return serializer;
+		}
+	};
+
+	public abstract Serializer create();
+}
@@ -0,0 +1,226 @@
+package com.sundy.axon.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * 为声明了处理方法的类生成com.sundy.axon.common.annotation.HandlerIndex的实现。
+ * 生成的类与被索引的类在同一个包中，名称为被索引类的二进制名称加上"$$HandlerIndex"后缀，列出该类自己声明的、带有被处理注解的方法
+ * <p/>
+ * 默认处理@CommandHandler和@SagaEventHandler，其它的处理注解可以通过axon.handlerAnnotations选项(逗号分隔的全限定名称)添加。
+ * 该处理器只依赖注解的名称，不依赖axon本身
+ * <p/>
+ * 生成的索引还包含该类声明的所有方法的指纹，计算方式必须与com.sundy.axon.common.annotation.HandlerIndexes#fingerprintOf保持一致
+ * @author Administrator
+ *
+ */
+@SupportedOptions(HandlerIndexProcessor.HANDLER_ANNOTATIONS_OPTION)
+public class HandlerIndexProcessor extends AbstractProcessor {
+
+	static final String HANDLER_ANNOTATIONS_OPTION = "axon.handlerAnnotations";
+	private static final String INDEX_SUFFIX = "$$HandlerIndex";
+	private static final String INDEX_INTERFACE = "com.sundy.axon.common.annotation.HandlerIndex";
+	private static final List<String> DEFAULT_ANNOTATIONS = Arrays.asList(
+			"com.sundy.axon.commandhandling.annotation.CommandHandler",
+			"com.sundy.axon.saga.annotation.SagaEventHandler");
+
+	private final Set<String> indexedTypes = new HashSet<String>();
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		Set<String> annotations = new LinkedHashSet<String>(DEFAULT_ANNOTATIONS);
+		String configured = processingEnv == null ? null : processingEnv.getOptions().get(HANDLER_ANNOTATIONS_OPTION);
+		if (configured != null) {
+			for (String annotation : configured.split(",")) {
+				if (annotation.trim().length() > 0) {
+					annotations.add(annotation.trim());
+				}
+			}
+		}
+		return annotations;
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<String> handlerAnnotations = getSupportedAnnotationTypes();
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.METHOD) {
+					continue;
+				}
+				TypeElement type = (TypeElement) element.getEnclosingElement();
+				String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+				if (indexedTypes.add(binaryName)) {
+					writeIndex(type, binaryName, handlerAnnotations);
+				}
+			}
+		}
+		return false;
+	}
+
+	private void writeIndex(TypeElement type, String binaryName, Set<String> handlerAnnotations) {
+		PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		String indexName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+				+ INDEX_SUFFIX;
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("// Generated by ").append(getClass().getName()).append(". Do not edit.\n");
+		source.append("public final class ").append(indexName).append(" implements ").append(INDEX_INTERFACE)
+				.append(" {\n\n");
+		source.append("    public String[] indexedAnnotations() {\n");
+		source.append("        return new String[] {");
+		appendStrings(source, handlerAnnotations);
+		source.append("};\n    }\n\n");
+		source.append("    public String[][] handlerMethods() {\n");
+		source.append("        return new String[][] {\n");
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			if (isHandler(method, handlerAnnotations)) {
+				source.append("            {\"").append(method.getSimpleName()).append('"');
+				for (VariableElement parameter : method.getParameters()) {
+					source.append(", \"").append(binaryNameOf(parameter.asType())).append('"');
+				}
+				source.append("},\n");
+			}
+		}
+		source.append("        };\n    }\n\n");
+		source.append("    public String fingerprint() {\n");
+		source.append("        return \"").append(fingerprintOf(type)).append("\";\n    }\n}\n");
+		try {
+			Writer writer = processingEnv.getFiler()
+					.createSourceFile(packageName.isEmpty() ? indexName : packageName + "." + indexName, type)
+					.openWriter();
+			try {
+				writer.write(source.toString());
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Unable to write the handler index for " + binaryName + ": " + e.getMessage(), type);
+		}
+	}
+
+	/**
+	 * 计算给定类声明的方法的指纹：每个方法表示为"名称(参数类型的二进制名称,...)"，排序后用换行符连接，
+	 * 指纹为"方法个数:连接后字符串的hashCode的十六进制表示"
+	 */
+	private String fingerprintOf(TypeElement type) {
+		List<String> signatures = new ArrayList<String>();
+		for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+			StringBuilder signature = new StringBuilder(method.getSimpleName()).append('(');
+			boolean first = true;
+			for (VariableElement parameter : method.getParameters()) {
+				if (!first) {
+					signature.append(',');
+				}
+				signature.append(binaryNameOf(parameter.asType()));
+				first = false;
+			}
+			signatures.add(signature.append(')').toString());
+		}
+		Collections.sort(signatures);
+		StringBuilder joined = new StringBuilder();
+		for (String signature : signatures) {
+			if (joined.length() > 0) {
+				joined.append('\n');
+			}
+			joined.append(signature);
+		}
+		return signatures.size() + ":" + Integer.toHexString(joined.toString().hashCode());
+	}
+
+	private static boolean isHandler(ExecutableElement method, Set<String> handlerAnnotations) {
+		for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (handlerAnnotations.contains(annotationType.getQualifiedName().toString())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void appendStrings(StringBuilder source, Set<String> values) {
+		boolean first = true;
+		for (String value : values) {
+			if (!first) {
+				source.append(", ");
+			}
+			source.append('"').append(value).append('"');
+			first = false;
+		}
+	}
+
+	/**
+	 * 返回给定类型擦除后的名称，格式与Class.getName()相同
+	 */
+	private String binaryNameOf(TypeMirror type) {
+		TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+		if (erased.getKind().isPrimitive()) {
+			return erased.toString();
+		}
+		if (erased.getKind() == TypeKind.ARRAY) {
+			return "[" + descriptorOf(((ArrayType) erased).getComponentType());
+		}
+		return processingEnv.getElementUtils()
+				.getBinaryName((TypeElement) processingEnv.getTypeUtils().asElement(erased)).toString();
+	}
+
+	private String descriptorOf(TypeMirror type) {
+		TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+		switch (erased.getKind()) {
+			case BOOLEAN:
+				return "Z";
+			case BYTE:
+				return "B";
+			case SHORT:
+				return "S";
+			case CHAR:
+				return "C";
+			case INT:
+				return "I";
+			case LONG:
+				return "J";
+			case FLOAT:
+				return "F";
+			case DOUBLE:
+				return "D";
+			case ARRAY:
+				return "[" + descriptorOf(((ArrayType) erased).getComponentType());
+			default:
+				return "L" + binaryNameOf(erased) + ";";
+		}
+	}
+
+}
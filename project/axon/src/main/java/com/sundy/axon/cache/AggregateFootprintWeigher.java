@@ -0,0 +1,69 @@
+package com.sundy.axon.cache;
+
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.domain.AggregateRoot;
+import com.sundy.axon.serializer.Serializer;
+
+/**
+ * 以字节为单位估算缓存值(一般是聚合)占用内存大小的{@link Weigher}
+ * <p/>
+ * 给定了{@link Serializer}时，使用值序列化后的长度作为权重，这种方式比较准确，但是每次放入缓存都需要序列化一次。
+ * 否则对于聚合，按照构成聚合的事件个数估算：基础大小加上(已提交的版本号 + 1 + 未提交的事件个数) 乘以每个事件的估算大小，
+ * 其他类型的值只计算基础大小
+ * @author Administrator
+ *
+ */
+public class AggregateFootprintWeigher implements Weigher {
+
+	private static final int DEFAULT_BASE_SIZE = 256;
+	private static final int DEFAULT_BYTES_PER_EVENT = 128;
+
+	private final Serializer serializer;
+	private final int baseSize;
+	private final int bytesPerEvent;
+
+	/**
+	 * 使用默认的基础大小(256字节)和每个事件的估算大小(128字节)按照事件个数估算
+	 */
+	public AggregateFootprintWeigher() {
+		this(DEFAULT_BASE_SIZE, DEFAULT_BYTES_PER_EVENT);
+	}
+
+	/**
+	 * 按照事件个数估算
+	 * @param baseSize 每个值的基础大小
+	 * @param bytesPerEvent 每个事件对聚合大小的估算贡献
+	 */
+	public AggregateFootprintWeigher(int baseSize, int bytesPerEvent) {
+		Assert.isTrue(baseSize >= 0 && bytesPerEvent >= 0, "sizes may not be negative");
+		this.serializer = null;
+		this.baseSize = baseSize;
+		this.bytesPerEvent = bytesPerEvent;
+	}
+
+	/**
+	 * 使用给定序列化器序列化后的长度作为权重
+	 * @param serializer
+	 */
+	public AggregateFootprintWeigher(Serializer serializer) {
+		Assert.notNull(serializer, "serializer may not be null");
+		this.serializer = serializer;
+		this.baseSize = 0;
+		this.bytesPerEvent = 0;
+	}
+
+	@Override
+	public int weigh(Object key, Object value) {
+		if (serializer != null) {
+			return serializer.serialize(value, byte[].class).getData().length;
+		}
+		if (value instanceof AggregateRoot) {
+			AggregateRoot<?> aggregate = (AggregateRoot<?>) value;
+			Long version = aggregate.getVersion();
+			long events = (version == null ? 0 : version + 1) + aggregate.getUncommittedEventCount();
+			return (int) Math.min(Integer.MAX_VALUE, baseSize + events * bytesPerEvent);
+		}
+		return baseSize;
+	}
+
+}
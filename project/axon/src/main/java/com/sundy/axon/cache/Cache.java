@@ -25,6 +25,12 @@ public interface Cache {
 		
 		void onEntryExpired(Object key);
 		
+		/**
+		 * 条目因为缓存容量不足被淘汰时调用。过期(比如超过存活时间或者被垃圾回收)的条目触发{@link #onEntryExpired(Object)}
+		 * @param key
+		 */
+		void onEntryEvicted(Object key);
+		
 		void onEntryRemoved(Object key);
 		
 		void onEntryUpdate(Object key, Object value);
@@ -47,6 +53,13 @@ public interface Cache {
 			
 		}
 
+		/**
+		 * 默认转发给{@link #onEntryExpired(Object)}，只关心条目是否还在缓存中的监听器不需要区分淘汰和过期
+		 */
+		public void onEntryEvicted(Object key) {
+			onEntryExpired(key);
+		}
+
 		public void onEntryRemoved(Object key) {
 			// TODO Auto-generated method stub
 			
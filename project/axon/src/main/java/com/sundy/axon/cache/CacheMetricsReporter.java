@@ -0,0 +1,17 @@
+package com.sundy.axon.cache;
+
+/**
+ * 缓存统计数据的发布接口，监控系统通过实现该接口接收{@link StatisticsCache}的统计快照
+ * @author Administrator
+ *
+ */
+public interface CacheMetricsReporter {
+
+	/**
+	 * 发布给定缓存的统计快照
+	 * @param cacheName 缓存的名称
+	 * @param statistics 统计快照
+	 */
+	void report(String cacheName, CacheStatistics statistics);
+	
+}
@@ -0,0 +1,119 @@
+package com.sundy.axon.cache;
+
+/**
+ * 缓存统计数据在某一时刻的快照，由{@link StatisticsCache#getStatistics()}生成
+ * @author Administrator
+ *
+ */
+public final class CacheStatistics {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long putCount;
+	private final long removalCount;
+	private final long evictionCount;
+	private final long expirationCount;
+	private final long totalReadTime;
+	
+	public CacheStatistics(long hitCount, long missCount, long putCount, long removalCount, long evictionCount,
+			long expirationCount, long totalReadTime) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.putCount = putCount;
+		this.removalCount = removalCount;
+		this.evictionCount = evictionCount;
+		this.expirationCount = expirationCount;
+		this.totalReadTime = totalReadTime;
+	}
+	
+	/**
+	 * 返回命中的次数
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+	
+	/**
+	 * 返回未命中的次数
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+	
+	/**
+	 * 返回成功放入缓存的次数
+	 * @return
+	 */
+	public long getPutCount() {
+		return putCount;
+	}
+	
+	/**
+	 * 返回显式移除条目的次数
+	 * @return
+	 */
+	public long getRemovalCount() {
+		return removalCount;
+	}
+	
+	/**
+	 * 返回条目因为容量不足被淘汰的次数，即底层缓存触发{@link Cache.EntryListener#onEntryEvicted(Object)}的次数
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+	
+	/**
+	 * 返回条目过期的次数，即底层缓存触发{@link Cache.EntryListener#onEntryExpired(Object)}的次数
+	 * @return
+	 */
+	public long getExpirationCount() {
+		return expirationCount;
+	}
+	
+	/**
+	 * 返回所有读取操作({@link Cache#get(Object)}，包括未命中的读取)花费的总时间，单位为纳秒。
+	 * 缓存本身不加载数据，所以这里是读取缓存的延迟，而不是从数据源加载的时间
+	 * @return
+	 */
+	public long getTotalReadTime() {
+		return totalReadTime;
+	}
+	
+	/**
+	 * 返回读取的总次数
+	 * @return
+	 */
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+	
+	/**
+	 * 返回命中率，没有读取时返回1.0
+	 * @return
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		return requestCount == 0 ? 1.0d : (double) hitCount / requestCount;
+	}
+	
+	/**
+	 * 返回每次读取(包括未命中的读取)平均花费的时间，单位为纳秒
+	 * @return
+	 */
+	public double getAverageReadTime() {
+		long requestCount = getRequestCount();
+		return requestCount == 0 ? 0.0d : (double) totalReadTime / requestCount;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("CacheStatistics[hits=%s, misses=%s, puts=%s, removals=%s, evictions=%s, expirations=%s, "
+				+ "hitRate=%.4f]", hitCount, missCount, putCount, removalCount, evictionCount, expirationCount,
+				getHitRate());
+	}
+	
+}
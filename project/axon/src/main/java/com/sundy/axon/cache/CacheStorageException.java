@@ -0,0 +1,17 @@
+package com.sundy.axon.cache;
+
+import com.sundy.axon.common.AxonNonTransientException;
+
+public class CacheStorageException extends AxonNonTransientException {
+
+	private static final long serialVersionUID = -3349218766563125421L;
+
+	public CacheStorageException(String message) {
+        super(message);
+    }
+	
+	public CacheStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+	
+}
@@ -68,7 +68,7 @@ public class EhCacheAdapter extends AbstractCacheAdapter<CacheEventListener> {
 
 		public void notifyElementEvicted(Ehcache ehcache, Element element) {
 			if (ehcache.equals(ehcache)){
-				entryListener.onEntryExpired(element.getObjectKey());
+				entryListener.onEntryEvicted(element.getObjectKey());
 			}
 		}
 
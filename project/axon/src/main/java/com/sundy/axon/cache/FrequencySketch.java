@@ -0,0 +1,100 @@
+package com.sundy.axon.cache;
+
+/**
+ * 基于Count-Min Sketch的访问频率估算器，用于TinyLFU的准入策略
+ * <p/>
+ * 每个计数器只占4位，每个long保存16个计数器。每个元素对应4个计数器，取其中的最小值作为频率的估算值。
+ * 当增加的次数达到采样大小时，所有计数器减半，使得过去的访问频率逐渐衰减
+ * <p/>
+ * 该类不是线程安全的，调用者需要自行同步
+ * @author Administrator
+ *
+ */
+final class FrequencySketch {
+
+	private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+	private static final int MAXIMUM_TABLE_SIZE = 1 << 20;
+	
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int size;
+	
+	/**
+	 * @param expectedEntries 缓存中预计的最大条目数
+	 */
+	FrequencySketch(long expectedEntries) {
+		int length = 16;
+		long target = Math.min(Math.max(expectedEntries, 16), MAXIMUM_TABLE_SIZE);
+		while (length < target) {
+			length <<= 1;
+		}
+		this.table = new long[length];
+		this.tableMask = length - 1;
+		this.sampleSize = 10 * length;
+	}
+	
+	/**
+	 * 返回给定元素被访问频率的估算值，最大为15
+	 */
+	int frequency(Object item) {
+		int hash = spread(item.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+	
+	/**
+	 * 增加给定元素的访问频率
+	 */
+	void increment(Object item) {
+		int hash = spread(item.hashCode());
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++size == sampleSize) {
+			reset();
+		}
+	}
+	
+	private boolean incrementAt(int index, int counter) {
+		int offset = counter << 2;
+		long mask = 0xfL << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+	
+	private void reset() {
+		int odd = 0;
+		for (int i = 0; i < table.length; i++) {
+			odd += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size = (size >>> 1) - (odd >>> 2);
+	}
+	
+	private int indexOf(int item, int i) {
+		long hash = (item + SEED[i]) * SEED[i];
+		hash += hash >>> 32;
+		return ((int) hash) & tableMask;
+	}
+	
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+	
+}
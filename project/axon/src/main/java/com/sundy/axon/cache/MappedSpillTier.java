@@ -0,0 +1,382 @@
+package com.sundy.axon.cache;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sundy.axon.common.AxonConfigurationException;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.Serializer;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+
+/**
+ * {@link TwoTierCache}的溢出层，把序列化后的键和值追加写入一组内存映射的段文件中
+ * <p/>
+ * 每个段文件的头部保存魔数和写入位置，之后是连续的记录：状态(1字节，删除时原地置0)、记录长度、键和值的类型、版本和内容。
+ * 段写满后创建新的段，段的个数超过上限时删除最老的段，其中的条目视为被淘汰。删除前先把段的魔数改为废弃标记。
+ * JDK没有公开的解除内存映射的API，这里也不使用sun.misc.Unsafe，映射在缓冲区被垃圾回收时才会解除。
+ * 文件无法删除时(比如在Windows上仍被映射)，重新打开时会跳过并再次尝试删除被标记为废弃的段。
+ * 重新打开时按顺序扫描所有段来重建内存中的索引
+ * <p/>
+ * 索引是并发的map，{@link #contains(Object)}不加锁。读取和删除记录持有读锁，可以并发执行；
+ * 追加记录、创建和删除段持有写锁
+ * @author Administrator
+ *
+ */
+final class MappedSpillTier {
+
+	private static final Logger logger = LoggerFactory.getLogger(MappedSpillTier.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int MAGIC = 0x41584F4E;
+	static final int OBSOLETE_MAGIC = 0x4F425354;
+	private static final int HEADER_SIZE = 8;
+	private static final int WRITE_POSITION_OFFSET = 4;
+	private static final byte LIVE = 1;
+	private static final byte DELETED = 0;
+	private static final String FILE_PREFIX = "spill-";
+	private static final String FILE_SUFFIX = ".dat";
+
+	private final File directory;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final Serializer serializer;
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+	private final ConcurrentMap<Object, Location> index = new ConcurrentHashMap<Object, Location>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	MappedSpillTier(File directory, int segmentSize, int maxSegments, Serializer serializer) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+		this.serializer = serializer;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new AxonConfigurationException("Cannot create spill directory " + directory.getAbsolutePath());
+		}
+		recover();
+	}
+
+	boolean contains(Object key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * 读取并删除给定键的记录，不存在时返回null
+	 */
+	SerializedObject<byte[]> remove(Object key) {
+		lock.readLock().lock();
+		try {
+			Location location = index.remove(key);
+			if (location == null) {
+				return null;
+			}
+			// 使用独立的position读取，多个读取者可以并发访问同一个段
+			ByteBuffer buffer = location.segment.buffer.duplicate();
+			buffer.position(location.offset + 5);
+			skipSerializedObject(buffer);
+			SerializedObject<byte[]> value = readSerializedObject(buffer);
+			location.segment.buffer.put(location.offset, DELETED);
+			return value;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 写入给定键的记录，覆盖原有的记录
+	 * @return 因为删除最老的段而被丢弃的键，如果记录比一个段还大，返回的列表中包含给定的键
+	 */
+	List<Object> write(Object key, SerializedObject<byte[]> serializedKey,
+			SerializedObject<byte[]> serializedValue) {
+		lock.writeLock().lock();
+		try {
+			delete(key);
+			List<Object> dropped = new ArrayList<Object>();
+			int length = 5 + sizeOf(serializedKey) + sizeOf(serializedValue);
+			if (length > segmentSize - HEADER_SIZE) {
+				dropped.add(key);
+				return dropped;
+			}
+			Segment segment = segments.isEmpty() ? null : segments.getLast();
+			if (segment == null || segment.writePosition + length > segment.buffer.capacity()) {
+				segment = createSegment(segment == null ? 0 : segment.id + 1);
+				while (segments.size() > maxSegments) {
+					dropOldestSegment(dropped);
+				}
+			}
+			int offset = segment.writePosition;
+			MappedByteBuffer buffer = segment.buffer;
+			buffer.position(offset);
+			buffer.put(LIVE);
+			buffer.putInt(length);
+			writeSerializedObject(buffer, serializedKey);
+			writeSerializedObject(buffer, serializedValue);
+			segment.writePosition = offset + length;
+			buffer.putInt(WRITE_POSITION_OFFSET, segment.writePosition);
+			index.put(key, new Location(segment, offset));
+			return dropped;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	void delete(Object key) {
+		lock.readLock().lock();
+		try {
+			Location location = index.remove(key);
+			if (location != null) {
+				location.segment.buffer.put(location.offset, DELETED);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 把所有段的内容强制写入磁盘
+	 */
+	void flush() {
+		lock.readLock().lock();
+		try {
+			for (Segment segment : segments) {
+				segment.buffer.force();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void recover() {
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+			}
+		});
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			long id;
+			try {
+				id = Long.parseLong(file.getName().substring(FILE_PREFIX.length(),
+						file.getName().length() - FILE_SUFFIX.length()));
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			Segment segment = mapSegment(id, file, false);
+			if (segment.buffer.capacity() < HEADER_SIZE) {
+				logger.warn("Ignoring spill file [{}]: it is too small to be a cache spill file", file.getName());
+				continue;
+			}
+			int magic = segment.buffer.getInt(0);
+			if (magic == OBSOLETE_MAGIC) {
+				// 上次删除失败的段，其中的条目已经被淘汰
+				deleteFile(file);
+				continue;
+			}
+			if (magic != MAGIC) {
+				logger.warn("Ignoring spill file [{}]: it is not a cache spill file", file.getName());
+				continue;
+			}
+			int writePosition = segment.buffer.getInt(WRITE_POSITION_OFFSET);
+			if (writePosition < HEADER_SIZE || writePosition > segment.buffer.capacity()) {
+				logger.warn("Spill file segment [{}] has an invalid write position {}", id, writePosition);
+				truncate(segment, HEADER_SIZE);
+			} else {
+				segment.writePosition = writePosition;
+			}
+			segments.add(segment);
+			scan(segment);
+		}
+		while (segments.size() > maxSegments) {
+			dropOldestSegment(new ArrayList<Object>());
+		}
+	}
+
+	/**
+	 * 扫描段中的记录并加入索引。记录头或者记录长度超出写入位置时(比如写入过程中进程崩溃)，从该记录开始截断段
+	 */
+	private void scan(Segment segment) {
+		MappedByteBuffer buffer = segment.buffer;
+		int offset = HEADER_SIZE;
+		while (offset < segment.writePosition) {
+			int length = segment.writePosition - offset < 5 ? -1 : buffer.getInt(offset + 1);
+			if (length < 5 || length > segment.writePosition - offset) {
+				logger.warn("Spill file segment [{}] is corrupt after offset {}", segment.id, offset);
+				truncate(segment, offset);
+				return;
+			}
+			if (buffer.get(offset) == LIVE) {
+				// 读取范围限制在记录内，损坏的记录只会导致该记录被忽略
+				ByteBuffer record = buffer.duplicate();
+				record.limit(offset + length);
+				record.position(offset + 5);
+				try {
+					Object key = serializer.deserialize(readSerializedObject(record));
+					skipSerializedObject(record);
+					Location previous = index.put(key, new Location(segment, offset));
+					if (previous != null) {
+						previous.segment.buffer.put(previous.offset, DELETED);
+					}
+				} catch (RuntimeException e) {
+					logger.warn("Ignoring spilled cache entry that cannot be read: {}", e.getMessage());
+					buffer.put(offset, DELETED);
+				}
+			}
+			offset += length;
+		}
+	}
+
+	private static void truncate(Segment segment, int writePosition) {
+		segment.writePosition = writePosition;
+		segment.buffer.putInt(WRITE_POSITION_OFFSET, writePosition);
+	}
+
+	private Segment createSegment(long id) {
+		File file = new File(directory, String.format("%s%016d%s", FILE_PREFIX, id, FILE_SUFFIX));
+		Segment segment = mapSegment(id, file, true);
+		segment.buffer.putInt(0, MAGIC);
+		segment.writePosition = HEADER_SIZE;
+		segment.buffer.putInt(WRITE_POSITION_OFFSET, HEADER_SIZE);
+		segments.add(segment);
+		return segment;
+	}
+
+	private Segment mapSegment(long id, File file, boolean create) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				long size = create ? segmentSize : raf.length();
+				MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+				return new Segment(id, file, buffer);
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new CacheStorageException("Unable to map spill file " + file.getAbsolutePath(), e);
+		}
+	}
+
+	private void dropOldestSegment(List<Object> dropped) {
+		Segment oldest = segments.removeFirst();
+		Iterator<Map.Entry<Object, Location>> iterator = index.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Object, Location> entry = iterator.next();
+			if (entry.getValue().segment == oldest) {
+				dropped.add(entry.getKey());
+				iterator.remove();
+			}
+		}
+		oldest.buffer.putInt(0, OBSOLETE_MAGIC);
+		oldest.buffer.force();
+		deleteFile(oldest.file);
+	}
+
+	private static void deleteFile(File file) {
+		if (!file.delete()) {
+			logger.warn("Unable to delete spill file [{}]. It is marked obsolete and will be deleted when the "
+					+ "spill tier is reopened.", file.getName());
+		}
+	}
+
+	private static int sizeOf(SerializedObject<byte[]> serializedObject) {
+		return sizeOf(serializedObject.getType().getName()) + sizeOf(serializedObject.getType().getRevision())
+				+ 4 + serializedObject.getData().length;
+	}
+
+	private static int sizeOf(String value) {
+		return 4 + (value == null ? 0 : value.getBytes(UTF8).length);
+	}
+
+	private static void writeSerializedObject(ByteBuffer buffer, SerializedObject<byte[]> serializedObject) {
+		writeString(buffer, serializedObject.getType().getName());
+		writeString(buffer, serializedObject.getType().getRevision());
+		buffer.putInt(serializedObject.getData().length);
+		buffer.put(serializedObject.getData());
+	}
+
+	private static SerializedObject<byte[]> readSerializedObject(ByteBuffer buffer) {
+		String type = readString(buffer);
+		String revision = readString(buffer);
+		byte[] data = new byte[checkedLength(buffer, buffer.getInt())];
+		buffer.get(data);
+		return new SimpleSerializedObject<byte[]>(data, byte[].class, type, revision);
+	}
+
+	private static void skipSerializedObject(ByteBuffer buffer) {
+		readString(buffer);
+		readString(buffer);
+		int length = buffer.getInt();
+		buffer.position(buffer.position() + length);
+	}
+
+	private static void writeString(ByteBuffer buffer, String value) {
+		if (value == null) {
+			buffer.putInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(UTF8);
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[checkedLength(buffer, length)];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static int checkedLength(ByteBuffer buffer, int length) {
+		if (length < 0 || length > buffer.remaining()) {
+			throw new CacheStorageException("Invalid length " + length + " in spill record");
+		}
+		return length;
+	}
+
+	private static final class Segment {
+		private final long id;
+		private final File file;
+		private final MappedByteBuffer buffer;
+		private int writePosition;
+
+		private Segment(long id, File file, MappedByteBuffer buffer) {
+			this.id = id;
+			this.file = file;
+			this.buffer = buffer;
+		}
+	}
+
+	private static final class Location {
+		private final Segment segment;
+		private final int offset;
+
+		private Location(Segment segment, int offset) {
+			this.segment = segment;
+			this.offset = offset;
+		}
+	}
+
+}
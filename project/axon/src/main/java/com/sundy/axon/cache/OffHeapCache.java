@@ -0,0 +1,449 @@
+package com.sundy.axon.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.Serializer;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+
+/**
+ * 把值以序列化后的形式保存在堆外内存中的缓存，堆上只保留很小的索引。放入缓存时通过给定的{@link Serializer}序列化，
+ * 每次{@link #get(Object)}都会反序列化出一个新的实例
+ * <p/>
+ * 堆外内存由直接内存({@link ByteBuffer#allocateDirect(int)})组成的页构成，按需分配，并按照slab的方式管理：
+ * 每一页被切分成同一大小等级(从64字节开始的2的幂，最大为一页)的块，超过一页的值会被拆分到多个最大等级的块中。
+ * 某个大小等级没有空闲块而且页已经分配完时，淘汰该等级中最久未访问的条目；该等级没有条目可以淘汰时，从其他等级回收一页。
+ * 被淘汰的条目会触发{@link EntryListener#onEntryEvicted(Object)}
+ * <p/>
+ * 比整个段的容量还大的值不会被缓存。缓存按照键的hash分为多个段，每个段有自己的页和锁。注意JVM的直接内存上限(-XX:MaxDirectMemorySize)需要大于缓存的容量
+ * @author Administrator
+ *
+ */
+public class OffHeapCache implements Cache {
+
+	private static final int MIN_CHUNK_SIZE = 64;
+	private static final int DEFAULT_PAGE_SIZE = 1 << 20;
+	private static final int DEFAULT_SEGMENTS = 16;
+
+	private final Serializer serializer;
+	private final Segment[] segments;
+	private final int pageSize;
+	private final int sizeClasses;
+	private final Set<EntryListener> listeners = new CopyOnWriteArraySet<EntryListener>();
+
+	/**
+	 * 使用默认的页大小(1MB)和段数(16)初始化缓存
+	 * @param serializer 用于序列化和反序列化缓存值的序列化器
+	 * @param capacityInBytes 堆外内存的总容量
+	 */
+	public OffHeapCache(Serializer serializer, long capacityInBytes) {
+		this(serializer, capacityInBytes, DEFAULT_PAGE_SIZE, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * @param serializer 用于序列化和反序列化缓存值的序列化器
+	 * @param capacityInBytes 堆外内存的总容量
+	 * @param pageSize 每页的大小，必须是2的幂并且不小于64
+	 * @param segmentCount 段的个数，必须是2的幂
+	 */
+	public OffHeapCache(Serializer serializer, long capacityInBytes, int pageSize, int segmentCount) {
+		Assert.notNull(serializer, "serializer may not be null");
+		Assert.isTrue(pageSize >= MIN_CHUNK_SIZE && Integer.bitCount(pageSize) == 1,
+				"pageSize must be a power of two of at least " + MIN_CHUNK_SIZE);
+		Assert.isTrue(segmentCount > 0 && Integer.bitCount(segmentCount) == 1, "segmentCount must be a power of two");
+		long pagesPerSegment = capacityInBytes / segmentCount / pageSize;
+		Assert.isTrue(pagesPerSegment > 0, "capacityInBytes must hold at least one page per segment");
+		Assert.isTrue(pagesPerSegment <= Integer.MAX_VALUE, "capacityInBytes is too large for the given pageSize");
+		this.serializer = serializer;
+		this.pageSize = pageSize;
+		this.sizeClasses = Integer.numberOfTrailingZeros(pageSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE) + 1;
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment((int) pagesPerSegment);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> V get(K key) {
+		SerializedObject<byte[]> serialized = segmentFor(key).read(key);
+		if (serialized == null) {
+			return null;
+		}
+		V value = (V) serializer.deserialize(serialized);
+		for (EntryListener listener : listeners) {
+			listener.onEntryRead(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public <K, V> void put(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+		SerializedObject<byte[]> serialized = serializer.serialize(value, byte[].class);
+		List<Object> evicted = new ArrayList<Object>();
+		WriteResult result = segmentFor(key).write(key, serialized, false, evicted);
+		for (EntryListener listener : listeners) {
+			switch (result) {
+				case REPLACED:
+					listener.onEntryUpdate(key, value);
+					break;
+				case CREATED:
+					listener.onEntryCreated(key, value);
+					break;
+				case REJECTED_REPLACED:
+					listener.onEntryRemoved(key);
+					break;
+				default:
+					break;
+			}
+		}
+		notifyEvicted(evicted);
+	}
+
+	@Override
+	public <K, V> boolean putIfAbsent(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+		Segment segment = segmentFor(key);
+		if (segment.contains(key)) {
+			return false;
+		}
+		SerializedObject<byte[]> serialized = serializer.serialize(value, byte[].class);
+		List<Object> evicted = new ArrayList<Object>();
+		WriteResult result = segment.write(key, serialized, true, evicted);
+		if (result != WriteResult.CREATED) {
+			notifyEvicted(evicted);
+			return false;
+		}
+		for (EntryListener listener : listeners) {
+			listener.onEntryCreated(key, value);
+		}
+		notifyEvicted(evicted);
+		return true;
+	}
+
+	@Override
+	public <K> boolean remove(K key) {
+		if (segmentFor(key).remove(key)) {
+			for (EntryListener listener : listeners) {
+				listener.onEntryRemoved(key);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public <K> boolean containsKey(K key) {
+		return segmentFor(key).contains(key);
+	}
+
+	@Override
+	public void registerCacheEntryListener(EntryListener cacheEntryListener) {
+		listeners.add(cacheEntryListener);
+	}
+
+	@Override
+	public void unregisterCacheEntryListener(EntryListener cacheEntryListener) {
+		listeners.remove(cacheEntryListener);
+	}
+
+	private void notifyEvicted(List<Object> evictedKeys) {
+		for (Object key : evictedKeys) {
+			for (EntryListener listener : listeners) {
+				listener.onEntryEvicted(key);
+			}
+		}
+	}
+
+	private Segment segmentFor(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+
+	private int sizeClassFor(int length) {
+		int chunkSize = MIN_CHUNK_SIZE;
+		int sizeClass = 0;
+		while (chunkSize < length) {
+			chunkSize <<= 1;
+			sizeClass++;
+		}
+		return sizeClass;
+	}
+
+	private int chunkSizeOf(int sizeClass) {
+		return MIN_CHUNK_SIZE << sizeClass;
+	}
+
+	private enum WriteResult {
+		CREATED, REPLACED, PRESENT, REJECTED, REJECTED_REPLACED
+	}
+
+	private static final class Entry {
+		private final SerializedType type;
+		private final int length;
+		private final int sizeClass;
+		private final long[] chunks;
+
+		private Entry(SerializedType type, int length, int sizeClass, long[] chunks) {
+			this.type = type;
+			this.length = length;
+			this.sizeClass = sizeClass;
+			this.chunks = chunks;
+		}
+	}
+
+	/**
+	 * 缓存的一个段，拥有自己的页、空闲块列表和按大小等级划分的LRU链表。所有操作都在段锁中完成
+	 */
+	private final class Segment {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final ByteBuffer[] pages;
+		private final Map<Object, Entry> index = new HashMap<Object, Entry>();
+		private final LinkedHashMap<Object, Entry>[] lruBySizeClass;
+		private final LongStack[] freeChunks;
+		private final int[] pageSizeClass;
+		private final int[] pagesPerSizeClass;
+		private int allocatedPages;
+
+		@SuppressWarnings("unchecked")
+		private Segment(int pageCount) {
+			this.pages = new ByteBuffer[pageCount];
+			this.pageSizeClass = new int[pageCount];
+			this.pagesPerSizeClass = new int[sizeClasses];
+			this.lruBySizeClass = new LinkedHashMap[sizeClasses];
+			this.freeChunks = new LongStack[sizeClasses];
+			for (int i = 0; i < sizeClasses; i++) {
+				lruBySizeClass[i] = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+				freeChunks[i] = new LongStack();
+			}
+		}
+
+		private boolean contains(Object key) {
+			lock.lock();
+			try {
+				return index.containsKey(key);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private SerializedObject<byte[]> read(Object key) {
+			lock.lock();
+			try {
+				Entry entry = index.get(key);
+				if (entry == null) {
+					return null;
+				}
+				lruBySizeClass[entry.sizeClass].get(key);
+				byte[] data = new byte[entry.length];
+				int chunkSize = chunkSizeOf(entry.sizeClass);
+				int position = 0;
+				for (long chunk : entry.chunks) {
+					int length = Math.min(chunkSize, entry.length - position);
+					ByteBuffer page = pages[(int) (chunk >>> 32)];
+					page.position((int) chunk);
+					page.get(data, position, length);
+					position += length;
+				}
+				return new SimpleSerializedObject<byte[]>(data, byte[].class, entry.type);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private WriteResult write(Object key, SerializedObject<byte[]> serialized, boolean onlyIfAbsent,
+				List<Object> evicted) {
+			byte[] data = serialized.getData();
+			int sizeClass = sizeClassFor(Math.min(data.length, pageSize));
+			int chunkSize = chunkSizeOf(sizeClass);
+			int chunkCount = Math.max(1, (data.length + chunkSize - 1) / chunkSize);
+			lock.lock();
+			try {
+				Entry existing = index.get(key);
+				if (existing != null) {
+					if (onlyIfAbsent) {
+						return WriteResult.PRESENT;
+					}
+					release(key, existing);
+				}
+				long[] chunks = allocate(sizeClass, chunkCount, evicted);
+				if (chunks == null) {
+					// 值比整个段还大，无法缓存
+					return existing == null ? WriteResult.REJECTED : WriteResult.REJECTED_REPLACED;
+				}
+				int position = 0;
+				for (long chunk : chunks) {
+					int length = Math.min(chunkSize, data.length - position);
+					ByteBuffer page = pages[(int) (chunk >>> 32)];
+					page.position((int) chunk);
+					page.put(data, position, length);
+					position += length;
+				}
+				Entry entry = new Entry(serialized.getType(), data.length, sizeClass, chunks);
+				index.put(key, entry);
+				lruBySizeClass[sizeClass].put(key, entry);
+				return existing == null ? WriteResult.CREATED : WriteResult.REPLACED;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean remove(Object key) {
+			lock.lock();
+			try {
+				Entry entry = index.get(key);
+				if (entry == null) {
+					return false;
+				}
+				release(key, entry);
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void release(Object key, Entry entry) {
+			index.remove(key);
+			lruBySizeClass[entry.sizeClass].remove(key);
+			for (long chunk : entry.chunks) {
+				freeChunks[entry.sizeClass].push(chunk);
+			}
+		}
+
+		private long[] allocate(int sizeClass, int chunkCount, List<Object> evicted) {
+			if ((long) chunkCount * chunkSizeOf(sizeClass) > (long) pages.length * pageSize) {
+				return null;
+			}
+			long[] chunks = new long[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				long chunk = allocateChunk(sizeClass, evicted);
+				if (chunk < 0) {
+					for (int j = 0; j < i; j++) {
+						freeChunks[sizeClass].push(chunks[j]);
+					}
+					return null;
+				}
+				chunks[i] = chunk;
+			}
+			return chunks;
+		}
+
+		private long allocateChunk(int sizeClass, List<Object> evicted) {
+			LongStack free = freeChunks[sizeClass];
+			while (free.isEmpty()) {
+				if (allocatedPages < pages.length) {
+					int pageIndex = allocatedPages++;
+					pages[pageIndex] = ByteBuffer.allocateDirect(pageSize);
+					carvePage(pageIndex, sizeClass);
+				} else if (!lruBySizeClass[sizeClass].isEmpty()) {
+					Map.Entry<Object, Entry> victim = lruBySizeClass[sizeClass].entrySet().iterator().next();
+					release(victim.getKey(), victim.getValue());
+					evicted.add(victim.getKey());
+				} else if (!reassignPage(sizeClass, evicted)) {
+					return -1;
+				}
+			}
+			return free.pop();
+		}
+
+		private void carvePage(int pageIndex, int sizeClass) {
+			pageSizeClass[pageIndex] = sizeClass;
+			pagesPerSizeClass[sizeClass]++;
+			int chunkSize = chunkSizeOf(sizeClass);
+			for (int offset = pageSize - chunkSize; offset >= 0; offset -= chunkSize) {
+				freeChunks[sizeClass].push(((long) pageIndex << 32) | offset);
+			}
+		}
+
+		/**
+		 * 当前大小等级既没有空闲块也没有可以淘汰的条目时，从拥有最多页的其他等级中回收一页：
+		 * 淘汰所有占用该页的条目，然后把该页重新切分给当前等级
+		 */
+		private boolean reassignPage(int sizeClass, List<Object> evicted) {
+			int victimClass = -1;
+			for (int i = 0; i < sizeClasses; i++) {
+				if (i != sizeClass && pagesPerSizeClass[i] > 0
+						&& (victimClass < 0 || pagesPerSizeClass[i] > pagesPerSizeClass[victimClass])) {
+					victimClass = i;
+				}
+			}
+			if (victimClass < 0) {
+				return false;
+			}
+			int pageIndex = 0;
+			while (pageSizeClass[pageIndex] != victimClass) {
+				pageIndex++;
+			}
+			List<Object> keysOnPage = new ArrayList<Object>();
+			for (Map.Entry<Object, Entry> candidate : lruBySizeClass[victimClass].entrySet()) {
+				for (long chunk : candidate.getValue().chunks) {
+					if ((int) (chunk >>> 32) == pageIndex) {
+						keysOnPage.add(candidate.getKey());
+						break;
+					}
+				}
+			}
+			for (Object key : keysOnPage) {
+				release(key, index.get(key));
+				evicted.add(key);
+			}
+			freeChunks[victimClass].removePage(pageIndex);
+			pagesPerSizeClass[victimClass]--;
+			carvePage(pageIndex, sizeClass);
+			return true;
+		}
+	}
+
+	/**
+	 * 保存空闲块地址(页序号在高32位，页内偏移在低32位)的栈，避免装箱
+	 */
+	private static final class LongStack {
+		private long[] values = new long[16];
+		private int size;
+
+		private void push(long value) {
+			if (size == values.length) {
+				long[] grown = new long[size << 1];
+				System.arraycopy(values, 0, grown, 0, size);
+				values = grown;
+			}
+			values[size++] = value;
+		}
+
+		private long pop() {
+			return values[--size];
+		}
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+
+		private void removePage(int pageIndex) {
+			int retained = 0;
+			for (int i = 0; i < size; i++) {
+				if ((int) (values[i] >>> 32) != pageIndex) {
+					values[retained++] = values[i];
+				}
+			}
+			size = retained;
+		}
+	}
+
+}
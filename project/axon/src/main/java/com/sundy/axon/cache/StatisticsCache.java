@@ -0,0 +1,130 @@
+package com.sundy.axon.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sundy.axon.common.Assert;
+
+/**
+ * 为任意{@link Cache}实现(比如{@link WeakReferenceCache}、{@link EhCacheAdapter}、{@link JCacheAdapter})收集统计数据的包装类
+ * <p/>
+ * 统计命中、未命中、放入、移除、淘汰、过期的次数以及读取花费的时间。计数器使用{@link LongAdder}，
+ * 多个线程同时更新时不会相互竞争。淘汰和过期次数通过向被包装的缓存注册{@link EntryListener}来统计，
+ * 不区分淘汰和过期的缓存实现(比如JCache)只会报告过期
+ * @author Administrator
+ *
+ */
+public class StatisticsCache implements Cache {
+
+	private final String name;
+	private final Cache delegate;
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder putCount = new LongAdder();
+	private final LongAdder removalCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	private final LongAdder expirationCount = new LongAdder();
+	private final LongAdder totalReadTime = new LongAdder();
+	
+	/**
+	 * @param name 缓存的名称，发布统计数据时使用
+	 * @param delegate 被包装的缓存
+	 */
+	public StatisticsCache(String name, Cache delegate) {
+		Assert.notNull(name, "name may not be null");
+		Assert.notNull(delegate, "delegate may not be null");
+		this.name = name;
+		this.delegate = delegate;
+		delegate.registerCacheEntryListener(new RemovalCounter());
+	}
+	
+	@Override
+	public <K, V> V get(K key) {
+		long start = System.nanoTime();
+		V value = delegate.get(key);
+		totalReadTime.add(System.nanoTime() - start);
+		if (value == null) {
+			missCount.increment();
+		} else {
+			hitCount.increment();
+		}
+		return value;
+	}
+	
+	@Override
+	public <K, V> void put(K key, V value) {
+		delegate.put(key, value);
+		putCount.increment();
+	}
+	
+	@Override
+	public <K, V> boolean putIfAbsent(K key, V value) {
+		boolean stored = delegate.putIfAbsent(key, value);
+		if (stored) {
+			putCount.increment();
+		}
+		return stored;
+	}
+	
+	@Override
+	public <K> boolean remove(K key) {
+		boolean removed = delegate.remove(key);
+		if (removed) {
+			removalCount.increment();
+		}
+		return removed;
+	}
+	
+	@Override
+	public <K> boolean containsKey(K key) {
+		return delegate.containsKey(key);
+	}
+	
+	@Override
+	public void registerCacheEntryListener(EntryListener cacheEntryListener) {
+		delegate.registerCacheEntryListener(cacheEntryListener);
+	}
+	
+	@Override
+	public void unregisterCacheEntryListener(EntryListener cacheEntryListener) {
+		delegate.unregisterCacheEntryListener(cacheEntryListener);
+	}
+	
+	/**
+	 * 返回当前统计数据的快照
+	 * @return
+	 */
+	public CacheStatistics getStatistics() {
+		return new CacheStatistics(hitCount.sum(), missCount.sum(), putCount.sum(), removalCount.sum(),
+				evictionCount.sum(), expirationCount.sum(), totalReadTime.sum());
+	}
+	
+	/**
+	 * 把当前统计数据的快照发布给给定的reporter
+	 * @param reporter
+	 */
+	public void reportTo(CacheMetricsReporter reporter) {
+		reporter.report(name, getStatistics());
+	}
+	
+	/**
+	 * 返回缓存的名称
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	private final class RemovalCounter extends EntryListenerAdapter {
+		
+		@Override
+		public void onEntryEvicted(Object key) {
+			evictionCount.increment();
+		}
+		
+		@Override
+		public void onEntryExpired(Object key) {
+			expirationCount.increment();
+		}
+	}
+	
+}
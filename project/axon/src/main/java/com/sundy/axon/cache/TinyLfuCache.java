@@ -0,0 +1,495 @@
+package com.sundy.axon.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sundy.axon.common.Assert;
+
+/**
+ * 基于W-TinyLFU淘汰策略、限制最大容量(条目数或者权重)的进程内缓存
+ * <p/>
+ * 缓存分为两个区域：一个很小的窗口区(LRU，占总容量的1%)，和一个主区(分段LRU，分为试用区和保护区)。
+ * 新条目先进入窗口区，被挤出窗口区的条目要和主区试用区中最久未访问的条目比较访问频率(由{@link FrequencySketch}估算)，
+ * 频率更高的一方留下，另一方被淘汰。淘汰的时间复杂度为均摊O(1)
+ * <p/>
+ * 读操作不加锁，只会把访问记录写入一个有损的环形缓冲区，由持有淘汰锁的线程批量处理。写操作在淘汰锁中完成。
+ * 被淘汰的条目会触发{@link EntryListener#onEntryEvicted(Object)}，所有的监听器回调都在锁外执行
+ * @author Administrator
+ *
+ */
+public class TinyLfuCache implements Cache {
+
+	private static final int READ_BUFFER_SIZE = 16;
+	private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+	private static final int READ_BUFFER_STRIPES = stripeCount();
+
+	private final ConcurrentMap<Object, Node> data = new ConcurrentHashMap<Object, Node>();
+	private final Set<EntryListener> listeners = new CopyOnWriteArraySet<EntryListener>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final ReadBuffer[] readBuffers;
+	private final Weigher weigher;
+	private final FrequencySketch sketch;
+
+	private final long maximumWeight;
+	private final long maximumWindowWeight;
+	private final long maximumProtectedWeight;
+
+	// 以下字段只能在持有evictionLock时访问
+	private final AccessOrderDeque window = new AccessOrderDeque();
+	private final AccessOrderDeque probation = new AccessOrderDeque();
+	private final AccessOrderDeque protectedDeque = new AccessOrderDeque();
+	private long windowWeight;
+	private long mainWeight;
+	private long protectedWeight;
+
+	/**
+	 * 初始化一个最多保存<code>maximumSize</code>个条目的缓存
+	 * @param maximumSize 最大条目数
+	 */
+	public TinyLfuCache(long maximumSize) {
+		this(maximumSize, Weigher.SINGLETON, maximumSize);
+	}
+
+	/**
+	 * 初始化一个总权重不超过<code>maximumWeight</code>的缓存
+	 * @param maximumWeight 最大总权重
+	 * @param weigher 计算每个条目权重的策略
+	 * @param expectedEntries 预计保存的条目数，用于确定访问频率估算器的大小
+	 */
+	public TinyLfuCache(long maximumWeight, Weigher weigher, long expectedEntries) {
+		Assert.isTrue(maximumWeight > 0, "maximumWeight must be a positive number");
+		Assert.notNull(weigher, "weigher may not be null");
+		this.maximumWeight = maximumWeight;
+		this.maximumWindowWeight = Math.max(1, maximumWeight / 100);
+		this.maximumProtectedWeight = (long) ((maximumWeight - maximumWindowWeight) * 0.8d);
+		this.weigher = weigher;
+		this.sketch = new FrequencySketch(expectedEntries);
+		this.readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+		for (int i = 0; i < readBuffers.length; i++) {
+			readBuffers[i] = new ReadBuffer();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> V get(K key) {
+		final Node node = data.get(key);
+		if (node == null) {
+			return null;
+		}
+		final Object value = node.value;
+		recordRead(node);
+		for (EntryListener listener : listeners) {
+			listener.onEntryRead(key, value);
+		}
+		return (V) value;
+	}
+
+	@Override
+	public <K, V> void put(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+		final Node node = new Node(key, value, weigh(key, value));
+		final List<Object> evicted;
+		final boolean updated;
+		evictionLock.lock();
+		try {
+			Node prior = data.put(key, node);
+			updated = prior != null;
+			if (updated) {
+				unlink(prior);
+			}
+			evicted = onWrite(node);
+		} finally {
+			evictionLock.unlock();
+		}
+		for (EntryListener listener : listeners) {
+			if (updated) {
+				listener.onEntryUpdate(key, value);
+			} else {
+				listener.onEntryCreated(key, value);
+			}
+		}
+		notifyEvicted(evicted);
+	}
+
+	@Override
+	public <K, V> boolean putIfAbsent(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+		if (data.containsKey(key)) {
+			return false;
+		}
+		final Node node = new Node(key, value, weigh(key, value));
+		final List<Object> evicted;
+		evictionLock.lock();
+		try {
+			if (data.putIfAbsent(key, node) != null) {
+				return false;
+			}
+			evicted = onWrite(node);
+		} finally {
+			evictionLock.unlock();
+		}
+		for (EntryListener listener : listeners) {
+			listener.onEntryCreated(key, value);
+		}
+		notifyEvicted(evicted);
+		return true;
+	}
+
+	@Override
+	public <K> boolean remove(K key) {
+		evictionLock.lock();
+		try {
+			Node node = data.remove(key);
+			if (node == null) {
+				return false;
+			}
+			unlink(node);
+		} finally {
+			evictionLock.unlock();
+		}
+		for (EntryListener listener : listeners) {
+			listener.onEntryRemoved(key);
+		}
+		return true;
+	}
+
+	@Override
+	public <K> boolean containsKey(K key) {
+		return data.containsKey(key);
+	}
+
+	@Override
+	public void registerCacheEntryListener(EntryListener cacheEntryListener) {
+		listeners.add(cacheEntryListener);
+	}
+
+	@Override
+	public void unregisterCacheEntryListener(EntryListener cacheEntryListener) {
+		listeners.remove(cacheEntryListener);
+	}
+
+	/**
+	 * 淘汰缓存中所有的条目，每个条目都会触发{@link #onEviction(Object, Object)}和{@link EntryListener#onEntryEvicted(Object)}
+	 */
+	public void evictAll() {
+		List<Object> evicted = new ArrayList<Object>();
+		evictionLock.lock();
+		try {
+			drainReadBuffers();
+			for (AccessOrderDeque deque : new AccessOrderDeque[]{window, probation, protectedDeque}) {
+				while (deque.head != null) {
+					evictNode(deque.head, evicted);
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+		notifyEvicted(evicted);
+	}
+
+	/**
+	 * 返回缓存中当前的条目数
+	 * @return
+	 */
+	public int size() {
+		return data.size();
+	}
+
+	/**
+	 * 返回缓存中所有条目当前的总权重
+	 * @return
+	 */
+	public long weightedSize() {
+		evictionLock.lock();
+		try {
+			return windowWeight + mainWeight;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private int weigh(Object key, Object value) {
+		int weight = weigher.weigh(key, value);
+		Assert.isTrue(weight >= 0, "weigher returned a negative weight");
+		return weight;
+	}
+
+	private void recordRead(Node node) {
+		ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+		if (buffer.record(node) && evictionLock.tryLock()) {
+			try {
+				drainReadBuffers();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	private void drainReadBuffers() {
+		for (ReadBuffer buffer : readBuffers) {
+			for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+				Node node = buffer.nodes.getAndSet(i, null);
+				if (node != null) {
+					onAccess(node);
+				}
+			}
+		}
+	}
+
+	private void onAccess(Node node) {
+		sketch.increment(node.key);
+		switch (node.queue) {
+			case WINDOW:
+				window.moveToBack(node);
+				break;
+			case PROBATION:
+				probation.remove(node);
+				node.queue = QueueType.PROTECTED;
+				protectedDeque.add(node);
+				protectedWeight += node.weight;
+				demoteFromProtected();
+				break;
+			case PROTECTED:
+				protectedDeque.moveToBack(node);
+				break;
+			default:
+				// 已经被移除或者淘汰的条目
+				break;
+		}
+	}
+
+	private void demoteFromProtected() {
+		while (protectedWeight > maximumProtectedWeight) {
+			Node demoted = protectedDeque.poll();
+			if (demoted == null) {
+				return;
+			}
+			protectedWeight -= demoted.weight;
+			demoted.queue = QueueType.PROBATION;
+			probation.add(demoted);
+		}
+	}
+
+	private List<Object> onWrite(Node node) {
+		drainReadBuffers();
+		sketch.increment(node.key);
+		node.queue = QueueType.WINDOW;
+		window.add(node);
+		windowWeight += node.weight;
+		return evict();
+	}
+
+	private void unlink(Node node) {
+		switch (node.queue) {
+			case WINDOW:
+				window.remove(node);
+				windowWeight -= node.weight;
+				break;
+			case PROBATION:
+				probation.remove(node);
+				mainWeight -= node.weight;
+				break;
+			case PROTECTED:
+				protectedDeque.remove(node);
+				mainWeight -= node.weight;
+				protectedWeight -= node.weight;
+				break;
+			default:
+				break;
+		}
+		node.queue = QueueType.NONE;
+	}
+
+	/**
+	 * 把超出窗口区容量的条目移入试用区作为候选者，然后在总权重超出限制时，
+	 * 用候选者和试用区中最久未访问的条目(受害者)比较访问频率，淘汰频率较低的一方
+	 */
+	private List<Object> evict() {
+		List<Node> candidates = null;
+		while (windowWeight > maximumWindowWeight) {
+			Node node = window.poll();
+			windowWeight -= node.weight;
+			mainWeight += node.weight;
+			node.queue = QueueType.PROBATION;
+			probation.add(node);
+			if (candidates == null) {
+				candidates = new ArrayList<Node>();
+			}
+			candidates.add(node);
+		}
+		List<Object> evicted = null;
+		while (windowWeight + mainWeight > maximumWeight) {
+			Node victim = firstNonEmpty(probation, protectedDeque, window);
+			Node candidate = nextCandidate(candidates);
+			Node toEvict = victim;
+			if (candidate != null && candidate != victim
+					&& sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+				toEvict = candidate;
+			}
+			if (candidates != null) {
+				candidates.remove(toEvict);
+			}
+			if (evicted == null) {
+				evicted = new ArrayList<Object>();
+			}
+			evictNode(toEvict, evicted);
+		}
+		return evicted == null ? Collections.emptyList() : evicted;
+	}
+
+	private void evictNode(Node node, List<Object> evicted) {
+		data.remove(node.key, node);
+		unlink(node);
+		onEviction(node.key, node.value);
+		evicted.add(node.key);
+	}
+
+	/**
+	 * 条目被淘汰时调用，默认什么都不做。子类可以重写该方法来处理被淘汰的值(比如转存到其他存储中)
+	 * <p/>
+	 * 注意:该方法在持有淘汰锁时调用，实现必须足够轻量，并且不能再访问该缓存
+	 * @param key 被淘汰的键
+	 * @param value 被淘汰的值
+	 */
+	protected void onEviction(Object key, Object value) {
+	}
+
+	private Node nextCandidate(List<Node> candidates) {
+		if (candidates == null) {
+			return null;
+		}
+		for (int i = candidates.size() - 1; i >= 0; i--) {
+			Node candidate = candidates.get(i);
+			if (candidate.queue == QueueType.PROBATION) {
+				return candidate;
+			}
+			candidates.remove(i);
+		}
+		return null;
+	}
+
+	private static Node firstNonEmpty(AccessOrderDeque... deques) {
+		for (AccessOrderDeque deque : deques) {
+			if (deque.head != null) {
+				return deque.head;
+			}
+		}
+		throw new IllegalStateException("Cache weight exceeds maximum while no entries are present");
+	}
+
+	private void notifyEvicted(List<Object> evictedKeys) {
+		for (Object key : evictedKeys) {
+			for (EntryListener listener : listeners) {
+				listener.onEntryEvicted(key);
+			}
+		}
+	}
+
+	private static int stripeCount() {
+		int stripes = 1;
+		int target = Runtime.getRuntime().availableProcessors() * 2;
+		while (stripes < target && stripes < 64) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+
+	private enum QueueType {
+		NONE, WINDOW, PROBATION, PROTECTED
+	}
+
+	private static final class Node {
+		private final Object key;
+		private final Object value;
+		private final int weight;
+
+		// 以下字段只能在持有evictionLock时访问
+		private QueueType queue = QueueType.NONE;
+		private Node previous;
+		private Node next;
+
+		private Node(Object key, Object value, int weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * 按访问顺序排列的双向链表，头部是最久未访问的节点。节点自身保存前后指针，所有操作都是O(1)
+	 */
+	private static final class AccessOrderDeque {
+		private Node head;
+		private Node tail;
+
+		private void add(Node node) {
+			node.previous = tail;
+			node.next = null;
+			if (tail == null) {
+				head = node;
+			} else {
+				tail.next = node;
+			}
+			tail = node;
+		}
+
+		private void remove(Node node) {
+			if (node.previous == null) {
+				head = node.next;
+			} else {
+				node.previous.next = node.next;
+			}
+			if (node.next == null) {
+				tail = node.previous;
+			} else {
+				node.next.previous = node.previous;
+			}
+			node.previous = null;
+			node.next = null;
+		}
+
+		private Node poll() {
+			Node first = head;
+			if (first != null) {
+				remove(first);
+			}
+			return first;
+		}
+
+		private void moveToBack(Node node) {
+			if (node != tail) {
+				remove(node);
+				add(node);
+			}
+		}
+	}
+
+	/**
+	 * 有损的环形缓冲区，记录读操作访问过的节点。缓冲区写满一圈时通知调用者尝试清空缓冲区，
+	 * 被覆盖的访问记录会直接丢弃
+	 */
+	private static final class ReadBuffer {
+		private final AtomicLong writeCounter = new AtomicLong();
+		private final AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+
+		private boolean record(Node node) {
+			long index = writeCounter.getAndIncrement();
+			nodes.lazySet((int) (index & READ_BUFFER_MASK), node);
+			return (index & READ_BUFFER_MASK) == READ_BUFFER_MASK;
+		}
+	}
+
+}
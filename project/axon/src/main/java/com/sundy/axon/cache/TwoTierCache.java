@@ -0,0 +1,272 @@
+package com.sundy.axon.cache;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.Serializer;
+
+/**
+ * 两层缓存：堆上的热数据层保存活动的对象，被热数据层淘汰的条目以序列化后的形式转存到内存映射文件的溢出层中。
+ * 溢出层中的条目被访问时会被反序列化并提升回热数据层
+ * <p/>
+ * 调用{@link #close()}时热数据层的所有条目都会被转存到溢出层。使用同一个目录重新创建缓存时会重新打开溢出层，
+ * 所以应用重启后缓存仍然是热的。键和值都通过给定的{@link Serializer}序列化，键必须正确实现equals和hashCode
+ * <p/>
+ * 溢出层写满时会丢弃最老的段，其中的条目触发{@link EntryListener#onEntryEvicted(Object)}
+ * @author Administrator
+ *
+ */
+public class TwoTierCache implements Cache {
+
+	private static final Logger logger = LoggerFactory.getLogger(TwoTierCache.class);
+	private static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+	private static final int LOCK_STRIPES = 64;
+
+	private final Serializer serializer;
+	private final HotTier hotTier;
+	private final MappedSpillTier spillTier;
+	private final ConcurrentMap<Object, Object> pendingSpills = new ConcurrentHashMap<Object, Object>();
+	private final Object[] locks = new Object[LOCK_STRIPES];
+	private final Set<EntryListener> listeners = new CopyOnWriteArraySet<EntryListener>();
+
+	/**
+	 * 使用64MB大小的段初始化缓存
+	 * @param serializer 用于序列化键和值的序列化器
+	 * @param hotTierSize 热数据层最多保存的条目数
+	 * @param spillDirectory 保存溢出层文件的目录
+	 * @param maxSpillSegments 溢出层最多保留的段数
+	 */
+	public TwoTierCache(Serializer serializer, long hotTierSize, File spillDirectory, int maxSpillSegments) {
+		this(serializer, hotTierSize, spillDirectory, DEFAULT_SEGMENT_SIZE, maxSpillSegments);
+	}
+
+	/**
+	 * @param serializer 用于序列化键和值的序列化器
+	 * @param hotTierSize 热数据层最多保存的条目数
+	 * @param spillDirectory 保存溢出层文件的目录
+	 * @param segmentSize 溢出层每个段文件的大小
+	 * @param maxSpillSegments 溢出层最多保留的段数
+	 */
+	public TwoTierCache(Serializer serializer, long hotTierSize, File spillDirectory, int segmentSize,
+			int maxSpillSegments) {
+		this(serializer, hotTierSize, Weigher.SINGLETON, hotTierSize, spillDirectory, segmentSize, maxSpillSegments);
+	}
+
+	/**
+	 * 热数据层按照权重(比如{@link AggregateFootprintWeigher}估算的内存大小)限制容量
+	 * @param serializer 用于序列化键和值的序列化器
+	 * @param hotTierMaximumWeight 热数据层的最大总权重
+	 * @param weigher 计算热数据层条目权重的策略
+	 * @param expectedHotEntries 热数据层预计保存的条目数
+	 * @param spillDirectory 保存溢出层文件的目录
+	 * @param segmentSize 溢出层每个段文件的大小
+	 * @param maxSpillSegments 溢出层最多保留的段数
+	 */
+	public TwoTierCache(Serializer serializer, long hotTierMaximumWeight, Weigher weigher, long expectedHotEntries,
+			File spillDirectory, int segmentSize, int maxSpillSegments) {
+		Assert.notNull(serializer, "serializer may not be null");
+		Assert.notNull(spillDirectory, "spillDirectory may not be null");
+		Assert.isTrue(maxSpillSegments > 0, "maxSpillSegments must be a positive number");
+		this.serializer = serializer;
+		this.hotTier = new HotTier(hotTierMaximumWeight, weigher, expectedHotEntries, pendingSpills);
+		this.spillTier = new MappedSpillTier(spillDirectory, segmentSize, maxSpillSegments, serializer);
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> V get(K key) {
+		V value = hotTier.get(key);
+		if (value == null) {
+			value = (V) promote(key);
+		}
+		if (value != null) {
+			for (EntryListener listener : listeners) {
+				listener.onEntryRead(key, value);
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public <K, V> void put(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+		boolean updated;
+		synchronized (lockFor(key)) {
+			updated = hotTier.containsKey(key) | pendingSpills.remove(key) != null | spillTier.contains(key);
+			spillTier.delete(key);
+			hotTier.put(key, value);
+		}
+		for (EntryListener listener : listeners) {
+			if (updated) {
+				listener.onEntryUpdate(key, value);
+			} else {
+				listener.onEntryCreated(key, value);
+			}
+		}
+		spillPending();
+	}
+
+	@Override
+	public <K, V> boolean putIfAbsent(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+		synchronized (lockFor(key)) {
+			if (containsKey(key) || !hotTier.putIfAbsent(key, value)) {
+				return false;
+			}
+		}
+		for (EntryListener listener : listeners) {
+			listener.onEntryCreated(key, value);
+		}
+		spillPending();
+		return true;
+	}
+
+	@Override
+	public <K> boolean remove(K key) {
+		boolean removed;
+		synchronized (lockFor(key)) {
+			removed = hotTier.remove(key) | pendingSpills.remove(key) != null | spillTier.contains(key);
+			spillTier.delete(key);
+		}
+		if (removed) {
+			for (EntryListener listener : listeners) {
+				listener.onEntryRemoved(key);
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public <K> boolean containsKey(K key) {
+		return hotTier.containsKey(key) || pendingSpills.containsKey(key) || spillTier.contains(key);
+	}
+
+	@Override
+	public void registerCacheEntryListener(EntryListener cacheEntryListener) {
+		listeners.add(cacheEntryListener);
+	}
+
+	@Override
+	public void unregisterCacheEntryListener(EntryListener cacheEntryListener) {
+		listeners.remove(cacheEntryListener);
+	}
+
+	/**
+	 * 把热数据层的所有条目转存到溢出层，并把溢出层强制写入磁盘。之后仍然可以继续使用该缓存
+	 */
+	public void close() {
+		hotTier.evictAll();
+		spillPending();
+		spillTier.flush();
+	}
+
+	private Object promote(Object key) {
+		Object value;
+		synchronized (lockFor(key)) {
+			value = pendingSpills.remove(key);
+			if (value == null) {
+				SerializedObject<byte[]> serialized = spillTier.remove(key);
+				if (serialized == null) {
+					return null;
+				}
+				value = serializer.deserialize(serialized);
+			}
+			if (!hotTier.putIfAbsent(key, value)) {
+				Object current = hotTier.get(key);
+				if (current != null) {
+					value = current;
+				}
+			}
+		}
+		spillPending();
+		return value;
+	}
+
+	/**
+	 * 把被热数据层淘汰的条目写入溢出层。序列化在锁外进行，只有当条目在此期间没有被提升、覆盖或者删除时才会写入
+	 * <p/>
+	 * 淘汰发生在热数据层的淘汰锁中，而不是在键的锁中，所以同一个键的put可能在旧值被淘汰之后、放入待转存map之前完成。
+	 * 这时热数据层已经保存了新值，待转存的旧值已经过期，必须丢弃
+	 */
+	private void spillPending() {
+		if (pendingSpills.isEmpty()) {
+			return;
+		}
+		for (Map.Entry<Object, Object> entry : pendingSpills.entrySet()) {
+			Object key = entry.getKey();
+			Object value = entry.getValue();
+			SerializedObject<byte[]> serializedKey;
+			SerializedObject<byte[]> serializedValue;
+			try {
+				serializedKey = serializer.serialize(key, byte[].class);
+				serializedValue = serializer.serialize(value, byte[].class);
+			} catch (RuntimeException e) {
+				if (pendingSpills.remove(key, value)) {
+					logger.warn("Unable to spill cache entry [{}] to disk. The entry is discarded.", key, e);
+					notifyEvicted(key);
+				}
+				continue;
+			}
+			List<Object> dropped = null;
+			synchronized (lockFor(key)) {
+				if (pendingSpills.remove(key, value) && !hotTier.containsKey(key)) {
+					dropped = spillTier.write(key, serializedKey, serializedValue);
+				}
+			}
+			if (dropped != null) {
+				for (Object droppedKey : dropped) {
+					notifyEvicted(droppedKey);
+				}
+			}
+		}
+	}
+
+	private void notifyEvicted(Object key) {
+		for (EntryListener listener : listeners) {
+			listener.onEntryEvicted(key);
+		}
+	}
+
+	private Object lockFor(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return locks[h & (LOCK_STRIPES - 1)];
+	}
+
+	/**
+	 * 热数据层，被淘汰的条目先放入待转存的map中，由调用线程在锁外写入溢出层
+	 */
+	private static final class HotTier extends TinyLfuCache {
+
+		private final ConcurrentMap<Object, Object> pendingSpills;
+
+		private HotTier(long maximumWeight, Weigher weigher, long expectedEntries,
+				ConcurrentMap<Object, Object> pendingSpills) {
+			super(maximumWeight, weigher, expectedEntries);
+			this.pendingSpills = pendingSpills;
+		}
+
+		@Override
+		protected void onEviction(Object key, Object value) {
+			pendingSpills.put(key, value);
+		}
+	}
+
+}
@@ -3,25 +3,74 @@ package com.sundy.axon.cache;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 使用弱引用保存缓存值的缓存，值被垃圾回收后对应的条目会被清理掉，并触发{@link EntryListener#onEntryExpired(Object)}
+ * <p/>
+ * 默认情况下，每次读写操作都会先清理已被回收的条目，监听器也在调用线程中同步执行。
+ * 使用异步模式时，由一个守护线程批量清理已被回收的条目，所有的监听器回调也由该线程批量异步执行，
+ * 读操作只需要一次map查找。积压的通知只弱引用缓存值，发送时值已被回收的通知会被跳过(之后会有对应的过期通知)；
+ * 积压的通知达到上限时，由调用线程自己发送积压的通知。调用{@link #shutdown()}之后缓存回到同步模式
+ * @author Administrator
+ *
+ */
 public class WeakReferenceCache implements Cache {
 
+	private static final Logger logger = LoggerFactory.getLogger(WeakReferenceCache.class);
+	private static final long FLUSH_INTERVAL_MILLIS = 100;
+	private static final int PURGE_BATCH_SIZE = 1024;
+	private static final int MAX_PENDING_EVENTS = 65536;
+
 	private final ConcurrentMap<Object, Entry> cache = new ConcurrentHashMap<Object, WeakReferenceCache.Entry>();
 	private final ReferenceQueue<Object> referenceQueue = new ReferenceQueue<Object>();
 	private final Set<EntryListener> adapters = new CopyOnWriteArraySet<Cache.EntryListener>();
-	
+	private final Queue<Event> pendingEvents;
+	private final Purger purger;
+	private volatile boolean asynchronous;
+
+	/**
+	 * 初始化同步模式的缓存
+	 */
+	public WeakReferenceCache() {
+		this(false);
+	}
+
+	/**
+	 * @param asynchronous 为true时，由守护线程批量清理已被回收的条目并异步通知监听器
+	 */
+	public WeakReferenceCache(boolean asynchronous) {
+		this.asynchronous = asynchronous;
+		if (asynchronous) {
+			this.pendingEvents = new LinkedBlockingQueue<Event>(MAX_PENDING_EVENTS);
+			this.purger = new Purger(this);
+			Thread thread = new Thread(purger, "WeakReferenceCache-purger");
+			thread.setDaemon(true);
+			thread.start();
+		} else {
+			this.pendingEvents = null;
+			this.purger = null;
+		}
+	}
+
 	public <K, V> V get(K key) {
-		purgeItems();
-		final Reference<Object> entry = cache.get(key);
+		if (!asynchronous) {
+			purgeItems();
+		}
+		final Entry entry = cache.get(key);
 		final V retrunValue = (V) (entry==null ? null : entry.get());
 		if(retrunValue != null){
-			for(EntryListener adapter : adapters){
-				adapter.onEntryRead(key, retrunValue);
-			}
+			notify(EventType.READ, key, retrunValue, entry);
 		}
 		return retrunValue;
 	}
@@ -30,15 +79,14 @@ public class WeakReferenceCache implements Cache {
 		if(value == null){
 			throw new IllegalArgumentException("Null values not supported");
 		}
-		purgeItems();
-		if(cache.put(key, new Entry(key, value))!=null){
-			for(EntryListener adapter : adapters){
-				adapter.onEntryUpdate(key, value);
-			}
+		if (!asynchronous) {
+			purgeItems();
+		}
+		Entry entry = new Entry(key, value);
+		if(cache.put(key, entry)!=null){
+			notify(EventType.UPDATED, key, value, entry);
 		}else{
-			for(EntryListener adapter : adapters){
-				adapter.onEntryCreated(key, value);
-			}
+			notify(EventType.CREATED, key, value, entry);
 		}
 
 	}
@@ -47,11 +95,12 @@ public class WeakReferenceCache implements Cache {
 		if(value == null){
 			throw new IllegalArgumentException("Null values not supported");
 		}
-		purgeItems();
-		if(cache.putIfAbsent(key, new Entry(key, value))==null){
-			for(EntryListener adapter : adapters){
-				adapter.onEntryCreated(key, value);
-			}
+		if (!asynchronous) {
+			purgeItems();
+		}
+		Entry entry = new Entry(key, value);
+		if(cache.putIfAbsent(key, entry)==null){
+			notify(EventType.CREATED, key, value, entry);
 			return true;
 		}
 		return false;
@@ -59,16 +108,16 @@ public class WeakReferenceCache implements Cache {
 
 	public <K> boolean remove(K key) {
 		if(cache.remove(key)!=null){
-			for(EntryListener adapter : adapters){
-				adapter.onEntryRemoved(key);
-			}
+			notify(EventType.REMOVED, key, null, null);
 			return true;
 		}
 		return false;
 	}
 
 	public <K> boolean containsKey(K key) {
-		purgeItems();
+		if (!asynchronous) {
+			purgeItems();
+		}
 		final Reference<Object> entry = cache.get(key);
 		return entry!=null && entry.get()!=null;
 	}
@@ -80,26 +129,164 @@ public class WeakReferenceCache implements Cache {
 	public void unregisterCacheEntryListener(EntryListener cacheEntryListener) {
 		this.adapters.remove(cacheEntryListener);
 	}
-	
+
+	/**
+	 * 停止异步模式下的守护线程，在调用线程中发送积压的通知，之后缓存以同步模式工作。同步模式下该方法没有任何效果
+	 */
+	public void shutdown() {
+		if (purger != null) {
+			asynchronous = false;
+			purger.running = false;
+			deliverPendingEvents();
+		}
+	}
+
+	/**
+	 * 发送通知。异步模式下通知被放入积压队列，只通过条目弱引用缓存值
+	 * @param entry 保存value的条目，没有值的通知为null
+	 */
+	private void notify(EventType type, Object key, Object value, Entry entry) {
+		if (adapters.isEmpty()) {
+			return;
+		}
+		if (asynchronous) {
+			if (pendingEvents.offer(new Event(type, key, entry))) {
+				if (!asynchronous) {
+					// 与shutdown并发时，shutdown可能已经清空了队列
+					deliverPendingEvents();
+				}
+				return;
+			}
+			// 守护线程跟不上时，由调用线程发送积压的通知
+			deliverPendingEvents();
+		}
+		for (EntryListener adapter : adapters) {
+			type.deliver(adapter, key, value);
+		}
+	}
+
+	private void deliverPendingEvents() {
+		Event event;
+		while ((event = pendingEvents.poll()) != null) {
+			Object value = null;
+			if (event.entry != null) {
+				value = event.entry.get();
+				if (value == null) {
+					continue;
+				}
+			}
+			for (EntryListener adapter : adapters) {
+				event.type.deliver(adapter, event.key, value);
+			}
+		}
+	}
+
 	private void purgeItems(){
 		Entry purgedEntry;
 		while((purgedEntry=(Entry) referenceQueue.poll())!=null){
-			if(cache.remove(purgedEntry.getKey())!=null){
-				for(EntryListener entryListener : adapters){
-					entryListener.onEntryExpired(purgedEntry.getKey());
+			expire(purgedEntry);
+		}
+	}
+
+	private void expire(Entry purgedEntry) {
+		if(cache.remove(purgedEntry.getKey(), purgedEntry)){
+			notify(EventType.EXPIRED, purgedEntry.getKey(), null, null);
+		}
+	}
+
+	/**
+	 * 异步模式下的守护线程：阻塞等待被回收的条目并批量清理，然后批量发送积压的通知。
+	 * 该线程只弱引用缓存本身，缓存被回收后线程自动退出
+	 */
+	private static final class Purger implements Runnable {
+
+		private final WeakReference<WeakReferenceCache> owner;
+		private final ReferenceQueue<Object> referenceQueue;
+		private volatile boolean running = true;
+
+		private Purger(WeakReferenceCache cache) {
+			this.owner = new WeakReference<WeakReferenceCache>(cache);
+			this.referenceQueue = cache.referenceQueue;
+		}
+
+		public void run() {
+			List<Entry> batch = new ArrayList<Entry>();
+			while (running) {
+				try {
+					Entry purged = (Entry) referenceQueue.remove(FLUSH_INTERVAL_MILLIS);
+					while (purged != null && batch.size() < PURGE_BATCH_SIZE) {
+						batch.add(purged);
+						purged = (Entry) referenceQueue.poll();
+					}
+					WeakReferenceCache cache = owner.get();
+					if (cache == null) {
+						return;
+					}
+					for (Entry entry : batch) {
+						cache.expire(entry);
+					}
+					batch.clear();
+					cache.deliverPendingEvents();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (RuntimeException e) {
+					logger.warn("An exception occurred while notifying cache entry listeners", e);
 				}
 			}
 		}
 	}
-	
+
+	private enum EventType {
+		READ {
+			void deliver(EntryListener listener, Object key, Object value) {
+				listener.onEntryRead(key, value);
+			}
+		},
+		CREATED {
+			void deliver(EntryListener listener, Object key, Object value) {
+				listener.onEntryCreated(key, value);
+			}
+		},
+		UPDATED {
+			void deliver(EntryListener listener, Object key, Object value) {
+				listener.onEntryUpdate(key, value);
+			}
+		},
+		REMOVED {
+			void deliver(EntryListener listener, Object key, Object value) {
+				listener.onEntryRemoved(key);
+			}
+		},
+		EXPIRED {
+			void deliver(EntryListener listener, Object key, Object value) {
+				listener.onEntryExpired(key);
+			}
+		};
+
+		abstract void deliver(EntryListener listener, Object key, Object value);
+	}
+
+	private static final class Event {
+		private final EventType type;
+		private final Object key;
+		private final Entry entry;
+
+		private Event(EventType type, Object key, Entry entry) {
+			this.type = type;
+			this.key = key;
+			this.entry = entry;
+		}
+	}
+
 	private class Entry extends WeakReference<Object> {
 		private final Object key;
-		
+
 		public Entry(Object key, Object value){
-			super(key, referenceQueue);
+			super(value, referenceQueue);
 			this.key = key;
 		}
-		
+
 		public Object getKey(){
 			return key;
 		}
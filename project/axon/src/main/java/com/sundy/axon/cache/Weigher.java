@@ -0,0 +1,29 @@
+package com.sundy.axon.cache;
+
+/**
+ * 计算缓存条目权重的策略，基于权重限制容量的缓存(比如{@link TinyLfuCache}和{@link TwoTierCache})会根据该权重决定淘汰哪些条目。
+ * 权重一般是条目占用内存的估算值，见{@link AggregateFootprintWeigher}
+ * @author Administrator
+ *
+ */
+public interface Weigher {
+
+	/**
+	 * 返回给定缓存条目的权重，权重不能为负数
+	 * @param key 缓存的键
+	 * @param value 缓存的值
+	 * @return
+	 */
+	int weigh(Object key, Object value);
+	
+	/**
+	 * 每个条目的权重都为1，即按照条目的个数限制缓存的大小
+	 */
+	Weigher SINGLETON = new Weigher() {
+		@Override
+		public int weigh(Object key, Object value) {
+			return 1;
+		}
+	};
+	
+}
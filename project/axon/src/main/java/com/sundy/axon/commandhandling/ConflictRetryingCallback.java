@@ -0,0 +1,68 @@
+package com.sundy.axon.commandhandling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.domain.CommandMessage;
+import com.sundy.axon.repository.ConflictingModificationException;
+
+/**
+ * 命令执行失败时，如果失败原因是{@link ConflictingModificationException}(比如乐观锁仓库检测到并发修改)，
+ * 则通过命令总线重新分发该命令，直到成功或者达到最大重试次数。其他结果都会直接交给被包装的回调处理
+ * <p/>
+ * 用法: <code>commandBus.dispatch(command, new ConflictRetryingCallback&lt;R&gt;(commandBus, command, callback, 3))</code>
+ * @author Administrator
+ *
+ * @param <R> 命令执行结果的类型
+ */
+public class ConflictRetryingCallback<R> implements CommandCallback<R> {
+
+	private final CommandBus commandBus;
+	private final CommandMessage<?> command;
+	private final CommandCallback<R> delegate;
+	private final AtomicInteger retriesLeft;
+	
+	/**
+	 * @param commandBus 用于重新分发命令的命令总线
+	 * @param command 被分发的命令
+	 * @param delegate 最终处理结果的回调
+	 * @param maxRetries 最大重试次数
+	 */
+	public ConflictRetryingCallback(CommandBus commandBus, CommandMessage<?> command, CommandCallback<R> delegate,
+			int maxRetries) {
+		Assert.notNull(commandBus, "commandBus may not be null");
+		Assert.notNull(command, "command may not be null");
+		Assert.notNull(delegate, "delegate may not be null");
+		Assert.isTrue(maxRetries >= 0, "maxRetries may not be negative");
+		this.commandBus = commandBus;
+		this.command = command;
+		this.delegate = delegate;
+		this.retriesLeft = new AtomicInteger(maxRetries);
+	}
+	
+	@Override
+	public void onSuccess(R result) {
+		delegate.onSuccess(result);
+	}
+	
+	@Override
+	public void onFailure(Throwable cause) {
+		if (isCausedByConflict(cause) && retriesLeft.getAndDecrement() > 0) {
+			commandBus.dispatch(command, this);
+		} else {
+			delegate.onFailure(cause);
+		}
+	}
+	
+	private boolean isCausedByConflict(Throwable cause) {
+		Throwable current = cause;
+		while (current != null) {
+			if (current instanceof ConflictingModificationException) {
+				return true;
+			}
+			current = current.getCause() == current ? null : current.getCause();
+		}
+		return false;
+	}
+	
+}
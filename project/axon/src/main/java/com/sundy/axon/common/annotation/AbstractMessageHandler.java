@@ -21,6 +21,7 @@ public abstract class AbstractMessageHandler implements Comparable<AbstractMessa
 	private final Score score;
 	private final Class<?> payloadType;
 	private final ParameterResolver[] parameterResolvers;
+	private final boolean payloadTypeOnly;
 	
 	
 	protected AbstractMessageHandler(Class<?> payloadType, Class<?> declaringClass,
@@ -28,12 +29,14 @@ public abstract class AbstractMessageHandler implements Comparable<AbstractMessa
 		this.score = new Score(payloadType, declaringClass);
 		this.payloadType = payloadType;
 		this.parameterResolvers = Arrays.copyOf(parameterResolvers, parameterResolvers.length);
+		this.payloadTypeOnly = isPayloadTypeOnly(this.parameterResolvers);
 	}
 	
 	protected AbstractMessageHandler(AbstractMessageHandler delegate) {
         this.score = delegate.score;
         this.payloadType = delegate.payloadType;
         this.parameterResolvers = delegate.parameterResolvers;
+        this.payloadTypeOnly = delegate.payloadTypeOnly;
     }
 	
 	public boolean matches(Message message) {
@@ -54,6 +57,13 @@ public abstract class AbstractMessageHandler implements Comparable<AbstractMessa
 	 */
 	public abstract Object invoke(Object target, Message message) throws InvocationTargetException, IllegalAccessException;
 	
+	/**
+	 * 是否只根据载荷类型就能判断该处理器是否匹配一个消息，即所有的参数都是载荷参数
+	 */
+	boolean isPayloadTypeOnly() {
+		return payloadTypeOnly;
+	}
+	
 	/**
 	 * 返回成员所有的一个类型的注解
 	 * @param annotationType
@@ -111,6 +121,15 @@ public abstract class AbstractMessageHandler implements Comparable<AbstractMessa
 		return parameterValueResolvers;
 	}
     
+    private static boolean isPayloadTypeOnly(ParameterResolver[] parameterResolvers) {
+    	for (ParameterResolver parameterResolver : parameterResolvers) {
+    		if (!(parameterResolver instanceof PayloadParameterResolver)) {
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+    
     private static class PayloadParameterResolver implements ParameterResolver {
 
     	private final Class<?> payloadType;
@@ -0,0 +1,36 @@
+package com.sundy.axon.common.annotation;
+
+/**
+ * 编译期生成的处理方法索引，由axon-processor模块中的注解处理器为每个声明了处理方法的类生成。
+ * 生成的类与被索引的类在同一个包中，名称为被索引类的二进制名称加上"$$HandlerIndex"后缀，并且有一个公共的无参构造函数
+ * <p/>
+ * 索引只包含该类自己声明的方法，父类和接口有各自的索引。存在索引时，{@link MethodMessageHandlerInspector}只检查索引中的方法，
+ * 不再扫描整个类层次中的所有方法
+ * <p/>
+ * 索引同时记录了生成时该类声明的方法的指纹。类在生成索引之后增加、删除或修改了方法而没有重新运行注解处理器时，指纹不再匹配，
+ * 索引会被忽略。只给已有的方法添加处理注解不会改变指纹，这种情况必须重新运行注解处理器
+ * @author Administrator
+ *
+ */
+public interface HandlerIndex {
+
+	/**
+	 * 返回生成该索引时处理的注解类型的全限定名称。只有在查找这些注解标注的处理方法时才会使用该索引
+	 * @return
+	 */
+	String[] indexedAnnotations();
+
+	/**
+	 * 返回该类中声明的、带有{@link #indexedAnnotations()}中任一注解的方法。每个元素的第一项是方法名称，
+	 * 之后依次是各个参数类型的二进制名称(与{@link Class#getName()}的格式相同)
+	 * @return
+	 */
+	String[][] handlerMethods();
+
+	/**
+	 * 返回生成索引时该类声明的方法的指纹，计算方式见{@link HandlerIndexes#fingerprintOf(Class)}
+	 * @return
+	 */
+	String fingerprint();
+
+}
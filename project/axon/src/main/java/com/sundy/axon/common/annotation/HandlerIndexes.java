@@ -0,0 +1,190 @@
+package com.sundy.axon.common.annotation;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sundy.axon.common.ReflectionUtils;
+
+/**
+ * 读取编译期生成的{@link HandlerIndex}，列出一个类层次中可能是处理方法的方法。有索引的类只返回索引中的方法，
+ * 没有索引的类返回所有声明的方法。java.*中的类不会声明处理方法，直接跳过
+ * <p/>
+ * 每个类的索引只加载和解析一次。索引的指纹与类当前声明的方法不一致，或者索引中的方法无法解析时
+ * (比如类在生成索引后被修改，而重新编译时没有运行注解处理器)，该类退回到反射扫描
+ * @author Administrator
+ *
+ */
+final class HandlerIndexes {
+
+	private static final Logger logger = LoggerFactory.getLogger(HandlerIndexes.class);
+	private static final String INDEX_SUFFIX = "$$HandlerIndex";
+	private static final ResolvedIndex NO_INDEX = new ResolvedIndex(Collections.<String>emptySet(), new Method[0]);
+	private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+	static {
+		for (Class<?> type : new Class<?>[] {boolean.class, byte.class, short.class, char.class, int.class, long.class,
+				float.class, double.class}) {
+			PRIMITIVES.put(type.getName(), type);
+		}
+	}
+
+	private static final ClassValue<ResolvedIndex> INDEXES = new ClassValue<ResolvedIndex>() {
+		@Override
+		protected ResolvedIndex computeValue(Class<?> type) {
+			return loadIndex(type);
+		}
+	};
+
+	private HandlerIndexes() {
+	}
+
+	/**
+	 * 返回给定类层次中可能被给定的处理器定义识别为处理方法的方法，调用者仍然需要用处理器定义检查每个方法。
+	 * 只有基于注解的处理器定义可以使用索引，其它的处理器定义返回{@link ReflectionUtils#methodsOf(Class)}的结果
+	 * @param clazz
+	 * @param handlerDefinition
+	 * @return
+	 */
+	static Iterable<Method> methodsOf(Class<?> clazz, HandlerDefinition<? super Method> handlerDefinition) {
+		if (!(handlerDefinition instanceof AbstractAnnotatedHandlerDefinition)) {
+			return ReflectionUtils.methodsOf(clazz);
+		}
+		String annotationType = ((AbstractAnnotatedHandlerDefinition<?>) handlerDefinition).getAnnotationType().getName();
+		List<Method> methods = new LinkedList<Method>();
+		Class<?> currentClazz = clazz;
+		do {
+			addMethods(currentClazz, annotationType, methods);
+			addMethodsOnDeclaredInterfaces(currentClazz, annotationType, methods);
+			currentClazz = currentClazz.getSuperclass();
+		} while (currentClazz != null);
+		return Collections.unmodifiableList(methods);
+	}
+
+	private static void addMethodsOnDeclaredInterfaces(Class<?> clazz, String annotationType, List<Method> methods) {
+		for (Class<?> iface : clazz.getInterfaces()) {
+			addMethods(iface, annotationType, methods);
+			addMethodsOnDeclaredInterfaces(iface, annotationType, methods);
+		}
+	}
+
+	private static void addMethods(Class<?> clazz, String annotationType, List<Method> methods) {
+		if (clazz.getName().startsWith("java.")) {
+			return;
+		}
+		ResolvedIndex index = INDEXES.get(clazz);
+		if (index != NO_INDEX && index.annotations.contains(annotationType)) {
+			methods.addAll(Arrays.asList(index.methods));
+		} else {
+			methods.addAll(Arrays.asList(clazz.getDeclaredMethods()));
+		}
+	}
+
+	private static ResolvedIndex loadIndex(Class<?> type) {
+		ClassLoader classLoader = type.getClassLoader();
+		if (classLoader == null) {
+			return NO_INDEX;
+		}
+		HandlerIndex index;
+		String fingerprint;
+		try {
+			index = (HandlerIndex) Class.forName(type.getName() + INDEX_SUFFIX, true, classLoader)
+					.getDeclaredConstructor().newInstance();
+			fingerprint = index.fingerprint();
+		} catch (ClassNotFoundException e) {
+			return NO_INDEX;
+		} catch (Exception e) {
+			logger.warn("Ignoring the handler index of [{}]: it cannot be instantiated", type.getName(), e);
+			return NO_INDEX;
+		} catch (AbstractMethodError e) {
+			logger.warn("Ignoring the handler index of [{}]: it was generated by an older processor. "
+					+ "Recompile the class.", type.getName());
+			return NO_INDEX;
+		}
+		if (!fingerprintOf(type).equals(fingerprint)) {
+			logger.warn("Ignoring the handler index of [{}]: the class was changed after the index was generated. "
+					+ "Recompile the class with the annotation processor enabled.", type.getName());
+			return NO_INDEX;
+		}
+		try {
+			String[][] handlerMethods = index.handlerMethods();
+			Method[] methods = new Method[handlerMethods.length];
+			for (int i = 0; i < handlerMethods.length; i++) {
+				Class<?>[] parameterTypes = new Class<?>[handlerMethods[i].length - 1];
+				for (int p = 0; p < parameterTypes.length; p++) {
+					parameterTypes[p] = resolveType(handlerMethods[i][p + 1], classLoader);
+				}
+				methods[i] = type.getDeclaredMethod(handlerMethods[i][0], parameterTypes);
+			}
+			return new ResolvedIndex(new HashSet<String>(Arrays.asList(index.indexedAnnotations())), methods);
+		} catch (ClassNotFoundException e) {
+			logger.warn("Ignoring the handler index of [{}]: it does not match the class. Recompile the class.",
+					type.getName());
+		} catch (NoSuchMethodException e) {
+			logger.warn("Ignoring the handler index of [{}]: it does not match the class. Recompile the class.",
+					type.getName());
+		}
+		return NO_INDEX;
+	}
+
+	/**
+	 * 计算给定类声明的方法的指纹，不包括编译器生成的合成方法和桥接方法。每个方法表示为"名称(参数类型的二进制名称,...)"，
+	 * 排序后用换行符连接，指纹为"方法个数:连接后字符串的hashCode的十六进制表示"。注解处理器用同样的方式计算指纹
+	 * @param type
+	 * @return
+	 */
+	static String fingerprintOf(Class<?> type) {
+		List<String> signatures = new ArrayList<String>();
+		for (Method method : type.getDeclaredMethods()) {
+			if (method.isSynthetic() || method.isBridge()) {
+				continue;
+			}
+			StringBuilder signature = new StringBuilder(method.getName()).append('(');
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (i > 0) {
+					signature.append(',');
+				}
+				signature.append(parameterTypes[i].getName());
+			}
+			signatures.add(signature.append(')').toString());
+		}
+		Collections.sort(signatures);
+		StringBuilder joined = new StringBuilder();
+		for (String signature : signatures) {
+			if (joined.length() > 0) {
+				joined.append('\n');
+			}
+			joined.append(signature);
+		}
+		return signatures.size() + ":" + Integer.toHexString(joined.toString().hashCode());
+	}
+
+	private static Class<?> resolveType(String name, ClassLoader classLoader) throws ClassNotFoundException {
+		Class<?> primitive = PRIMITIVES.get(name);
+		return primitive != null ? primitive : Class.forName(name, false, classLoader);
+	}
+
+	private static final class ResolvedIndex {
+
+		private final Set<String> annotations;
+		private final Method[] methods;
+
+		private ResolvedIndex(Set<String> annotations, Method[] methods) {
+			this.annotations = annotations;
+			this.methods = methods;
+		}
+	}
+
+}
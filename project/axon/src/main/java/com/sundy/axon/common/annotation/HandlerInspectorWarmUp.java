@@ -0,0 +1,224 @@
+package com.sundy.axon.common.annotation;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.joda.time.DateTime;
+
+import com.sundy.axon.commandhandling.annotation.AggregateCommandHandlerInspector;
+import com.sundy.axon.commandhandling.annotation.CommandHandler;
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.common.AxonConfigurationException;
+import com.sundy.axon.common.ParameterResolverFactory;
+import com.sundy.axon.domain.AggregateRoot;
+import com.sundy.axon.domain.EventMessage;
+import com.sundy.axon.domain.MetaData;
+import com.sundy.axon.saga.annotation.AbstractAnnotatedSaga;
+import com.sundy.axon.saga.annotation.SagaEventHandler;
+import com.sundy.axon.saga.annotation.SagaMethodMessageHandlerInspector;
+
+/**
+ * 在应用启动时并行地预先构建处理器检查器，避免第一批真实请求承担扫描处理方法、创建参数解析器的开销。
+ * {@link MethodMessageHandlerInspector}和{@link SagaMethodMessageHandlerInspector}被放入各自的缓存中，
+ * 之后聚合、saga和监听器使用的就是这里构建的实例。无效的处理方法在启动时就会报错
+ * <p/>
+ * {@link AggregateCommandHandlerInspector}没有缓存，这里构建它只是为了校验聚合中嵌套实体和构造函数上的命令处理器，
+ * 构建的实例随即被丢弃
+ * <p/>
+ * 可以选择对每个处理方法的载荷类型重复执行处理器查找，以填充按载荷类型的查找缓存并触发JIT编译。
+ * 查找使用不带载荷的合成消息，处理方法本身不会被调用
+ * @author Administrator
+ *
+ */
+public class HandlerInspectorWarmUp {
+
+	private final ForkJoinPool pool;
+	private final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+	private int lookupIterations = 0;
+
+	/**
+	 * 使用公共的ForkJoinPool
+	 */
+	public HandlerInspectorWarmUp() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool 构建检查器所用的线程池
+	 */
+	public HandlerInspectorWarmUp(ForkJoinPool pool) {
+		Assert.notNull(pool, "pool may not be null");
+		this.pool = pool;
+	}
+
+	/**
+	 * 设置构建检查器之后，对每个处理方法的载荷类型执行处理器查找的次数，默认为0，即不执行查找
+	 * @param lookupIterations
+	 */
+	public void setLookupIterations(int lookupIterations) {
+		Assert.isTrue(lookupIterations >= 0, "lookupIterations may not be negative");
+		this.lookupIterations = lookupIterations;
+	}
+
+	/**
+	 * 添加一个聚合类型，预先构建聚合根上命令处理方法的检查器，并通过构建{@link AggregateCommandHandlerInspector}
+	 * 校验嵌套实体和构造函数上的命令处理器
+	 * @param aggregateType
+	 */
+	public <T extends AggregateRoot> void addAggregateType(final Class<T> aggregateType) {
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				ParameterResolverFactory parameterResolverFactory =
+						ClasspathParameterResolverFactory.forClass(aggregateType);
+				MethodMessageHandlerInspector inspector = MethodMessageHandlerInspector.getInstance(aggregateType,
+						CommandHandler.class, parameterResolverFactory, true);
+				// 只用于校验，AggregateAnnotationCommandHandler会构建自己的实例
+				new AggregateCommandHandlerInspector<T>(aggregateType, parameterResolverFactory);
+				exercise(inspector);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 添加一个saga类型，构建它的{@link SagaMethodMessageHandlerInspector}
+	 * @param sagaType
+	 */
+	public <T extends AbstractAnnotatedSaga> void addSagaType(final Class<T> sagaType) {
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				SagaMethodMessageHandlerInspector<T> inspector = SagaMethodMessageHandlerInspector.getInstance(sagaType,
+						ClasspathParameterResolverFactory.forClass(sagaType));
+				exercise(inspector);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 添加一个使用给定注解标注处理方法的类型(比如事件监听器)，构建它的{@link MethodMessageHandlerInspector}
+	 * @param handlerType 包含处理方法的类
+	 * @param annotationType 标注处理方法的注解
+	 * @param allowDuplicates 是否允许多个处理方法处理同一个载荷类型，必须与使用该类型的组件一致
+	 */
+	public void addHandlerType(final Class<?> handlerType, final Class<? extends Annotation> annotationType,
+			final boolean allowDuplicates) {
+		tasks.add(new Callable<Void>() {
+			@Override
+			public Void call() {
+				exercise(MethodMessageHandlerInspector.getInstance(handlerType, annotationType,
+						ClasspathParameterResolverFactory.forClass(handlerType), allowDuplicates));
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 并行地构建所有添加的检查器，直到全部完成才返回。任何一个类型的检查失败时，抛出第一个失败的异常
+	 */
+	public void warmUp() {
+		List<Future<Void>> results = pool.invokeAll(tasks);
+		for (Future<Void> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AxonConfigurationException("Interrupted while warming up the handler inspectors", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new AxonConfigurationException("Unable to warm up the handler inspectors", e.getCause());
+			}
+		}
+	}
+
+	private void exercise(MethodMessageHandlerInspector inspector) {
+		for (int i = 0; i < lookupIterations; i++) {
+			for (MethodMessageHandler handler : inspector.getHandlers()) {
+				try {
+					inspector.findHandlerMethod(new WarmUpMessage(handler.getPayloadType()));
+				} catch (RuntimeException e) {
+					// 参数解析器需要真实的载荷，跳过
+				}
+			}
+		}
+	}
+
+	private void exercise(SagaMethodMessageHandlerInspector<?> inspector) {
+		if (lookupIterations == 0) {
+			return;
+		}
+		// 与SagaMethodMessageHandlerInspector使用相同的缓存键，得到的是它内部使用的检查器
+		MethodMessageHandlerInspector handlerInspector = MethodMessageHandlerInspector.getInstance(
+				inspector.getSagaType(), SagaEventHandler.class,
+				inspector.getParameterResolverFactory(), true);
+		for (int i = 0; i < lookupIterations; i++) {
+			for (MethodMessageHandler handler : handlerInspector.getHandlers()) {
+				try {
+					inspector.getMessageHandlers(new WarmUpMessage(handler.getPayloadType()));
+				} catch (RuntimeException e) {
+					// 参数解析器需要真实的载荷，跳过
+				}
+			}
+		}
+	}
+
+	/**
+	 * 只有载荷类型的合成消息，用于查找处理器
+	 */
+	private static final class WarmUpMessage implements EventMessage<Object> {
+
+		private static final long serialVersionUID = -3418521409176547394L;
+
+		private final Class<?> payloadType;
+
+		private WarmUpMessage(Class<?> payloadType) {
+			this.payloadType = payloadType;
+		}
+
+		@Override
+		public String getIdentifier() {
+			return "warm-up";
+		}
+
+		@Override
+		public MetaData getMetaData() {
+			return MetaData.emptyInstance();
+		}
+
+		@Override
+		public Object getPayload() {
+			return null;
+		}
+
+		@Override
+		public Class getPayloadType() {
+			return payloadType;
+		}
+
+		@Override
+		public DateTime getTimeStamp() {
+			return null;
+		}
+
+		@Override
+		public EventMessage<Object> withMetaData(Map<String, ?> metaData) {
+			return this;
+		}
+
+		@Override
+		public EventMessage<Object> andMetaData(Map<String, ?> metaData) {
+			return this;
+		}
+	}
+
+}
@@ -1,9 +1,16 @@
 package com.sundy.axon.common.annotation;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import com.sundy.axon.common.Assert;
 import com.sundy.axon.common.ParameterResolver;
@@ -12,13 +19,44 @@ import com.sundy.axon.common.ReflectionUtils;
 import com.sundy.axon.domain.EventMessage;
 import com.sundy.axon.domain.Message;
 
+/**
+ * 调用单个处理方法的消息处理器。创建时为方法生成一个MethodHandle，参数个数为1到3的方法使用固定参数个数的调用器，
+ * 调用时不再分配参数数组，也不经过{@link Method#invoke(Object, Object...)}。
+ * <p/>
+ * 异常的语义与{@link Method#invoke(Object, Object...)}相同：参数在调用处理方法之前解析，参数解析器抛出的异常原样抛出；
+ * 参数值与参数类型不符(包括基本类型的参数值为null)时抛出{@link IllegalArgumentException}；
+ * 只有处理方法本身抛出的异常才被包装成{@link InvocationTargetException}
+ * @author Administrator
+ *
+ */
 public final class MethodMessageHandler extends AbstractMessageHandler {
 
+	// 每个基本类型的参数可以接受的包装类型：对应的包装类型，以及可以通过拓宽转换得到该基本类型的包装类型，与Method.invoke允许的转换相同
+	private static final Map<Class<?>, Set<Class<?>>> ACCEPTED_WRAPPERS = new HashMap<Class<?>, Set<Class<?>>>();
+
+	static {
+		accept(boolean.class, Boolean.class);
+		accept(byte.class, Byte.class);
+		accept(short.class, Short.class, Byte.class);
+		accept(char.class, Character.class);
+		accept(int.class, Integer.class, Short.class, Byte.class, Character.class);
+		accept(long.class, Long.class, Integer.class, Short.class, Byte.class, Character.class);
+		accept(float.class, Float.class, Long.class, Integer.class, Short.class, Byte.class, Character.class);
+		accept(double.class, Double.class, Float.class, Long.class, Integer.class, Short.class, Byte.class,
+				Character.class);
+	}
+
+	private static void accept(Class<?> primitiveType, Class<?>... wrapperTypes) {
+		ACCEPTED_WRAPPERS.put(primitiveType, new HashSet<Class<?>>(Arrays.asList(wrapperTypes)));
+	}
+
 	private final Method method;
+	private final Invoker invoker;
 	
 	private MethodMessageHandler(Method method, ParameterResolver[] resolvers, Class<?> payloadType) {
 		super(payloadType, method.getDeclaringClass(), resolvers);
 		this.method = method;
+		this.invoker = createInvoker(method, getParameterValueResolvers());
 	}
 
 	public static MethodMessageHandler createFor(Method method, Class<?> explicitPayloadType, ParameterResolverFactory parameterResolverFactory){
@@ -67,11 +105,7 @@ public final class MethodMessageHandler extends AbstractMessageHandler {
 		Assert.isTrue(method.getDeclaringClass().isInstance(target),
                 "Given target is not an instance of the method's owner.");
 		Assert.notNull(message, "Event may not be null");
-		Object[] parameterValues = new Object[getParameterValueResolvers().length];
-		for (int i = 0; i < parameterValues.length; i++) {
-			parameterValues[i] = getParameterValueResolvers()[i].resolveParameterValue(message);
-		}
-		return method.invoke(target, parameterValues);
+		return invoker.invoke(target, message);
 	}
 
 	@Override
@@ -111,4 +145,193 @@ public final class MethodMessageHandler extends AbstractMessageHandler {
         return result;
     }
 
+	/**
+	 * 为给定的方法创建调用器，方法句柄的类型被转换为(Object, Object...)Object的形式。无法创建方法句柄时使用反射调用
+	 */
+	private static Invoker createInvoker(Method method, ParameterResolver[] resolvers) {
+		MethodHandle handle;
+		try {
+			handle = MethodHandles.lookup().unreflect(method);
+		} catch (IllegalAccessException e) {
+			return new ReflectiveInvoker(method, resolvers);
+		}
+		handle = handle.asType(MethodType.genericMethodType(resolvers.length + 1));
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		switch (resolvers.length) {
+			case 1:
+				return new Invoker1(handle, new Argument(parameterTypes[0], resolvers[0]));
+			case 2:
+				return new Invoker2(handle, new Argument(parameterTypes[0], resolvers[0]),
+						new Argument(parameterTypes[1], resolvers[1]));
+			case 3:
+				return new Invoker3(handle, new Argument(parameterTypes[0], resolvers[0]),
+						new Argument(parameterTypes[1], resolvers[1]), new Argument(parameterTypes[2], resolvers[2]));
+			default:
+				Argument[] arguments = new Argument[resolvers.length];
+				for (int i = 0; i < arguments.length; i++) {
+					arguments[i] = new Argument(parameterTypes[i], resolvers[i]);
+				}
+				return new SpreadingInvoker(handle.asSpreader(Object[].class, resolvers.length), arguments);
+		}
+	}
+
+	private abstract static class Invoker {
+
+		/**
+		 * 解析参数并调用处理方法，只有处理方法抛出的异常被包装成{@link InvocationTargetException}
+		 */
+		abstract Object invoke(Object target, Message message) throws InvocationTargetException, IllegalAccessException;
+	}
+
+	/**
+	 * 一个参数的解析器和参数类型。解析出的值在调用方法句柄之前检查，保证方法句柄的参数转换不会失败，
+	 * 调用过程中抛出的异常都来自处理方法本身
+	 */
+	private static final class Argument {
+
+		private final Class<?> type;
+		private final Class<?> referenceType;
+		private final Set<Class<?>> acceptedWrappers;
+		private final ParameterResolver resolver;
+
+		private Argument(Class<?> type, ParameterResolver resolver) {
+			this.type = type;
+			this.referenceType = type.isPrimitive() ? null : type;
+			this.acceptedWrappers = type.isPrimitive() ? ACCEPTED_WRAPPERS.get(type) : null;
+			this.resolver = resolver;
+		}
+
+		Object resolve(Message message) {
+			Object value = resolver.resolveParameterValue(message);
+			if (referenceType != null) {
+				if (value != null && !referenceType.isInstance(value)) {
+					throw new IllegalArgumentException("argument type mismatch: " + value.getClass().getName()
+							+ " cannot be passed as " + type.getName());
+				}
+			} else if (value == null) {
+				throw new IllegalArgumentException("null cannot be passed as primitive type " + type.getName());
+			} else if (!acceptedWrappers.contains(value.getClass())) {
+				throw new IllegalArgumentException("argument type mismatch: " + value.getClass().getName()
+						+ " cannot be passed as " + type.getName());
+			}
+			return value;
+		}
+	}
+
+	private static final class Invoker1 extends Invoker {
+
+		private final MethodHandle handle;
+		private final Argument argument0;
+
+		private Invoker1(MethodHandle handle, Argument argument0) {
+			this.handle = handle;
+			this.argument0 = argument0;
+		}
+
+		@Override
+		Object invoke(Object target, Message message) throws InvocationTargetException {
+			Object value0 = argument0.resolve(message);
+			try {
+				return handle.invokeExact(target, value0);
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static final class Invoker2 extends Invoker {
+
+		private final MethodHandle handle;
+		private final Argument argument0;
+		private final Argument argument1;
+
+		private Invoker2(MethodHandle handle, Argument argument0, Argument argument1) {
+			this.handle = handle;
+			this.argument0 = argument0;
+			this.argument1 = argument1;
+		}
+
+		@Override
+		Object invoke(Object target, Message message) throws InvocationTargetException {
+			Object value0 = argument0.resolve(message);
+			Object value1 = argument1.resolve(message);
+			try {
+				return handle.invokeExact(target, value0, value1);
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static final class Invoker3 extends Invoker {
+
+		private final MethodHandle handle;
+		private final Argument argument0;
+		private final Argument argument1;
+		private final Argument argument2;
+
+		private Invoker3(MethodHandle handle, Argument argument0, Argument argument1, Argument argument2) {
+			this.handle = handle;
+			this.argument0 = argument0;
+			this.argument1 = argument1;
+			this.argument2 = argument2;
+		}
+
+		@Override
+		Object invoke(Object target, Message message) throws InvocationTargetException {
+			Object value0 = argument0.resolve(message);
+			Object value1 = argument1.resolve(message);
+			Object value2 = argument2.resolve(message);
+			try {
+				return handle.invokeExact(target, value0, value1, value2);
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static final class SpreadingInvoker extends Invoker {
+
+		private final MethodHandle handle;
+		private final Argument[] arguments;
+
+		private SpreadingInvoker(MethodHandle handle, Argument[] arguments) {
+			this.handle = handle;
+			this.arguments = arguments;
+		}
+
+		@Override
+		Object invoke(Object target, Message message) throws InvocationTargetException {
+			Object[] values = new Object[arguments.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = arguments[i].resolve(message);
+			}
+			try {
+				return handle.invokeExact(target, values);
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	private static final class ReflectiveInvoker extends Invoker {
+
+		private final Method method;
+		private final ParameterResolver[] resolvers;
+
+		private ReflectiveInvoker(Method method, ParameterResolver[] resolvers) {
+			this.method = method;
+			this.resolvers = resolvers;
+		}
+
+		@Override
+		Object invoke(Object target, Message message) throws InvocationTargetException, IllegalAccessException {
+			Object[] parameterValues = new Object[resolvers.length];
+			for (int i = 0; i < parameterValues.length; i++) {
+				parameterValues[i] = resolvers[i].resolveParameterValue(message);
+			}
+			return method.invoke(target, parameterValues);
+		}
+	}
+
 }
@@ -12,7 +12,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import com.sundy.axon.common.ParameterResolverFactory;
-import com.sundy.axon.common.ReflectionUtils;
 import com.sundy.axon.domain.Message;
 
 /**
@@ -25,6 +24,8 @@ public final class MethodMessageHandlerInspector {
 	private final Class<?> targetType;
 	private final List<MethodMessageHandler> handlers = new ArrayList<MethodMessageHandler>();
 	private final ParameterResolverFactory parameterResolverFactory;
+	// 载荷类型 -> 可能匹配的处理器，没有候选处理器时为空数组
+	private final ConcurrentMap<Class<?>, MethodMessageHandler[]> candidates = new ConcurrentHashMap<Class<?>, MethodMessageHandler[]>();
 	
 	private static final ConcurrentMap<String, MethodMessageHandlerInspector> INSPECTORS = new ConcurrentHashMap<String, MethodMessageHandlerInspector>();
 	
@@ -41,7 +42,7 @@ public final class MethodMessageHandlerInspector {
 			HandlerDefinition<? super Method> handlerDefinition) {
 		this.parameterResolverFactory = parameterResolverFactory;
 		this.targetType = handlerClass;
-		Iterable<Method> methods = ReflectionUtils.methodsOf(handlerClass);
+		Iterable<Method> methods = HandlerIndexes.methodsOf(handlerClass, handlerDefinition);
 		NavigableSet<MethodMessageHandler> uniqueHandlers = new TreeSet<MethodMessageHandler>();
 		for(Method method : methods){
 			if(handlerDefinition.isMessageHandler(method)){
@@ -114,15 +115,51 @@ public final class MethodMessageHandlerInspector {
         INSPECTORS.clear();
     }
 	
+	/**
+	 * 返回第一个匹配给定消息的处理器，没有时返回null。
+	 * <p/>
+	 * 每个载荷类型第一次出现时，会按顺序找出载荷类型与之兼容的处理器并缓存起来，第一个只依赖载荷类型的处理器之后的处理器不会被使用，
+	 * 也不会被缓存。之后同一载荷类型的消息只需要对候选处理器检查参数
+	 * @param message
+	 * @return
+	 */
 	public MethodMessageHandler findHandlerMethod(final Message message){
-		for (MethodMessageHandler methodMessageHandler : handlers) {
-			if(methodMessageHandler.matches(message)){
+		Class<?> payloadType = message.getPayloadType();
+		if (payloadType == null) {
+			for (MethodMessageHandler methodMessageHandler : handlers) {
+				if(methodMessageHandler.matches(message)){
+					return methodMessageHandler;
+				}
+			}
+			return null;
+		}
+		MethodMessageHandler[] handlerCandidates = candidates.get(payloadType);
+		if (handlerCandidates == null) {
+			handlerCandidates = candidatesFor(payloadType);
+			candidates.putIfAbsent(payloadType, handlerCandidates);
+		}
+		for (MethodMessageHandler methodMessageHandler : handlerCandidates) {
+			if(methodMessageHandler.isPayloadTypeOnly() || methodMessageHandler.matches(message)){
 				return methodMessageHandler;
 			}
 		}
 		return null;
 	}
 	
+	private MethodMessageHandler[] candidatesFor(Class<?> payloadType) {
+		List<MethodMessageHandler> handlerCandidates = new ArrayList<MethodMessageHandler>();
+		for (MethodMessageHandler methodMessageHandler : handlers) {
+			Class<?> handledType = methodMessageHandler.getPayloadType();
+			if (handledType == null || handledType.isAssignableFrom(payloadType)) {
+				handlerCandidates.add(methodMessageHandler);
+				if (methodMessageHandler.isPayloadTypeOnly()) {
+					break;
+				}
+			}
+		}
+		return handlerCandidates.toArray(new MethodMessageHandler[handlerCandidates.size()]);
+	}
+	
 	
 	
 	public List<MethodMessageHandler> getHandlers() {
@@ -1,10 +1,7 @@
 package com.sundy.axon.common.lock;
 
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
@@ -18,37 +15,18 @@ import java.util.concurrent.locks.ReentrantLock;
  * @author Administrator
  *
  */
-public class IdentifierBasedLock {
+public class IdentifierBasedLock implements IdentifierLockManager {
 
-	private static final Set<IdentifierBasedLock> INSTANCES = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<IdentifierBasedLock, Boolean>()));
+	/**
+	 * 等待图(wait-for graph)：记录每个正在等待的线程所等待的锁，锁的持有者即为图中的下一个节点。
+	 * 线程开始等待时添加一条边，获取到锁(或放弃等待)时移除该边。由于每个线程同一时刻只会等待一把锁，
+	 * 死锁检测只需要沿着新加入的边往下走，而不需要遍历所有实例持有的所有锁
+	 */
+	private static final ConcurrentHashMap<Thread, PubliclyOwnedReentrantLock> WAITS_FOR = new ConcurrentHashMap<Thread, PubliclyOwnedReentrantLock>();
 	
 	private final ConcurrentHashMap<String, DisposableLock> locks = new ConcurrentHashMap<String, DisposableLock>();
 	
-	public IdentifierBasedLock() {
-        INSTANCES.add(this);
-    }
-	
-	private static Set<Thread> threadsWaitingForMyLocks(Thread owner) {
-        return threadsWaitingForMyLocks(owner, INSTANCES);
-    }
-	
-	private static Set<Thread> threadsWaitingForMyLocks(Thread owner, Set<IdentifierBasedLock> locksInUse){
-		Set<Thread> waitingThreads = new HashSet<Thread>();
-		for(IdentifierBasedLock lock : locksInUse){
-			for(DisposableLock disposableLock : lock.locks.values()){
-				if(disposableLock.isHeldBy(owner)){
-					final Collection<Thread> c = disposableLock.queuedThreads();
-					for(Thread thread : c){
-						if(waitingThreads.add(thread)){
-							waitingThreads.addAll(threadsWaitingForMyLocks(thread, locksInUse));
-						}
-					}
-				}
-			}
-		}
-		return waitingThreads;
-	}
-	
+	@Override
 	public boolean hasLock(String identifier){
 		return isLockAvailableFor(identifier) && lockFor(identifier).isHeldByCurrentThread();
 	}
@@ -59,6 +37,7 @@ public class IdentifierBasedLock {
 	 * 注意:在获取锁的过程中发生了异常，那么这个锁有可能获取不到
 	 * @param identifier
 	 */
+	@Override
 	public void obtainLock(String identifier){
 		boolean lockObtained = false;
 		while(!lockObtained){
@@ -70,6 +49,7 @@ public class IdentifierBasedLock {
 		}
 	}
 	
+	@Override
 	public void releaseLock(String identifier){
 		if(!locks.containsKey(identifier)){
 			throw new IllegalLockUsageException("No lock for this identifier was ever obtained");
@@ -129,9 +109,15 @@ public class IdentifierBasedLock {
 		private boolean lock(){
 			try {
 				if(!lock.tryLock(0, TimeUnit.MILLISECONDS)){
-					do {
-						checkForDeadlock();
-					} while (!lock.tryLock(100, TimeUnit.MILLISECONDS));
+					Thread current = Thread.currentThread();
+					WAITS_FOR.put(current, lock);
+					try {
+						do {
+							checkForDeadlock(current);
+						} while (!lock.tryLock(100, TimeUnit.MILLISECONDS));
+					} finally {
+						WAITS_FOR.remove(current);
+					}
 				}
 			} catch (InterruptedException e) {
 				throw new LockAcquisitionFailedException("Thread was interrupted", e);
@@ -143,24 +129,32 @@ public class IdentifierBasedLock {
 			return true;
 		}
 
-		private void checkForDeadlock() {
-			if(!lock.isHeldByCurrentThread()&&lock.isLocked()){
-				for(Thread thread : threadsWaitingForMyLocks(Thread.currentThread())){
-					if(lock.isHeldBy(thread)){
-						throw new DeadlockException("An imminent deadlock was detected while attempting to acquire a lock");
-					}
+		/**
+		 * 从当前锁的持有者开始，沿着等待图往下查找。如果最终回到了当前线程，说明即将发生死锁
+		 * @param current 当前等待的线程
+		 */
+		private void checkForDeadlock(Thread current) {
+			Set<Thread> visited = null;
+			Thread owner = lock.owner();
+			while(owner != null){
+				if(owner == current){
+					throw new DeadlockException("An imminent deadlock was detected while attempting to acquire a lock");
+				}
+				PubliclyOwnedReentrantLock awaited = WAITS_FOR.get(owner);
+				if(awaited == null){
+					return;
+				}
+				if(visited == null){
+					visited = new HashSet<Thread>();
 				}
+				if(!visited.add(owner)){
+					// 其他线程之间的环，与当前线程无关
+					return;
+				}
+				owner = awaited.owner();
 			}
 		}
 		
-		public Collection<Thread> queuedThreads() {
-            return lock.getQueuedThreads();
-        }
-
-        public boolean isHeldBy(Thread owner) {
-            return lock.isHeldBy(owner);
-        }
-		
 	}
 	
 	
@@ -168,13 +162,8 @@ public class IdentifierBasedLock {
 		
 		private static final long serialVersionUID = -2259228494514612163L;
 
-        @Override
-        public Collection<Thread> getQueuedThreads() { // NOSONAR
-            return super.getQueuedThreads();
-        }
-
-        public boolean isHeldBy(Thread thread) {
-            return thread.equals(getOwner());
+        public Thread owner() {
+            return getOwner();
         }
 	}
 	
@@ -0,0 +1,33 @@
+package com.sundy.axon.common.lock;
+
+/**
+ * 基于识别码(比如聚合或saga的唯一标识符)进行加锁的锁管理器的约定
+ * <p/>
+ * 实现类必须保证锁是可重入的，即同一个线程可以多次获取同一个识别码的锁，释放的次数必须和获取的次数一致
+ * @author Administrator
+ *
+ */
+public interface IdentifierLockManager {
+
+	/**
+	 * 判断当前线程是否持有给定识别码的锁
+	 * @param identifier
+	 * @return
+	 */
+	boolean hasLock(String identifier);
+	
+	/**
+	 * 根据给定的识别码获取锁，该方法会阻塞直到成功获取到锁
+	 * @param identifier
+	 * @throws LockAcquisitionFailedException 获取锁的过程中线程被中断或者检测到死锁
+	 */
+	void obtainLock(String identifier);
+	
+	/**
+	 * 释放当前线程持有的给定识别码的锁
+	 * @param identifier
+	 * @throws IllegalLockUsageException 当前线程并没有持有该识别码的锁
+	 */
+	void releaseLock(String identifier);
+	
+}
@@ -0,0 +1,107 @@
+package com.sundy.axon.common.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sundy.axon.common.Assert;
+
+/**
+ * 基于分段(stripe)的锁管理器，在创建时分配固定数量的锁，识别码通过hash映射到其中一把锁上
+ * <p/>
+ * 和{@link IdentifierBasedLock}不同，该实现不会为每个识别码创建锁对象，只有每个线程第一次加锁时才会分配记录
+ * 该线程所持有识别码的列表。等待锁的线程会被挂起(park)，而不是每隔一段时间轮询一次
+ * <p/>
+ * 注意:不同的识别码可能映射到同一把锁上，所以持有某个识别码的锁可能会阻塞其他识别码的加锁操作。{@link #hasLock(String)}
+ * 和{@link #releaseLock(String)}只看当前线程获取过的识别码，不受这种碰撞的影响。该实现不做死锁检测，而且由于碰撞，
+ * 即使所有线程都按照相同的识别码顺序加锁也可能发生死锁。同一个线程需要同时持有多个识别码的锁时，应该使用
+ * {@link IdentifierBasedLock}
+ * @author Administrator
+ *
+ */
+public class StripedIdentifierLock implements IdentifierLockManager {
+
+	private static final int DEFAULT_STRIPES = 256;
+	
+	private static final int MAXIMUM_STRIPES = 1 << 16;
+	
+	private final ReentrantLock[] stripes;
+	
+	private final int mask;
+	
+	/**
+	 * 当前线程获取过并且还没有释放的识别码，重入时同一个识别码会出现多次
+	 */
+	private final ThreadLocal<List<String>> heldIdentifiers = new ThreadLocal<List<String>>() {
+		@Override
+		protected List<String> initialValue() {
+			return new ArrayList<String>();
+		}
+	};
+	
+	/**
+	 * 使用默认数量(256)的分段锁初始化
+	 */
+	public StripedIdentifierLock() {
+		this(DEFAULT_STRIPES);
+	}
+	
+	/**
+	 * 使用给定数量的分段锁初始化，该数量会被向上取整为2的幂
+	 * @param stripeCount 分段锁的数量，必须大于0
+	 */
+	public StripedIdentifierLock(int stripeCount) {
+		Assert.isTrue(stripeCount > 0, "stripeCount must be a positive number");
+		int size = 1;
+		while (size < stripeCount && size < MAXIMUM_STRIPES) {
+			size <<= 1;
+		}
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+	
+	@Override
+	public boolean hasLock(String identifier) {
+		return heldIdentifiers.get().contains(identifier);
+	}
+	
+	@Override
+	public void obtainLock(String identifier) {
+		try {
+			stripeFor(identifier).lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LockAcquisitionFailedException("Thread was interrupted", e);
+		}
+		heldIdentifiers.get().add(identifier);
+	}
+	
+	@Override
+	public void releaseLock(String identifier) {
+		List<String> held = heldIdentifiers.get();
+		int index = held.lastIndexOf(identifier);
+		if (index < 0) {
+			throw new IllegalLockUsageException("No lock for this identifier was ever obtained");
+		}
+		held.remove(index);
+		stripeFor(identifier).unlock();
+	}
+	
+	/**
+	 * 返回分段锁的数量
+	 * @return
+	 */
+	public int getStripeCount() {
+		return stripes.length;
+	}
+	
+	private ReentrantLock stripeFor(String identifier) {
+		int h = identifier.hashCode();
+		h ^= (h >>> 16);
+		return stripes[h & mask];
+	}
+	
+}
@@ -0,0 +1,136 @@
+package com.sundy.axon.repository;
+
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.domain.AggregateRoot;
+import com.sundy.axon.eventhandling.EventBus;
+import com.sundy.axon.unitofwork.CurrentUnitOfWork;
+import com.sundy.axon.unitofwork.SaveAggregateCallback;
+
+/**
+ * 基于乐观锁的仓库抽象实现，命令执行的过程中不会对聚合加任何锁
+ * <p/>
+ * 聚合在加载时会记录下当时的版本号，在工作单元提交并保存聚合时，由子类以比较并设置(compare-and-set)的方式
+ * 写入存储：只有存储中的版本号仍然是加载时的版本号，才允许写入。如果存储中的版本号已经发生了变化，
+ * 保存聚合的回调会抛出{@link ConflictingModificationException}，工作单元随之回滚
+ * <p/>
+ * 适用于并发修改同一个聚合的情况很少出现的场景。发生冲突的命令可以通过
+ * {@link com.sundy.axon.commandhandling.ConflictRetryingCallback}自动重试
+ * @author Administrator
+ *
+ * @param <T> 仓库中保存的聚合类型
+ */
+public abstract class OptimisticLockingRepository<T extends AggregateRoot> implements Repository<T> {
+
+	private final Class<T> aggregateType;
+	private volatile EventBus eventBus;
+	
+	/**
+	 * 根据给定的聚合类型初始化仓库
+	 * @param aggregateType
+	 */
+	protected OptimisticLockingRepository(Class<T> aggregateType) {
+		Assert.notNull(aggregateType, "aggregateType may not be null");
+		this.aggregateType = aggregateType;
+	}
+	
+	@Override
+	public void add(T aggregate) {
+		Assert.isTrue(aggregateType.isInstance(aggregate), "Unsuitable aggregate for this repository: wrong type");
+		if (aggregate.getVersion() != null) {
+			throw new IllegalArgumentException("Only newly created (unpersisted) aggregates may be added.");
+		}
+		CurrentUnitOfWork.get().registerAggregate(aggregate, eventBus, new VersionCheckingSaveCallback(null));
+	}
+	
+	@Override
+	public T load(Object aggregateIdentifier, Long expectedVersion) {
+		T aggregate = doLoad(aggregateIdentifier, expectedVersion);
+		validateOnLoad(aggregate, expectedVersion);
+		return CurrentUnitOfWork.get().registerAggregate(aggregate, eventBus,
+				new VersionCheckingSaveCallback(aggregate.getVersion()));
+	}
+	
+	@Override
+	public T load(Object aggregateIdentifier) {
+		return load(aggregateIdentifier, null);
+	}
+	
+	/**
+	 * 校验加载的聚合的版本号，如果给定了期望的版本号，而加载的聚合已经比期望的版本更新，则抛出{@link ConflictingModificationException}
+	 * @param aggregate 加载的聚合
+	 * @param expectedVersion 期望的版本号，可以为null
+	 */
+	protected void validateOnLoad(T aggregate, Long expectedVersion) {
+		if (expectedVersion != null && aggregate.getVersion() != null
+				&& !expectedVersion.equals(aggregate.getVersion())) {
+			throw new ConflictingModificationException(String.format(
+					"Aggregate [%s] has an unexpected version number. Expected [%s] but was [%s].",
+					aggregate.getIdentifier(), expectedVersion, aggregate.getVersion()));
+		}
+	}
+	
+	/**
+	 * 设置发布聚合事件使用的事件总线
+	 * @param eventBus
+	 */
+	public void setEventBus(EventBus eventBus) {
+		this.eventBus = eventBus;
+	}
+	
+	/**
+	 * 返回仓库中保存的聚合类型
+	 * @return
+	 */
+	protected Class<T> getAggregateType() {
+		return aggregateType;
+	}
+	
+	/**
+	 * 从存储中加载聚合
+	 * @param aggregateIdentifier 聚合的唯一标识符
+	 * @param expectedVersion 期望的版本号，可以为null
+	 * @throws AggregateNotFoundException 找不到对应识别码的聚合
+	 * @return
+	 */
+	protected abstract T doLoad(Object aggregateIdentifier, Long expectedVersion);
+	
+	/**
+	 * 当存储中的版本号仍然是<code>loadedVersion</code>时保存聚合，该检查和写入必须是原子的
+	 * (比如 <code>update ... where version = ?</code> 或者事件存储上聚合标识符和序列号的唯一约束)
+	 * @param aggregate 需要保存的聚合
+	 * @param loadedVersion 加载聚合时的版本号，新添加的聚合为null
+	 * @return 保存成功返回true，存储中的版本号已经发生变化返回false
+	 */
+	protected abstract boolean doSaveIfUnchanged(T aggregate, Long loadedVersion);
+	
+	/**
+	 * 当存储中的版本号仍然是<code>loadedVersion</code>时删除聚合，该检查和删除必须是原子的
+	 * @param aggregate 需要删除的聚合
+	 * @param loadedVersion 加载聚合时的版本号
+	 * @return 删除成功返回true，存储中的版本号已经发生变化返回false
+	 */
+	protected abstract boolean doDeleteIfUnchanged(T aggregate, Long loadedVersion);
+	
+	private final class VersionCheckingSaveCallback implements SaveAggregateCallback<T> {
+		
+		private final Long loadedVersion;
+		
+		private VersionCheckingSaveCallback(Long loadedVersion) {
+			this.loadedVersion = loadedVersion;
+		}
+		
+		@Override
+		public void save(T aggregate) {
+			boolean written = aggregate.isDeleted()
+					? doDeleteIfUnchanged(aggregate, loadedVersion)
+					: doSaveIfUnchanged(aggregate, loadedVersion);
+			if (!written) {
+				throw new ConflictingModificationException(String.format(
+						"Aggregate [%s] was modified concurrently. The stored version no longer matches version [%s] "
+						+ "that was loaded.", aggregate.getIdentifier(), loadedVersion));
+			}
+			aggregate.commitEvents();
+		}
+	}
+	
+}
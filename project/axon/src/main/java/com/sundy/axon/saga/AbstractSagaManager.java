@@ -15,6 +15,7 @@ import org.slf4j.LoggerFactory;
 import com.sundy.axon.common.Assert;
 import com.sundy.axon.common.Subscribable;
 import com.sundy.axon.common.lock.IdentifierBasedLock;
+import com.sundy.axon.common.lock.IdentifierLockManager;
 import com.sundy.axon.correlation.CorrelationDataHolder;
 import com.sundy.axon.correlation.CorrelationDataProvider;
 import com.sundy.axon.correlation.MultiCorrelationDataProvider;
@@ -30,7 +31,7 @@ public abstract class AbstractSagaManager extends AbstractReplayAwareSagaManager
     private final SagaRepository sagaRepository;
     private final SagaFactory sagaFactory;
     private final Class<? extends Saga>[] sagaTypes;
-    private final IdentifierBasedLock lock = new IdentifierBasedLock();
+    private volatile IdentifierLockManager lock = new IdentifierBasedLock();
     private final Map<String, Saga> sagasInCreation = new ConcurrentHashMap<String, Saga>();
     private volatile boolean suppressExceptions = true;
     private volatile boolean synchronizeSagaAccess = true;
@@ -183,6 +184,16 @@ public abstract class AbstractSagaManager extends AbstractReplayAwareSagaManager
 		this.synchronizeSagaAccess = synchronizeSagaAccess;
 	}
 
+	/**
+	 * 设置同步访问saga时使用的锁管理器，默认为{@link IdentifierBasedLock}。
+	 * 需要在saga管理器开始处理事件之前设置
+	 * @param lockManager
+	 */
+	public void setLockManager(IdentifierLockManager lockManager) {
+		Assert.notNull(lockManager, "lockManager may not be null");
+		this.lock = lockManager;
+	}
+
 	public void setCorrelationDataProvider(
 			CorrelationDataProvider<? super EventMessage> correlationDataProvider) {
 		this.correlationDataProvider = correlationDataProvider;
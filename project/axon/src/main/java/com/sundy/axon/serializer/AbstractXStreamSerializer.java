@@ -3,8 +3,13 @@ package com.sundy.axon.serializer;
 import java.lang.reflect.Constructor;
 import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.joda.time.DateTime;
 
@@ -29,6 +34,10 @@ import com.thoughtworks.xstream.mapper.Mapper;
 
 /**
  * 基于XStream的串行器的抽象实现。 它提供了一些辅助方法和配置功能，独立于用于组织的实际格式。
+ * <p/>
+ * 使用{@link XStreamFactory}初始化时，序列化器维护一个按线程分配的XStream实例池，每个线程固定使用池中的一个实例，
+ * 实例在第一次使用时创建并配置，从而避免多个线程竞争同一个XStream实例内部的锁。
+ * 通过{@link #addAlias(String, Class)}等方法添加的别名会应用到池中所有的实例上
  * @author Administrator
  *
  */
@@ -36,9 +45,16 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 
 	private static final Charset DEFAULT_CHARSET_NAME = Charset.forName("UTF-8");
 	private final XStream xStream;
+	private final XStreamFactory xStreamFactory;
+	private final AtomicReferenceArray<XStream> pool;
+	// guarded by "pool"
+	private final List<Customization> customizations = new CopyOnWriteArrayList<Customization>();
 	private final Charset charset;
 	private final RevisionResolver revisionResolver;
 	private final ConverterFactory converterFactory;
+	private final ConcurrentMap<String, Class> classCache = new ConcurrentHashMap<String, Class>();
+	// 别名变化时重新创建
+	private volatile SerializedTypeCache serializedTypes;
 	
 	protected AbstractXStreamSerializer(XStream xStream) {
         this(xStream, new AnnotationRevisionResolver());
@@ -58,17 +74,49 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	
 	protected AbstractXStreamSerializer(Charset charset, XStream xStream, RevisionResolver revisionResolver,
             ConverterFactory converterFactory) {
+		this(charset, xStream, null, 1, revisionResolver, converterFactory);
+	}
+	
+	/**
+	 * 使用给定的工厂创建的XStream实例池初始化序列化器
+	 * @param charset 字符集
+	 * @param xStreamFactory 创建XStream实例的工厂
+	 * @param poolSize 池中XStream实例的最大个数，一般与CPU核数相同
+	 * @param revisionResolver 解析类的修订版本
+	 * @param converterFactory 在不同的表现形式之间转换
+	 */
+	protected AbstractXStreamSerializer(Charset charset, XStreamFactory xStreamFactory, int poolSize,
+			RevisionResolver revisionResolver, ConverterFactory converterFactory) {
+		this(charset, createXStream(xStreamFactory), xStreamFactory, poolSize, revisionResolver, converterFactory);
+	}
+	
+	private AbstractXStreamSerializer(Charset charset, XStream xStream, XStreamFactory xStreamFactory, int poolSize,
+			RevisionResolver revisionResolver, ConverterFactory converterFactory) {
 		Assert.notNull(charset, "charset may not be null");
 		Assert.notNull(xStream, "xStream may not be null");
 		Assert.notNull(converterFactory, "converterFactory may not be null");
 		Assert.notNull(revisionResolver, "revisionResolver may not be null");
+		Assert.isTrue(poolSize > 0, "poolSize must be a positive number");
 		this.charset = charset;
 		this.xStream = xStream;
+		this.xStreamFactory = xStreamFactory;
+		this.pool = new AtomicReferenceArray<XStream>(poolSize);
+		this.pool.set(0, xStream);
 		this.converterFactory = converterFactory;
 		this.revisionResolver = revisionResolver;
+		this.serializedTypes = createSerializedTypeCache();
 		if (converterFactory instanceof ChainingConverterFactory) {
 			registerConverters((ChainingConverterFactory) converterFactory);
 		}
+		configure(xStream);
+	}
+	
+	private static XStream createXStream(XStreamFactory xStreamFactory) {
+		Assert.notNull(xStreamFactory, "xStreamFactory may not be null");
+		return xStreamFactory.createXStream();
+	}
+	
+	private void configure(XStream xStream) {
 		xStream.registerConverter(new JodaTimeConverter());
 		xStream.addImmutableType(UUID.class);
 		xStream.aliasPackage("axon.domain", "org.axonframework.domain");
@@ -93,6 +141,55 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 		
 		xStream.alias("meta-data", MetaData.class);
 		xStream.registerConverter(new MetaDataConverter(xStream.getMapper()));
+		for (Customization customization : customizations) {
+			customization.applyTo(xStream);
+		}
+	}
+	
+	/**
+	 * 返回当前线程使用的XStream实例，第一次使用时创建并配置该实例
+	 * @return
+	 */
+	protected XStream currentXStream() {
+		if (pool.length() == 1) {
+			return xStream;
+		}
+		int slot = (int) (Thread.currentThread().getId() % pool.length());
+		XStream instance = pool.get(slot);
+		if (instance == null) {
+			synchronized (pool) {
+				instance = pool.get(slot);
+				if (instance == null) {
+					instance = xStreamFactory.createXStream();
+					configure(instance);
+					pool.set(slot, instance);
+				}
+			}
+		}
+		return instance;
+	}
+	
+	private void customize(Customization customization) {
+		synchronized (pool) {
+			customizations.add(customization);
+			for (int i = 0; i < pool.length(); i++) {
+				XStream instance = pool.get(i);
+				if (instance != null) {
+					customization.applyTo(instance);
+				}
+			}
+			serializedTypes = createSerializedTypeCache();
+			classCache.clear();
+		}
+	}
+	
+	private SerializedTypeCache createSerializedTypeCache() {
+		return new SerializedTypeCache(revisionResolver) {
+			@Override
+			protected String nameOf(Class<?> type) {
+				return typeIdentifierOf(type);
+			}
+		};
 	}
 	
 	/**
@@ -103,7 +200,7 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	
 	public <T> SerializedObject<T> serialize(Object object,
 			Class<T> expectedRepresentation) {
-		 T result = doSerialize(object, expectedRepresentation, xStream);
+		 T result = doSerialize(object, expectedRepresentation, currentXStream());
 	     return new SimpleSerializedObject<T>(result, expectedRepresentation, typeForClass(object.getClass()));
 	}
 	
@@ -134,10 +231,6 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	protected <S, T> T convert(Class<S> sourceType, Class<T> targetType, S source) {
         return getConverterFactory().getConverter(sourceType, targetType).convert(source);
     }
-	
-	private String revisionOf(Class<?> type) {
-        return revisionResolver.revisionOf(type);
-    }
 
 	public <T> boolean canSerializeTo(Class<T> expectedRepresentation) {
 		return converterFactory.hasConverter(byte[].class, expectedRepresentation);
@@ -147,7 +240,7 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	 * {@inheritDoc}
 	 */
 	public <S, T> T deserialize(SerializedObject<S> serializedObject) {
-		return (T) doDeserialize(serializedObject, xStream);
+		return (T) doDeserialize(serializedObject, currentXStream());
 	}
 
 	/**
@@ -155,15 +248,20 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	 */
 	public Class classForType(SerializedType type)
 			throws UnknownSerializedTypeException {
-		try {
-            return xStream.getMapper().realClass(type.getName());
-        } catch (CannotResolveClassException e) {
-            throw new UnknownSerializedTypeException(type, e);
-        }
+		Class result = classCache.get(type.getName());
+		if (result == null) {
+			try {
+				result = currentXStream().getMapper().realClass(type.getName());
+			} catch (CannotResolveClassException e) {
+				throw new UnknownSerializedTypeException(type, e);
+			}
+			classCache.putIfAbsent(type.getName(), result);
+		}
+		return result;
 	}
 
 	public SerializedType typeForClass(Class type) {
-		 return new SimpleSerializedType(typeIdentifierOf(type), revisionOf(type));
+		 return serializedTypes.typeForClass(type);
 	}
 	
 	/**
@@ -171,8 +269,12 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	 * @param name
 	 * @param type
 	 */
-	public void addAlias(String name, Class type) {
-        xStream.alias(name, type);
+	public void addAlias(final String name, final Class type) {
+		customize(new Customization() {
+			public void applyTo(XStream xStream) {
+				xStream.alias(name, type);
+			}
+		});
     }
 	
 	/**
@@ -180,8 +282,12 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	 * @param alias
 	 * @param pkgName
 	 */
-	public void addPackageAlias(String alias, String pkgName) {
-        xStream.aliasPackage(alias, pkgName);
+	public void addPackageAlias(final String alias, final String pkgName) {
+		customize(new Customization() {
+			public void applyTo(XStream xStream) {
+				xStream.aliasPackage(alias, pkgName);
+			}
+		});
     }
 	
 	/**
@@ -190,10 +296,18 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	 * @param definedIn
 	 * @param fieldName
 	 */
-	public void addFieldAlias(String alias, Class definedIn, String fieldName) {
-        xStream.aliasField(alias, definedIn, fieldName);
+	public void addFieldAlias(final String alias, final Class definedIn, final String fieldName) {
+		customize(new Customization() {
+			public void applyTo(XStream xStream) {
+				xStream.aliasField(alias, definedIn, fieldName);
+			}
+		});
     }
 	
+	/**
+	 * 返回第一个XStream实例。使用实例池时，直接在该实例上进行的配置不会应用到池中的其他实例上
+	 * @return
+	 */
 	public XStream getXStream() {
         return xStream;
     }
@@ -212,9 +326,16 @@ public abstract class AbstractXStreamSerializer implements Serializer {
 	 * @return
 	 */
 	private String typeIdentifierOf(Class<?> type) {
-        return xStream.getMapper().serializedClass(type);
+        return currentXStream().getMapper().serializedClass(type);
     }
 	
+	/**
+	 * 需要应用到池中所有XStream实例上的配置
+	 */
+	private interface Customization {
+		void applyTo(XStream xStream);
+	}
+	
 	/**
 	 * XStream Converter 序列化 {@link DateTime} 为string
 	 * @author Administrator
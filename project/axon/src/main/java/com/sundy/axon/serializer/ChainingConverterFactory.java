@@ -2,9 +2,12 @@ package com.sundy.axon.serializer;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -17,13 +20,22 @@ import com.sundy.axon.upcasting.Upcaster;
  * 转换器工厂的实现类，该类能将类型转换器合并成一条链，从而可以将数据从一种类型转换为另一种类型。以防止单一转换器不能完成转换任务
  * <p/>
  * 该实现类可以通过扫描<code>/META-INF/services/org.axonframework.serializer.ContentTypeConverter</code>文件，自动发现类型转换器，(该文件必须包含这些类的全路径)
+ * <p/>
+ * 每对源类型和目标类型的查找结果(包括找不到转换器的结果)都会被记录在一个不可变的查找表中，之后的查找不需要再遍历转换器列表。
+ * 注册新的转换器时查找表被清空
  * @author Administrator
  *
  */
 public class ChainingConverterFactory implements ConverterFactory {
 
 	private static final Logger logger = LoggerFactory.getLogger(ChainingConverterFactory.class);
+	private static final ContentTypeConverter<?, ?> NO_CONVERTER = new NoConversion<Void>(Void.class);
 	private final List<ContentTypeConverter<?, ?>> converters = new CopyOnWriteArrayList<ContentTypeConverter<?,?>>();
+	private final Object lookupLock = new Object();
+	// 源类型 -> 目标类型 -> 转换器，找不到转换器时为NO_CONVERTER。只能在持有lookupLock时替换
+	private volatile Map<Class<?>, Map<Class<?>, ContentTypeConverter<?, ?>>> lookupTable = Collections.emptyMap();
+	// 转换器列表每次变化时递增，用于丢弃在变化之前计算出的查找结果
+	private volatile int generation;
 	
 	/**
 	 * 自动扫描<code>/META-INF/services/org.axonframework.serializer.ContentTypeConverter</code> 并将转换类加载经转换器列表
@@ -39,15 +51,7 @@ public class ChainingConverterFactory implements ConverterFactory {
 
 	public <S, T> boolean hasConverter(Class<S> sourceContentType,
 			Class<T> targetContentType) {
-		if(sourceContentType.equals(targetContentType)){
-			return true;
-		}
-		for(ContentTypeConverter converter : converters){
-			if(canConvert(converter,sourceContentType, targetContentType)){
-				return true;
-			}
-		}
-		return ChainedConverter.canConvert(sourceContentType,targetContentType,converters);
+		return lookup(sourceContentType, targetContentType) != NO_CONVERTER;
 	}
 	
 	private <S, T> boolean canConvert(ContentTypeConverter converter,Class<S> sourceContentType, Class<T> targetContentType){
@@ -59,25 +63,74 @@ public class ChainingConverterFactory implements ConverterFactory {
 		} catch (Exception e) {
 			logger.info("ContentTypeConverter [{}] is ignored. It seems to rely on a class that is "
                     + "not available in the class loader: {}", converter, e.getMessage());
-			converters.remove(converter);
+			if (converters.remove(converter)) {
+				invalidateLookupTable();
+			}
 		}
 		return false;
 	}
 
+	@SuppressWarnings("unchecked")
 	public <S, T> ContentTypeConverter<S, T> getConverter(
 			Class<S> sourceContentType, Class<T> targetContentType) {
+		ContentTypeConverter<?, ?> converter = lookup(sourceContentType, targetContentType);
+		if (converter == NO_CONVERTER) {
+			throw new CannotConvertBetweenTypesException(String.format("Cannot build a converter to convert from %s to %s",
+					sourceContentType.getName(), targetContentType.getName()));
+		}
+		return (ContentTypeConverter<S, T>) converter;
+	}
+
+	private ContentTypeConverter<?, ?> lookup(Class<?> sourceContentType, Class<?> targetContentType) {
+		Map<Class<?>, ContentTypeConverter<?, ?>> targets = lookupTable.get(sourceContentType);
+		ContentTypeConverter<?, ?> converter = targets == null ? null : targets.get(targetContentType);
+		if (converter == null) {
+			int expectedGeneration = generation;
+			converter = resolve(sourceContentType, targetContentType);
+			memoize(expectedGeneration, sourceContentType, targetContentType, converter);
+		}
+		return converter;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private ContentTypeConverter<?, ?> resolve(Class sourceContentType, Class targetContentType) {
 		if (sourceContentType.equals(targetContentType)) {
-            return new NoConversion(sourceContentType);
-        }
-		for(ContentTypeConverter converter : converters){
-			if(canConvert(converter,sourceContentType, targetContentType)){
+			return new NoConversion(sourceContentType);
+		}
+		for (ContentTypeConverter converter : converters) {
+			if (canConvert(converter, sourceContentType, targetContentType)) {
 				return converter;
 			}
 		}
-		ChainedConverter<S, T> converter = ChainedConverter.calculateChain(sourceContentType, targetContentType,
-                converters);
-		converters.add(0, converter);
-		return converter;
+		try {
+			return ChainedConverter.calculateChain(sourceContentType, targetContentType, converters);
+		} catch (CannotConvertBetweenTypesException e) {
+			return NO_CONVERTER;
+		}
+	}
+
+	private void memoize(int expectedGeneration, Class<?> sourceContentType, Class<?> targetContentType,
+			ContentTypeConverter<?, ?> converter) {
+		synchronized (lookupLock) {
+			if (expectedGeneration != generation) {
+				return;
+			}
+			Map<Class<?>, Map<Class<?>, ContentTypeConverter<?, ?>>> table =
+					new HashMap<Class<?>, Map<Class<?>, ContentTypeConverter<?, ?>>>(lookupTable);
+			Map<Class<?>, ContentTypeConverter<?, ?>> targets = table.get(sourceContentType);
+			targets = targets == null ? new HashMap<Class<?>, ContentTypeConverter<?, ?>>()
+					: new HashMap<Class<?>, ContentTypeConverter<?, ?>>(targets);
+			targets.put(targetContentType, converter);
+			table.put(sourceContentType, targets);
+			lookupTable = table;
+		}
+	}
+
+	private void invalidateLookupTable() {
+		synchronized (lookupLock) {
+			generation++;
+			lookupTable = Collections.emptyMap();
+		}
 	}
 	
 	/**
@@ -86,6 +139,7 @@ public class ChainingConverterFactory implements ConverterFactory {
 	 */
 	public void registerConverter(ContentTypeConverter converter){
 		converters.add(0, converter);
+		invalidateLookupTable();
 	}
 	
 	/**
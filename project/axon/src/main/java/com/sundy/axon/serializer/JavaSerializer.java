@@ -20,7 +20,7 @@ import com.sundy.axon.common.io.IOUtils;
 public class JavaSerializer implements Serializer {
 
 	private final ConverterFactory converterFactory = new ChainingConverterFactory();
-    private final RevisionResolver revisionResolver;
+    private final SerializedTypeCache serializedTypes;
 	
     public JavaSerializer() {
         this(new SerialVersionUIDRevisionResolver());
@@ -28,7 +28,7 @@ public class JavaSerializer implements Serializer {
     
     public JavaSerializer(RevisionResolver revisionResolver) {
         Assert.notNull(revisionResolver, "revisionResolver may not be null");
-        this.revisionResolver = revisionResolver;
+        this.serializedTypes = new SerializedTypeCache(revisionResolver);
     }
     
     public <T> SerializedObject<T> serialize(Object instance, Class<T> expectedType) {
@@ -45,7 +45,7 @@ public class JavaSerializer implements Serializer {
         }
         T converted = converterFactory.getConverter(byte[].class, expectedType)
                                       .convert(baos.toByteArray());
-        return new SimpleSerializedObject<T>(converted, expectedType, instance.getClass().getName(), revisionOf(instance.getClass()));
+        return new SimpleSerializedObject<T>(converted, expectedType, typeForClass(instance.getClass()));
     }
     
     public <T> boolean canSerializeTo(Class<T> expectedRepresentation) {
@@ -78,15 +78,12 @@ public class JavaSerializer implements Serializer {
     }
 
     public SerializedType typeForClass(Class type) {
-        return new SimpleSerializedType(type.getName(), revisionOf(type));
+        return serializedTypes.typeForClass(type);
     }
 
     public ConverterFactory getConverterFactory() {
         return converterFactory;
     }
 
-    private String revisionOf(Class<?> type) {
-        return revisionResolver.revisionOf(type);
-    }
 	
 }
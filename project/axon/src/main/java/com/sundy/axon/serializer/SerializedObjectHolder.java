@@ -16,30 +16,33 @@
 
 package com.sundy.axon.serializer;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import com.sundy.axon.domain.Message;
 
 /**
  * Holder that keeps references to serialized representations of a payload and meta data of a specific message.
  * Typically, this object should not live longer than the message object is is attached to.
+ * <p/>
+ * Serialized forms are memoized per serializer and representation type, in lock-free copy-on-write lists. When a
+ * form was already created by the same serializer for another representation, it is converted instead of serialized
+ * again, and the converted form is memoized as well. InputStream representations can only be read once, and are
+ * therefore always created from a memoized <code>byte[]</code> form, never stored themselves.
  *
  * @author Allard Buijze
  * @since 2.0
  */
 public class SerializedObjectHolder implements SerializationAware {
 
-    private static final ConverterFactory CONVERTER_FACTORY = new ChainingConverterFactory();
+    private static final AtomicReferenceFieldUpdater<SerializedObjectHolder, Form> PAYLOAD =
+            AtomicReferenceFieldUpdater.newUpdater(SerializedObjectHolder.class, Form.class, "payloadForms");
+    private static final AtomicReferenceFieldUpdater<SerializedObjectHolder, Form> META_DATA =
+            AtomicReferenceFieldUpdater.newUpdater(SerializedObjectHolder.class, Form.class, "metaDataForms");
 
     private final Message message;
-    private final Object payloadGuard = new Object();
-    // guarded by "payloadGuard"
-    private final Map<Serializer, SerializedObject> serializedPayload = new HashMap<Serializer, SerializedObject>();
-
-    private final Object metaDataGuard = new Object();
-    // guarded by "metaDataGuard"
-    private final Map<Serializer, SerializedObject> serializedMetaData = new HashMap<Serializer, SerializedObject>();
+    private volatile Form payloadForms;
+    private volatile Form metaDataForms;
 
     /**
      * Initialize the holder for the serialized representations of the payload and meta data of given
@@ -52,30 +55,67 @@ public class SerializedObjectHolder implements SerializationAware {
     }
 
     public <T> SerializedObject<T> serializePayload(Serializer serializer, Class<T> expectedRepresentation) {
-        synchronized (payloadGuard) {
-            SerializedObject existingForm = serializedPayload.get(serializer);
-            if (existingForm == null) {
-                SerializedObject<T> serialized = serializer.serialize(message.getPayload(), expectedRepresentation);
-                serializedPayload.put(serializer, serialized);
-                return serialized;
-            } else {
-                return CONVERTER_FACTORY.getConverter(existingForm.getContentType(), expectedRepresentation)
-                                        .convert(existingForm);
-            }
-        }
+        return serialize(PAYLOAD, message.getPayload(), serializer, expectedRepresentation);
     }
 
     public <T> SerializedObject<T> serializeMetaData(Serializer serializer, Class<T> expectedRepresentation) {
-        synchronized (metaDataGuard) {
-            SerializedObject existingForm = serializedMetaData.get(serializer);
-            if (existingForm == null) {
-                SerializedObject<T> serialized = serializer.serialize(message.getMetaData(), expectedRepresentation);
-                serializedMetaData.put(serializer, serialized);
-                return serialized;
-            } else {
-                return CONVERTER_FACTORY.getConverter(existingForm.getContentType(), expectedRepresentation)
-                                        .convert(existingForm);
+        return serialize(META_DATA, message.getMetaData(), serializer, expectedRepresentation);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> SerializedObject<T> serialize(AtomicReferenceFieldUpdater<SerializedObjectHolder, Form> forms,
+                                              Object value, Serializer serializer,
+                                              Class<T> expectedRepresentation) {
+        SerializedObject source = null;
+        for (Form form = forms.get(this); form != null; form = form.next) {
+            if (form.serializer.equals(serializer)) {
+                if (form.representation.equals(expectedRepresentation)) {
+                    return form.serializedObject;
+                } else if (source == null) {
+                    source = form.serializedObject;
+                }
+            }
+        }
+        boolean reusable = !InputStream.class.isAssignableFrom(expectedRepresentation);
+        if (source == null && !reusable && serializer.canSerializeTo(byte[].class)) {
+            source = serialize(forms, value, serializer, byte[].class);
+        }
+        SerializedObject<T> result;
+        if (source == null) {
+            result = serializer.serialize(value, expectedRepresentation);
+        } else {
+            result = serializer.getConverterFactory()
+                               .getConverter(source.getContentType(), expectedRepresentation)
+                               .convert(source);
+        }
+        if (!reusable) {
+            return result;
+        }
+        while (true) {
+            Form head = forms.get(this);
+            for (Form form = head; form != null; form = form.next) {
+                if (form.serializer.equals(serializer) && form.representation.equals(expectedRepresentation)) {
+                    return form.serializedObject;
+                }
             }
+            if (forms.compareAndSet(this, head, new Form(serializer, expectedRepresentation, result, head))) {
+                return result;
+            }
+        }
+    }
+
+    private static final class Form {
+
+        private final Serializer serializer;
+        private final Class<?> representation;
+        private final SerializedObject serializedObject;
+        private final Form next;
+
+        private Form(Serializer serializer, Class<?> representation, SerializedObject serializedObject, Form next) {
+            this.serializer = serializer;
+            this.representation = representation;
+            this.serializedObject = serializedObject;
+            this.next = next;
         }
     }
 }
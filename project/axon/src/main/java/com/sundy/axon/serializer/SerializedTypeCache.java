@@ -0,0 +1,116 @@
+package com.sundy.axon.serializer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sundy.axon.common.Assert;
+
+/**
+ * 按类缓存{@link SerializedType}的缓存，每个类的类型名称和修订版本只解析一次，之后直接返回同一个实例
+ * <p/>
+ * 缓存的值挂在类本身上({@link ClassValue})，不会阻止类被卸载。返回的实例都经过{@link #intern(SerializedType)}规范化，
+ * 名称和修订版本相同的类型是同一个实例，所以可以先用==比较。反序列化时从存储的名称和修订版本创建的类型也应该经过规范化
+ * <p/>
+ * 规范化表只弱引用规范实例，不再被使用的类型(比如只在旧事件中出现、已被upcast掉的类型)会从表中清除
+ * <p/>
+ * 类型名称默认使用类的全名，序列化器使用其他名称(比如别名)时可以覆盖{@link #nameOf(Class)}
+ * @author Administrator
+ *
+ */
+public class SerializedTypeCache {
+
+	private static final ConcurrentMap<SerializedType, CanonicalType> CANONICAL_TYPES =
+			new ConcurrentHashMap<SerializedType, CanonicalType>();
+	private static final ReferenceQueue<SerializedType> COLLECTED_TYPES = new ReferenceQueue<SerializedType>();
+
+	private final RevisionResolver revisionResolver;
+	private final ClassValue<SerializedType> types = new ClassValue<SerializedType>() {
+		@Override
+		protected SerializedType computeValue(Class<?> type) {
+			return intern(new SimpleSerializedType(nameOf(type), revisionResolver.revisionOf(type)));
+		}
+	};
+
+	public SerializedTypeCache(RevisionResolver revisionResolver) {
+		Assert.notNull(revisionResolver, "revisionResolver may not be null");
+		this.revisionResolver = revisionResolver;
+	}
+
+	/**
+	 * 返回给定类的规范化的序列化类型
+	 * @param type
+	 * @return
+	 */
+	public SerializedType typeForClass(Class<?> type) {
+		return types.get(type);
+	}
+
+	/**
+	 * 返回给定类的序列化类型名称
+	 * @param type
+	 * @return
+	 */
+	protected String nameOf(Class<?> type) {
+		return type.getName();
+	}
+
+	/**
+	 * 返回与给定类型名称和修订版本都相同的规范实例。规范实例总是{@link SimpleSerializedType}，
+	 * 给定类型的其它实现会被转换为{@link SimpleSerializedType}
+	 * @param serializedType
+	 * @return
+	 */
+	public static SerializedType intern(SerializedType serializedType) {
+		SerializedType key = serializedType.getClass() == SimpleSerializedType.class ? serializedType
+				: new SimpleSerializedType(serializedType.getName(), serializedType.getRevision());
+		CanonicalType reference = CANONICAL_TYPES.get(key);
+		SerializedType canonical = reference == null ? null : reference.get();
+		if (canonical != null) {
+			return canonical;
+		}
+		purgeCollectedTypes();
+		// 表中的键是一个单独的副本，不会让规范实例一直可达
+		SerializedType copy = new SimpleSerializedType(key.getName(), key.getRevision());
+		CanonicalType candidate = new CanonicalType(copy, key);
+		while (true) {
+			reference = CANONICAL_TYPES.putIfAbsent(copy, candidate);
+			if (reference == null) {
+				return key;
+			}
+			canonical = reference.get();
+			if (canonical != null) {
+				return canonical;
+			}
+			CANONICAL_TYPES.remove(copy, reference);
+		}
+	}
+
+	/**
+	 * 返回给定类型名称和修订版本的规范实例
+	 * @param name
+	 * @param revision
+	 * @return
+	 */
+	public static SerializedType intern(String name, String revision) {
+		return intern(new SimpleSerializedType(name, revision));
+	}
+
+	private static void purgeCollectedTypes() {
+		CanonicalType collected;
+		while ((collected = (CanonicalType) COLLECTED_TYPES.poll()) != null) {
+			CANONICAL_TYPES.remove(collected.key, collected);
+		}
+	}
+
+	private static final class CanonicalType extends WeakReference<SerializedType> {
+
+		private final SerializedType key;
+
+		private CanonicalType(SerializedType key, SerializedType canonical) {
+			super(canonical, COLLECTED_TYPES);
+			this.key = key;
+		}
+	}
+}
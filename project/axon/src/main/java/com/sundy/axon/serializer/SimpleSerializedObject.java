@@ -29,14 +29,14 @@ public class SimpleSerializedObject<T> implements SerializedObject<T> {
 	}
 	
 	/**
-	 * 用给定的数据和序列化类型来实例化
+	 * 用给定的数据和序列化类型来实例化，序列化类型经过{@link SerializedTypeCache#intern(String, String)}规范化
 	 * @param data
 	 * @param dataType
 	 * @param type
 	 * @param revision
 	 */
 	public SimpleSerializedObject(T data, Class<T> dataType, String type, String revision) {
-        this(data, dataType, new SimpleSerializedType(type, revision));
+        this(data, dataType, SerializedTypeCache.intern(type, revision));
     }
 
 	public Class<T> getContentType() {
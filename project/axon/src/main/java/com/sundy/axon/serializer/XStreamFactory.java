@@ -0,0 +1,18 @@
+package com.sundy.axon.serializer;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * 创建{@link XStream}实例的工厂，{@link AbstractXStreamSerializer}使用它创建线程池化的XStream实例。
+ * 每次调用都必须返回一个新的实例，序列化器会对返回的实例进行统一的配置
+ * @author Administrator
+ *
+ */
+public interface XStreamFactory {
+
+	/**
+	 * 创建一个新的XStream实例
+	 * @return
+	 */
+	XStream createXStream();
+}
@@ -0,0 +1,524 @@
+package com.sundy.axon.serializer.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sundy.axon.common.io.IOUtils;
+import com.sundy.axon.domain.MetaData;
+import com.sundy.axon.serializer.SerializationException;
+import com.sundy.axon.serializer.SimpleSerializedType;
+import com.sundy.axon.serializer.UnknownSerializedTypeException;
+
+/**
+ * {@link BinarySerializer}的编解码引擎。每个值以一个字节的类型标记开头，对象、数组和集合第一次出现之后以引用序号表示，
+ * 因此共享引用和循环引用都可以正确恢复
+ * <p/>
+ * 反序列化时只会加载和实例化允许的类：显式允许的类和包中的类，以及java.lang、java.util、java.math、java.time包中
+ * 可序列化的类。其他的类在初始化之前就会被拒绝，java序列化编码的值也使用同样的规则检查其中的每一个类
+ * <p/>
+ * 该类是线程安全的，编译好的{@link ClassPlan}和解析过的类会被缓存
+ * @author Administrator
+ *
+ */
+final class BinaryCodec {
+
+	static final int NULL = 0;
+	static final int REFERENCE = 1;
+	static final int TRUE = 2;
+	static final int FALSE = 3;
+	static final int BYTE = 4;
+	static final int SHORT = 5;
+	static final int CHARACTER = 6;
+	static final int INTEGER = 7;
+	static final int LONG = 8;
+	static final int FLOAT = 9;
+	static final int DOUBLE = 10;
+	static final int STRING = 11;
+	static final int ENUM = 12;
+	static final int BYTE_ARRAY = 13;
+	static final int ARRAY = 14;
+	static final int COLLECTION = 15;
+	static final int MAP = 16;
+	static final int BIG_INTEGER = 17;
+	static final int BIG_DECIMAL = 18;
+	static final int UUID_VALUE = 19;
+	static final int DATE = 20;
+	static final int JAVA = 21;
+	static final int OBJECT = 22;
+
+	private static final List<String> TRUSTED_PACKAGES = Arrays.asList("java.lang.", "java.util.", "java.math.",
+			"java.time.");
+	// 框架自身随每条消息一起序列化的类型
+	private static final List<String> TRUSTED_TYPES = Arrays.asList(MetaData.class.getName());
+
+	private final ClassValue<ClassPlan> plans = new ClassValue<ClassPlan>() {
+		@Override
+		protected ClassPlan computeValue(Class<?> type) {
+			return ClassPlan.compile(type);
+		}
+	};
+	private final ClassLoader classLoader;
+	private final Set<String> allowedTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final List<String> allowedPackages = new CopyOnWriteArrayList<String>();
+	// 已经检查过、允许反序列化的类。允许的范围只会扩大，所以缓存的结果一直有效
+	private final ConcurrentMap<String, Class<?>> allowedClasses = new ConcurrentHashMap<String, Class<?>>();
+
+	/**
+	 * @param classLoader 反序列化时加载类所用的类加载器
+	 */
+	BinaryCodec(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	void allowType(String typeName) {
+		allowedTypes.add(typeName);
+	}
+
+	void allowPackage(String packageName) {
+		allowedPackages.add(packageName + ".");
+	}
+
+	void writeValue(BinaryOutput out, Object value) {
+		if (value == null) {
+			out.writeByte(NULL);
+			return;
+		}
+		ClassPlan plan = plans.get(value.getClass());
+		switch (plan.kind()) {
+		case STRING:
+			out.writeByte(STRING);
+			out.writeString((String) value);
+			return;
+		case INTEGER:
+			out.writeByte(INTEGER);
+			out.writeSignedInt((Integer) value);
+			return;
+		case LONG:
+			out.writeByte(LONG);
+			out.writeSignedLong((Long) value);
+			return;
+		case TRUE:
+			out.writeByte((Boolean) value ? TRUE : FALSE);
+			return;
+		case DOUBLE:
+			out.writeByte(DOUBLE);
+			out.writeFixedLong(Double.doubleToRawLongBits((Double) value));
+			return;
+		case FLOAT:
+			out.writeByte(FLOAT);
+			out.writeFixedInt(Float.floatToRawIntBits((Float) value));
+			return;
+		case SHORT:
+			out.writeByte(SHORT);
+			out.writeSignedInt((Short) value);
+			return;
+		case CHARACTER:
+			out.writeByte(CHARACTER);
+			out.writeVarInt((Character) value);
+			return;
+		case BYTE:
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+			return;
+		case BYTE_ARRAY:
+			out.writeByte(BYTE_ARRAY);
+			out.writeBytes((byte[]) value);
+			return;
+		case ENUM:
+			out.writeByte(ENUM);
+			out.writeName(plan.name());
+			out.writeString(((Enum<?>) value).name());
+			return;
+		case BIG_INTEGER:
+			out.writeByte(BIG_INTEGER);
+			out.writeBytes(((BigInteger) value).toByteArray());
+			return;
+		case BIG_DECIMAL:
+			out.writeByte(BIG_DECIMAL);
+			out.writeSignedInt(((BigDecimal) value).scale());
+			out.writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+			return;
+		case UUID_VALUE:
+			out.writeByte(UUID_VALUE);
+			out.writeFixedLong(((UUID) value).getMostSignificantBits());
+			out.writeFixedLong(((UUID) value).getLeastSignificantBits());
+			return;
+		case DATE:
+			out.writeByte(DATE);
+			out.writeSignedLong(((Date) value).getTime());
+			return;
+		default:
+			break;
+		}
+		Integer reference = out.referenceOf(value);
+		if (reference != null) {
+			out.writeByte(REFERENCE);
+			out.writeVarInt(reference);
+			return;
+		}
+		switch (plan.kind()) {
+		case OBJECT:
+			out.writeByte(OBJECT);
+			out.writeName(plan.name());
+			for (FieldCodec field : plan.fields()) {
+				field.write(this, out, value);
+			}
+			return;
+		case ARRAY:
+			out.writeByte(ARRAY);
+			out.writeName(plan.name());
+			writeArray(out, value, plan.type().getComponentType());
+			return;
+		case COLLECTION:
+			if (plan.hasComparator(value)) {
+				writeJava(out, value);
+				return;
+			}
+			Collection<?> collection = (Collection<?>) value;
+			out.writeByte(COLLECTION);
+			out.writeName(plan.name());
+			out.writeVarInt(collection.size());
+			for (Object element : collection) {
+				writeValue(out, element);
+			}
+			return;
+		case MAP:
+			if (plan.hasComparator(value)) {
+				writeJava(out, value);
+				return;
+			}
+			Map<?, ?> map = (Map<?, ?>) value;
+			out.writeByte(MAP);
+			out.writeName(plan.name());
+			out.writeVarInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+			return;
+		default:
+			writeJava(out, value);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Object readValue(BinaryInput in) {
+		int tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case REFERENCE:
+			return in.reference(in.readVarInt());
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case STRING:
+			return in.readString();
+		case INTEGER:
+			return in.readSignedInt();
+		case LONG:
+			return in.readSignedLong();
+		case DOUBLE:
+			return Double.longBitsToDouble(in.readFixedLong());
+		case FLOAT:
+			return Float.intBitsToFloat(in.readFixedInt());
+		case SHORT:
+			return (short) in.readSignedInt();
+		case CHARACTER:
+			return (char) in.readVarInt();
+		case BYTE:
+			return (byte) in.readByte();
+		case BYTE_ARRAY:
+			return in.readBytes();
+		case ENUM:
+			Class enumType = allowedClassForName(in.readName());
+			return Enum.valueOf(enumType, in.readString());
+		case BIG_INTEGER:
+			return new BigInteger(in.readBytes());
+		case BIG_DECIMAL:
+			int scale = in.readSignedInt();
+			return new BigDecimal(new BigInteger(in.readBytes()), scale);
+		case UUID_VALUE:
+			return new UUID(in.readFixedLong(), in.readFixedLong());
+		case DATE:
+			return new Date(in.readSignedLong());
+		case OBJECT:
+			ClassPlan plan = plans.get(allowedClassForName(in.readName()));
+			Object instance = plan.newInstance();
+			in.addReference(instance);
+			for (FieldCodec field : plan.fields()) {
+				field.read(this, in, instance);
+			}
+			return instance;
+		case ARRAY:
+			Class<?> componentType = allowedClassForName(in.readName()).getComponentType();
+			return readArray(in, componentType);
+		case COLLECTION:
+			ClassPlan collectionPlan = plans.get(allowedClassForName(in.readName()));
+			int size = in.readVarInt();
+			Collection<Object> collection = collectionPlan.newCollection(size);
+			in.addReference(collection);
+			for (int i = 0; i < size; i++) {
+				collection.add(readValue(in));
+			}
+			return collection;
+		case MAP:
+			ClassPlan mapPlan = plans.get(allowedClassForName(in.readName()));
+			int entries = in.readVarInt();
+			Map<Object, Object> map = mapPlan.newMap(entries);
+			in.addReference(map);
+			for (int i = 0; i < entries; i++) {
+				Object key = readValue(in);
+				map.put(key, readValue(in));
+			}
+			return map;
+		case JAVA:
+			int reference = in.reserveReference();
+			Object value = readJava(in.readBytes());
+			in.setReference(reference, value);
+			return value;
+		default:
+			throw new SerializationException("Unknown type tag " + tag + " at position " + (in.position() - 1));
+		}
+	}
+
+	/**
+	 * 使用该编解码器的类加载器加载给定名称的类，不检查是否允许反序列化，也不初始化该类
+	 */
+	Class<?> classForName(String name) {
+		try {
+			return Class.forName(name, false, classLoader);
+		} catch (ClassNotFoundException e) {
+			throw new UnknownSerializedTypeException(new SimpleSerializedType(name, null), e);
+		}
+	}
+
+	/**
+	 * 加载给定名称的类，该类不允许反序列化时抛出{@link SerializationException}
+	 */
+	private Class<?> allowedClassForName(String name) {
+		Class<?> type = allowedClasses.get(name);
+		if (type == null) {
+			type = classForName(name);
+			if (!isAllowed(type)) {
+				throw new SerializationException(String.format("Type [%s] is not allowed to be deserialized. "
+						+ "Allow it through BinarySerializer#addAllowedType or #addAllowedPackage.", name));
+			}
+			allowedClasses.putIfAbsent(name, type);
+		}
+		return type;
+	}
+
+	private boolean isAllowed(Class<?> type) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (type.isPrimitive() || allowedTypes.contains(type.getName()) || TRUSTED_TYPES.contains(type.getName())) {
+			return true;
+		}
+		String name = type.getName();
+		for (String allowedPackage : allowedPackages) {
+			if (name.startsWith(allowedPackage)) {
+				return true;
+			}
+		}
+		if (Serializable.class.isAssignableFrom(type)) {
+			for (String trustedPackage : TRUSTED_PACKAGES) {
+				if (name.startsWith(trustedPackage)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void writeArray(BinaryOutput out, Object array, Class<?> componentType) {
+		int length = Array.getLength(array);
+		out.writeVarInt(length);
+		if (!componentType.isPrimitive()) {
+			for (Object element : (Object[]) array) {
+				writeValue(out, element);
+			}
+		} else if (componentType == int.class) {
+			for (int element : (int[]) array) {
+				out.writeSignedInt(element);
+			}
+		} else if (componentType == long.class) {
+			for (long element : (long[]) array) {
+				out.writeSignedLong(element);
+			}
+		} else if (componentType == boolean.class) {
+			for (boolean element : (boolean[]) array) {
+				out.writeByte(element ? 1 : 0);
+			}
+		} else if (componentType == double.class) {
+			for (double element : (double[]) array) {
+				out.writeFixedLong(Double.doubleToRawLongBits(element));
+			}
+		} else if (componentType == float.class) {
+			for (float element : (float[]) array) {
+				out.writeFixedInt(Float.floatToRawIntBits(element));
+			}
+		} else if (componentType == short.class) {
+			for (short element : (short[]) array) {
+				out.writeSignedInt(element);
+			}
+		} else if (componentType == char.class) {
+			for (char element : (char[]) array) {
+				out.writeVarInt(element);
+			}
+		} else {
+			for (byte element : (byte[]) array) {
+				out.writeByte(element);
+			}
+		}
+	}
+
+	private Object readArray(BinaryInput in, Class<?> componentType) {
+		int length = in.readVarInt();
+		Object array = Array.newInstance(componentType, length);
+		in.addReference(array);
+		if (!componentType.isPrimitive()) {
+			Object[] elements = (Object[]) array;
+			for (int i = 0; i < length; i++) {
+				Object element = readValue(in);
+				if (element != null && !componentType.isInstance(element)) {
+					throw new SerializationException(String.format("Cannot store a value of type [%s] in an array of [%s]",
+							element.getClass().getName(), componentType.getName()));
+				}
+				elements[i] = element;
+			}
+		} else if (componentType == int.class) {
+			int[] elements = (int[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = in.readSignedInt();
+			}
+		} else if (componentType == long.class) {
+			long[] elements = (long[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = in.readSignedLong();
+			}
+		} else if (componentType == boolean.class) {
+			boolean[] elements = (boolean[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = in.readByte() != 0;
+			}
+		} else if (componentType == double.class) {
+			double[] elements = (double[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = Double.longBitsToDouble(in.readFixedLong());
+			}
+		} else if (componentType == float.class) {
+			float[] elements = (float[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = Float.intBitsToFloat(in.readFixedInt());
+			}
+		} else if (componentType == short.class) {
+			short[] elements = (short[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = (short) in.readSignedInt();
+			}
+		} else if (componentType == char.class) {
+			char[] elements = (char[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = (char) in.readVarInt();
+			}
+		} else {
+			byte[] elements = (byte[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = (byte) in.readByte();
+			}
+		}
+		return array;
+	}
+
+	private void writeJava(BinaryOutput out, Object value) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			ObjectOutputStream oos = new ObjectOutputStream(baos);
+			try {
+				oos.writeObject(value);
+			} finally {
+				oos.flush();
+			}
+		} catch (IOException e) {
+			throw new SerializationException("Unable to serialize an instance of " + value.getClass().getName(), e);
+		}
+		out.writeByte(JAVA);
+		out.writeBytes(baos.toByteArray());
+	}
+
+	private Object readJava(byte[] data) {
+		ObjectInputStream ois = null;
+		try {
+			ois = new FilteringObjectInputStream(new ByteArrayInputStream(data));
+			return ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new SerializationException("An error occurred while deserializing: " + e.getMessage(), e);
+		} catch (IOException e) {
+			throw new SerializationException("An error occurred while deserializing: " + e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(ois);
+		}
+	}
+
+	/**
+	 * 使用编解码器的类加载器解析类，并且拒绝不允许反序列化的类。检查在类被初始化之前进行
+	 */
+	private final class FilteringObjectInputStream extends ObjectInputStream {
+
+		private FilteringObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			Class<?> type;
+			try {
+				type = Class.forName(desc.getName(), false, classLoader);
+			} catch (ClassNotFoundException e) {
+				// 基本类型
+				type = super.resolveClass(desc);
+			}
+			return checkAllowed(type);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			for (String name : interfaces) {
+				checkAllowed(Class.forName(name, false, classLoader));
+			}
+			return super.resolveProxyClass(interfaces);
+		}
+
+		private Class<?> checkAllowed(Class<?> type) throws InvalidClassException {
+			if (!isAllowed(type)) {
+				throw new InvalidClassException(type.getName(), "not allowed to be deserialized");
+			}
+			return type;
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.sundy.axon.serializer.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sundy.axon.serializer.SerializationException;
+
+/**
+ * 读取{@link BinaryOutput}写入的数据。数据直接从给定的{@link ByteBuffer}(可以是内存映射文件的切片)中读取，
+ * 只有字符串和byte[]的内容会被复制出来。该类不是线程安全的，每次反序列化使用一个新的实例
+ * @author Administrator
+ *
+ */
+final class BinaryInput {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buffer;
+	private final List<String> names = new ArrayList<String>();
+	private final List<Object> references = new ArrayList<Object>();
+
+	/**
+	 * @param buffer 从它的当前位置开始读取，读取时不会改变它的位置
+	 */
+	BinaryInput(ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+	}
+
+	int readByte() {
+		checkAvailable(1);
+		return buffer.get();
+	}
+
+	int readVarInt() {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = readByte();
+			result |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new SerializationException("Malformed variable length integer at position " + buffer.position());
+	}
+
+	long readVarLong() {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new SerializationException("Malformed variable length integer at position " + buffer.position());
+	}
+
+	int readSignedInt() {
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	long readSignedLong() {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	int readFixedInt() {
+		checkAvailable(4);
+		return buffer.getInt();
+	}
+
+	long readFixedLong() {
+		checkAvailable(8);
+		return buffer.getLong();
+	}
+
+	byte[] readBytes() {
+		int length = readVarInt();
+		checkAvailable(length);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	String readString() {
+		int length = readVarInt();
+		checkAvailable(length);
+		if (buffer.hasArray()) {
+			String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+			buffer.position(buffer.position() + length);
+			return value;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	String readName() {
+		int index = readVarInt();
+		if (index == 0) {
+			String name = readString();
+			names.add(name);
+			return name;
+		}
+		if (index < 0 || index > names.size()) {
+			throw new SerializationException("Unknown type name reference " + index + " at position " + buffer.position());
+		}
+		return names.get(index - 1);
+	}
+
+	void addReference(Object value) {
+		references.add(value);
+	}
+
+	/**
+	 * 为尚未读取完成的对象预留引用序号，保证引用序号与写入时的顺序一致
+	 */
+	int reserveReference() {
+		references.add(null);
+		return references.size() - 1;
+	}
+
+	void setReference(int reference, Object value) {
+		references.set(reference, value);
+	}
+
+	Object reference(int reference) {
+		if (reference < 0 || reference >= references.size()) {
+			throw new SerializationException("Unknown object reference " + reference + " at position " + buffer.position());
+		}
+		return references.get(reference);
+	}
+
+	int position() {
+		return buffer.position();
+	}
+
+	private void checkAvailable(int length) {
+		if (length < 0 || length > buffer.remaining()) {
+			throw new SerializationException("Unexpected end of binary data at position " + buffer.position());
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.sundy.axon.serializer.binary;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * {@link BinarySerializer}的输出缓冲区，提供变长整数编码，以及类型名称和对象引用的流内去重
+ * <p/>
+ * 类型名称第一次出现时写入0和名称本身，之后只写入它的序号。该类不是线程安全的，每次序列化使用一个新的实例
+ * @author Administrator
+ *
+ */
+final class BinaryOutput {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private byte[] buffer;
+	private int position;
+	private final Map<String, Integer> names = new HashMap<String, Integer>();
+	private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+
+	BinaryOutput(int initialCapacity) {
+		this.buffer = new byte[initialCapacity];
+	}
+
+	void writeByte(int value) {
+		ensureCapacity(1);
+		buffer[position++] = (byte) value;
+	}
+
+	void writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	void writeVarLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	/**
+	 * 使用zigzag编码写入有符号整数，绝对值小的负数也只占用很少的字节
+	 */
+	void writeSignedInt(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	void writeSignedLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	void writeFixedInt(int value) {
+		ensureCapacity(4);
+		buffer[position++] = (byte) (value >>> 24);
+		buffer[position++] = (byte) (value >>> 16);
+		buffer[position++] = (byte) (value >>> 8);
+		buffer[position++] = (byte) value;
+	}
+
+	void writeFixedLong(long value) {
+		writeFixedInt((int) (value >>> 32));
+		writeFixedInt((int) value);
+	}
+
+	void writeBytes(byte[] bytes) {
+		writeVarInt(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	/**
+	 * 以UTF-8写入字符串，长度为字节数。只包含ASCII字符时直接逐个复制，不需要额外的编码过程
+	 */
+	void writeString(String value) {
+		int length = value.length();
+		ensureCapacity(5 + length);
+		int start = position;
+		writeVarInt(length);
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				position = start;
+				writeBytes(value.getBytes(UTF8));
+				return;
+			}
+			buffer[position++] = (byte) c;
+		}
+	}
+
+	void writeName(String name) {
+		Integer index = names.get(name);
+		if (index == null) {
+			names.put(name, names.size() + 1);
+			writeVarInt(0);
+			writeString(name);
+		} else {
+			writeVarInt(index);
+		}
+	}
+
+	/**
+	 * 返回给定对象之前写入时分配的引用序号，第一次写入时为它分配序号并返回null
+	 */
+	Integer referenceOf(Object value) {
+		Integer reference = references.get(value);
+		if (reference == null) {
+			references.put(value, references.size());
+		}
+		return reference;
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, position);
+	}
+
+	private void ensureCapacity(int required) {
+		if (position + required > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + required));
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.sundy.axon.serializer.binary;
+
+import java.nio.ByteBuffer;
+
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.serializer.AnnotationRevisionResolver;
+import com.sundy.axon.serializer.ChainingConverterFactory;
+import com.sundy.axon.serializer.ConverterFactory;
+import com.sundy.axon.serializer.RevisionResolver;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.SerializedTypeCache;
+import com.sundy.axon.serializer.Serializer;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+import com.sundy.axon.serializer.UnknownSerializedTypeException;
+import com.sundy.axon.serializer.converters.ByteArrayToByteBufferConverter;
+import com.sundy.axon.serializer.converters.ByteArrayToInputStreamConverter;
+import com.sundy.axon.serializer.converters.ByteBufferToByteArrayConverter;
+import com.sundy.axon.serializer.converters.ByteBufferToInputStreamConverter;
+import com.sundy.axon.serializer.converters.InputStreamToByteArrayConverter;
+
+/**
+ * 把对象序列化成紧凑二进制格式的序列化器
+ * <p/>
+ * 每个类第一次序列化时根据它的字段布局编译编解码计划并缓存起来，之后通过方法句柄读写字段，不再使用反射。
+ * 数字使用变长编码，同一次序列化中重复出现的类型名称只写入一次。反序列化时不调用构造函数。
+ * {@link ByteBuffer}形式的数据(比如内存映射文件的切片)会被直接读取，不需要复制
+ * <p/>
+ * 编码是按位置排列的，不包含字段名称，所以类的字段发生变化时必须修改它的修订版本(见{@link RevisionResolver})
+ * <p/>
+ * 反序列化只会加载和实例化允许的类，应用的类必须通过{@link #addAllowedType(Class)}或者{@link #addAllowedPackage(String)}
+ * 显式允许。java.lang、java.util、java.math和java.time包中可序列化的类以及{@link com.sundy.axon.domain.MetaData}默认是允许的。
+ * 需要java序列化的值(比如定义了writeObject的类)中出现的每一个类也要满足同样的规则
+ * @author Administrator
+ *
+ */
+public class BinarySerializer implements Serializer {
+
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	private final BinaryCodec codec;
+	private final ConverterFactory converterFactory;
+	private final SerializedTypeCache serializedTypes;
+
+	/**
+	 * 使用{@link AnnotationRevisionResolver}初始化序列化器
+	 */
+	public BinarySerializer() {
+		this(new AnnotationRevisionResolver());
+	}
+
+	public BinarySerializer(RevisionResolver revisionResolver) {
+		this(revisionResolver, createConverterFactory());
+	}
+
+	/**
+	 * @param revisionResolver 解析类的修订版本
+	 * @param converterFactory 在byte[]和其他表现形式之间转换
+	 */
+	public BinarySerializer(RevisionResolver revisionResolver, ConverterFactory converterFactory) {
+		this(revisionResolver, converterFactory, null);
+	}
+
+	/**
+	 * @param revisionResolver 解析类的修订版本
+	 * @param converterFactory 在byte[]和其他表现形式之间转换
+	 * @param classLoader 反序列化时加载类所用的类加载器，为null时使用加载该类的类加载器
+	 */
+	public BinarySerializer(RevisionResolver revisionResolver, ConverterFactory converterFactory,
+			ClassLoader classLoader) {
+		Assert.notNull(revisionResolver, "revisionResolver may not be null");
+		Assert.notNull(converterFactory, "converterFactory may not be null");
+		this.serializedTypes = new SerializedTypeCache(revisionResolver);
+		this.converterFactory = converterFactory;
+		this.codec = new BinaryCodec(classLoader == null ? getClass().getClassLoader() : classLoader);
+	}
+
+	/**
+	 * 允许反序列化给定的类
+	 * @param type
+	 */
+	public void addAllowedType(Class<?> type) {
+		Assert.notNull(type, "type may not be null");
+		codec.allowType(type.getName());
+	}
+
+	/**
+	 * 允许反序列化给定包及其子包中的所有类
+	 * @param packageName 包的全限定名称，比如com.example.events
+	 */
+	public void addAllowedPackage(String packageName) {
+		Assert.notNull(packageName, "packageName may not be null");
+		codec.allowPackage(packageName);
+	}
+
+	private static ConverterFactory createConverterFactory() {
+		ChainingConverterFactory converterFactory = new ChainingConverterFactory();
+		converterFactory.registerConverter(new InputStreamToByteArrayConverter());
+		converterFactory.registerConverter(new ByteArrayToInputStreamConverter());
+		converterFactory.registerConverter(new ByteBufferToInputStreamConverter());
+		converterFactory.registerConverter(new ByteBufferToByteArrayConverter());
+		converterFactory.registerConverter(new ByteArrayToByteBufferConverter());
+		return converterFactory;
+	}
+
+	public <T> SerializedObject<T> serialize(Object object, Class<T> expectedRepresentation) {
+		BinaryOutput out = new BinaryOutput(INITIAL_BUFFER_SIZE);
+		codec.writeValue(out, object);
+		T converted = converterFactory.getConverter(byte[].class, expectedRepresentation).convert(out.toByteArray());
+		return new SimpleSerializedObject<T>(converted, expectedRepresentation, typeForClass(object.getClass()));
+	}
+
+	public <T> boolean canSerializeTo(Class<T> expectedRepresentation) {
+		return converterFactory.hasConverter(byte[].class, expectedRepresentation);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <S, T> T deserialize(SerializedObject<S> serializedObject) {
+		if (ByteBuffer.class.equals(serializedObject.getContentType())) {
+			return (T) codec.readValue(new BinaryInput((ByteBuffer) serializedObject.getData()));
+		}
+		SerializedObject<byte[]> converted = converterFactory.getConverter(serializedObject.getContentType(),
+				byte[].class).convert(serializedObject);
+		return (T) codec.readValue(new BinaryInput(ByteBuffer.wrap(converted.getData())));
+	}
+
+	@SuppressWarnings("rawtypes")
+	public Class classForType(SerializedType type) throws UnknownSerializedTypeException {
+		try {
+			return codec.classForName(type.getName());
+		} catch (UnknownSerializedTypeException e) {
+			throw new UnknownSerializedTypeException(type, e.getCause());
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	public SerializedType typeForClass(Class type) {
+		return serializedTypes.typeForClass(type);
+	}
+
+	public ConverterFactory getConverterFactory() {
+		return converterFactory;
+	}
+
+}
@@ -0,0 +1,310 @@
+package com.sundy.axon.serializer.binary;
+
+import static com.sundy.axon.serializer.binary.BinaryCodec.*;
+
+import java.io.Externalizable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.UUID;
+
+import com.sundy.axon.serializer.SerializationException;
+
+/**
+ * 某个类的编解码计划，每个类只在第一次使用时根据它的字段布局编译一次
+ * <p/>
+ * 普通对象按照类层次(父类在前)和字段名称的顺序编码所有非static、非transient的字段。反序列化时不调用该类的构造函数，
+ * 而是通过sun.reflect.ReflectionFactory生成的序列化构造函数(与java序列化相同，只调用Object的构造函数)创建实例；
+ * ReflectionFactory不可用时使用该类的无参构造函数
+ * 定义了自定义java序列化方法(writeObject、readResolve等)的类以及其他的java.*类使用java序列化编码，
+ * 具有公共无参构造函数的java.*集合类按照元素编码
+ * @author Administrator
+ *
+ */
+final class ClassPlan {
+
+	private static final FieldCodec[] NO_FIELDS = new FieldCodec[0];
+	// sun.reflect.ReflectionFactory的实例和newConstructorForSerialization方法，通过反射调用以避免依赖私有API，不可用时为null
+	private static final Object REFLECTION_FACTORY;
+	private static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+	static {
+		Object reflectionFactory = null;
+		Method newConstructorForSerialization = null;
+		try {
+			Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+			reflectionFactory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+			newConstructorForSerialization = factoryClass.getMethod("newConstructorForSerialization", Class.class,
+					Constructor.class);
+		} catch (Exception e) {
+			reflectionFactory = null;
+			newConstructorForSerialization = null;
+		}
+		REFLECTION_FACTORY = reflectionFactory;
+		NEW_CONSTRUCTOR_FOR_SERIALIZATION = newConstructorForSerialization;
+	}
+
+	private final Class<?> type;
+	private final int kind;
+	private final String name;
+	private final FieldCodec[] fields;
+	private final Constructor<?> constructor;
+	private final boolean sorted;
+
+	private ClassPlan(Class<?> type, int kind, String name, FieldCodec[] fields, Constructor<?> constructor) {
+		this.type = type;
+		this.kind = kind;
+		this.name = name;
+		this.fields = fields;
+		this.constructor = constructor;
+		this.sorted = SortedSet.class.isAssignableFrom(type) || SortedMap.class.isAssignableFrom(type);
+	}
+
+	static ClassPlan compile(Class<?> type) {
+		int kind = simpleKind(type);
+		if (kind >= 0) {
+			return new ClassPlan(type, kind, type.getName(), NO_FIELDS, null);
+		}
+		if (type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())) {
+			Class<?> enumType = type.isEnum() ? type : type.getSuperclass();
+			return new ClassPlan(type, ENUM, enumType.getName(), NO_FIELDS, null);
+		}
+		if (type.isArray()) {
+			return new ClassPlan(type, ARRAY, type.getName(), NO_FIELDS, null);
+		}
+		if (type.getName().startsWith("java.")) {
+			Constructor<?> constructor = publicNoArgConstructor(type);
+			if (constructor != null && Collection.class.isAssignableFrom(type)) {
+				return new ClassPlan(type, COLLECTION, type.getName(), NO_FIELDS, constructor);
+			}
+			if (constructor != null && Map.class.isAssignableFrom(type)) {
+				return new ClassPlan(type, MAP, type.getName(), NO_FIELDS, constructor);
+			}
+			if (Serializable.class.isAssignableFrom(type)) {
+				return new ClassPlan(type, JAVA, type.getName(), NO_FIELDS, null);
+			}
+		}
+		if (hasCustomSerialization(type)) {
+			return new ClassPlan(type, JAVA, type.getName(), NO_FIELDS, null);
+		}
+		return new ClassPlan(type, OBJECT, type.getName(), compileFields(type), instantiationConstructor(type));
+	}
+
+	int kind() {
+		return kind;
+	}
+
+	String name() {
+		return name;
+	}
+
+	Class<?> type() {
+		return type;
+	}
+
+	FieldCodec[] fields() {
+		return fields;
+	}
+
+	/**
+	 * 判断给定的有序集合是否使用了自定义的比较器，这种集合只能使用java序列化才能完整恢复
+	 */
+	boolean hasComparator(Object value) {
+		if (!sorted) {
+			return false;
+		}
+		Comparator<?> comparator = value instanceof SortedSet ? ((SortedSet<?>) value).comparator()
+				: ((SortedMap<?, ?>) value).comparator();
+		return comparator != null;
+	}
+
+	Object newInstance() {
+		if (constructor == null) {
+			throw new SerializationException("Unable to create an instance of " + type.getName()
+					+ ": it has no constructor that can be used for deserialization");
+		}
+		return construct();
+	}
+
+	@SuppressWarnings("unchecked")
+	Collection<Object> newCollection(int size) {
+		if (type == ArrayList.class) {
+			return new ArrayList<Object>(size);
+		} else if (type == LinkedList.class) {
+			return new LinkedList<Object>();
+		} else if (type == HashSet.class) {
+			return new HashSet<Object>(capacityFor(size));
+		} else if (type == LinkedHashSet.class) {
+			return new LinkedHashSet<Object>(capacityFor(size));
+		}
+		return (Collection<Object>) construct();
+	}
+
+	@SuppressWarnings("unchecked")
+	Map<Object, Object> newMap(int size) {
+		if (type == HashMap.class) {
+			return new HashMap<Object, Object>(capacityFor(size));
+		} else if (type == LinkedHashMap.class) {
+			return new LinkedHashMap<Object, Object>(capacityFor(size));
+		}
+		return (Map<Object, Object>) construct();
+	}
+
+	private Object construct() {
+		try {
+			return constructor.newInstance();
+		} catch (Exception e) {
+			throw new SerializationException("Unable to create an instance of " + type.getName(), e);
+		}
+	}
+
+	private static int capacityFor(int size) {
+		return size < 3 ? size + 1 : (int) (size / 0.75f + 1);
+	}
+
+	private static int simpleKind(Class<?> type) {
+		if (type == String.class) {
+			return STRING;
+		} else if (type == Integer.class) {
+			return INTEGER;
+		} else if (type == Long.class) {
+			return LONG;
+		} else if (type == Boolean.class) {
+			return TRUE;
+		} else if (type == Double.class) {
+			return DOUBLE;
+		} else if (type == Float.class) {
+			return FLOAT;
+		} else if (type == Short.class) {
+			return SHORT;
+		} else if (type == Character.class) {
+			return CHARACTER;
+		} else if (type == Byte.class) {
+			return BYTE;
+		} else if (type == byte[].class) {
+			return BYTE_ARRAY;
+		} else if (type == BigInteger.class) {
+			return BIG_INTEGER;
+		} else if (type == BigDecimal.class) {
+			return BIG_DECIMAL;
+		} else if (type == UUID.class) {
+			return UUID_VALUE;
+		} else if (type == Date.class) {
+			return DATE;
+		}
+		return -1;
+	}
+
+	private static FieldCodec[] compileFields(Class<?> type) {
+		List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+		for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+			hierarchy.add(current);
+		}
+		Collections.reverse(hierarchy);
+		List<FieldCodec> codecs = new ArrayList<FieldCodec>();
+		for (Class<?> current : hierarchy) {
+			List<Field> declared = new ArrayList<Field>();
+			for (Field field : current.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+					declared.add(field);
+				}
+			}
+			Collections.sort(declared, new Comparator<Field>() {
+				@Override
+				public int compare(Field first, Field second) {
+					return first.getName().compareTo(second.getName());
+				}
+			});
+			for (Field field : declared) {
+				codecs.add(FieldCodec.forField(field));
+			}
+		}
+		return codecs.toArray(new FieldCodec[codecs.size()]);
+	}
+
+	private static boolean hasCustomSerialization(Class<?> type) {
+		if (!Serializable.class.isAssignableFrom(type)) {
+			return false;
+		}
+		if (Externalizable.class.isAssignableFrom(type)) {
+			return true;
+		}
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			if (declares(current, "writeObject", ObjectOutputStream.class)
+					|| declares(current, "readObject", ObjectInputStream.class)
+					|| declares(current, "readObjectNoData") || declares(current, "writeReplace")
+					|| declares(current, "readResolve")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean declares(Class<?> type, String method, Class<?>... parameterTypes) {
+		try {
+			type.getDeclaredMethod(method, parameterTypes);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 返回反序列化时用来创建给定类的实例的构造函数，没有可用的构造函数时返回null
+	 */
+	private static Constructor<?> instantiationConstructor(Class<?> type) {
+		if (Modifier.isAbstract(type.getModifiers())) {
+			return null;
+		}
+		if (NEW_CONSTRUCTOR_FOR_SERIALIZATION != null) {
+			try {
+				Constructor<?> constructor = (Constructor<?>) NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(
+						REFLECTION_FACTORY, type, Object.class.getDeclaredConstructor());
+				constructor.setAccessible(true);
+				return constructor;
+			} catch (Exception e) {
+				// 使用无参构造函数
+			}
+		}
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static Constructor<?> publicNoArgConstructor(Class<?> type) {
+		if (Modifier.isAbstract(type.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+			return null;
+		}
+		try {
+			return type.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+package com.sundy.axon.serializer.binary;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import com.sundy.axon.serializer.SerializationException;
+
+/**
+ * 编译后的单个字段的编解码器，通过字段的getter和setter方法句柄读写字段，序列化每个对象时不需要反射
+ * <p/>
+ * 基本类型的字段不写入类型标记，引用类型的字段通过{@link BinaryCodec}写入带类型标记的值
+ * @author Administrator
+ *
+ */
+abstract class FieldCodec {
+
+	protected final String name;
+	// 类型为(Object)T和(Object, T)void，T是字段的类型(引用类型为Object)
+	protected final MethodHandle getter;
+	protected final MethodHandle setter;
+
+	FieldCodec(Field field) {
+		this.name = field.getDeclaringClass().getName() + "." + field.getName();
+		Class<?> type = field.getType().isPrimitive() ? field.getType() : Object.class;
+		try {
+			field.setAccessible(true);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			this.getter = lookup.unreflectGetter(field).asType(MethodType.methodType(type, Object.class));
+			this.setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, type));
+		} catch (IllegalAccessException e) {
+			throw new SerializationException("Unable to access field " + name, e);
+		} catch (RuntimeException e) {
+			throw new SerializationException("Unable to access field " + name, e);
+		}
+	}
+
+	final void write(BinaryCodec codec, BinaryOutput out, Object owner) {
+		try {
+			writeField(codec, out, owner);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SerializationException("Unable to read field " + name, e);
+		}
+	}
+
+	final void read(BinaryCodec codec, BinaryInput in, Object owner) {
+		try {
+			readField(codec, in, owner);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SerializationException("Unable to write field " + name, e);
+		}
+	}
+
+	abstract void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable;
+
+	abstract void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable;
+
+	static FieldCodec forField(Field field) {
+		Class<?> type = field.getType();
+		if (!type.isPrimitive()) {
+			return new ReferenceField(field);
+		} else if (type == int.class) {
+			return new IntField(field);
+		} else if (type == long.class) {
+			return new LongField(field);
+		} else if (type == boolean.class) {
+			return new BooleanField(field);
+		} else if (type == double.class) {
+			return new DoubleField(field);
+		} else if (type == float.class) {
+			return new FloatField(field);
+		} else if (type == short.class) {
+			return new ShortField(field);
+		} else if (type == char.class) {
+			return new CharField(field);
+		}
+		return new ByteField(field);
+	}
+
+	private static final class ReferenceField extends FieldCodec {
+
+		private final Class<?> type;
+
+		private ReferenceField(Field field) {
+			super(field);
+			this.type = field.getType();
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			codec.writeValue(out, (Object) getter.invokeExact(owner));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			Object value = codec.readValue(in);
+			if (value != null && !type.isInstance(value)) {
+				throw new SerializationException(String.format(
+						"Cannot assign a value of type [%s] to field [%s]. Did the class change without a new revision?",
+						value.getClass().getName(), name));
+			}
+			setter.invokeExact(owner, value);
+		}
+	}
+
+	private static final class IntField extends FieldCodec {
+
+		private IntField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeSignedInt((int) getter.invokeExact(owner));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, in.readSignedInt());
+		}
+	}
+
+	private static final class LongField extends FieldCodec {
+
+		private LongField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeSignedLong((long) getter.invokeExact(owner));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, in.readSignedLong());
+		}
+	}
+
+	private static final class BooleanField extends FieldCodec {
+
+		private BooleanField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeByte((boolean) getter.invokeExact(owner) ? 1 : 0);
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, in.readByte() != 0);
+		}
+	}
+
+	private static final class DoubleField extends FieldCodec {
+
+		private DoubleField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeFixedLong(Double.doubleToRawLongBits((double) getter.invokeExact(owner)));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, Double.longBitsToDouble(in.readFixedLong()));
+		}
+	}
+
+	private static final class FloatField extends FieldCodec {
+
+		private FloatField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeFixedInt(Float.floatToRawIntBits((float) getter.invokeExact(owner)));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, Float.intBitsToFloat(in.readFixedInt()));
+		}
+	}
+
+	private static final class ShortField extends FieldCodec {
+
+		private ShortField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeSignedInt((short) getter.invokeExact(owner));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, (short) in.readSignedInt());
+		}
+	}
+
+	private static final class CharField extends FieldCodec {
+
+		private CharField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeVarInt((char) getter.invokeExact(owner));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, (char) in.readVarInt());
+		}
+	}
+
+	private static final class ByteField extends FieldCodec {
+
+		private ByteField(Field field) {
+			super(field);
+		}
+
+		@Override
+		void writeField(BinaryCodec codec, BinaryOutput out, Object owner) throws Throwable {
+			out.writeByte((byte) getter.invokeExact(owner));
+		}
+
+		@Override
+		void readField(BinaryCodec codec, BinaryInput in, Object owner) throws Throwable {
+			setter.invokeExact(owner, (byte) in.readByte());
+		}
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.sundy.axon.serializer.converters;
+
+import java.nio.ByteBuffer;
+
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+
+/**
+ * 把byte[]转换为包装该数组的{@link ByteBuffer}，不复制数据
+ * @author Administrator
+ *
+ */
+public class ByteArrayToByteBufferConverter extends AbstractContentTypeConverter<byte[], ByteBuffer> {
+
+	@Override
+	public Class<byte[]> expectedSourceType() {
+		return byte[].class;
+	}
+
+	@Override
+	public Class<ByteBuffer> targetType() {
+		return ByteBuffer.class;
+	}
+
+	@Override
+	public ByteBuffer convert(byte[] original) {
+		return ByteBuffer.wrap(original);
+	}
+
+}
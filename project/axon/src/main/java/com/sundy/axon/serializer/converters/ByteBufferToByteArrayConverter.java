@@ -0,0 +1,35 @@
+package com.sundy.axon.serializer.converters;
+
+import java.nio.ByteBuffer;
+
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+
+/**
+ * 把{@link ByteBuffer}的剩余内容转换为byte[]。如果缓冲区恰好包装了一个完整的数组，直接返回该数组，否则复制剩余的内容
+ * @author Administrator
+ *
+ */
+public class ByteBufferToByteArrayConverter extends AbstractContentTypeConverter<ByteBuffer, byte[]> {
+
+	@Override
+	public Class<ByteBuffer> expectedSourceType() {
+		return ByteBuffer.class;
+	}
+
+	@Override
+	public Class<byte[]> targetType() {
+		return byte[].class;
+	}
+
+	@Override
+	public byte[] convert(ByteBuffer original) {
+		if (original.hasArray() && original.arrayOffset() == 0 && original.position() == 0
+				&& original.remaining() == original.array().length) {
+			return original.array();
+		}
+		byte[] bytes = new byte[original.remaining()];
+		original.duplicate().get(bytes);
+		return bytes;
+	}
+
+}
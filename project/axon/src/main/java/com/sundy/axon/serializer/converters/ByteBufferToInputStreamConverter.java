@@ -0,0 +1,31 @@
+package com.sundy.axon.serializer.converters;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.sundy.axon.common.io.ByteBufferInputStream;
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+
+/**
+ * 把{@link ByteBuffer}转换为直接读取其剩余内容的输入流，不复制数据
+ * @author Administrator
+ *
+ */
+public class ByteBufferToInputStreamConverter extends AbstractContentTypeConverter<ByteBuffer, InputStream> {
+
+	@Override
+	public Class<ByteBuffer> expectedSourceType() {
+		return ByteBuffer.class;
+	}
+
+	@Override
+	public Class<InputStream> targetType() {
+		return InputStream.class;
+	}
+
+	@Override
+	public InputStream convert(ByteBuffer original) {
+		return new ByteBufferInputStream(original);
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.sundy.axon.serializer.converters;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+
+/**
+ * 读取输入流的所有内容并包装为{@link ByteBuffer}
+ * @author Administrator
+ *
+ */
+public class InputStreamToByteBufferConverter extends AbstractContentTypeConverter<InputStream, ByteBuffer> {
+
+	private final InputStreamToByteArrayConverter delegate = new InputStreamToByteArrayConverter();
+
+	@Override
+	public Class<InputStream> expectedSourceType() {
+		return InputStream.class;
+	}
+
+	@Override
+	public Class<ByteBuffer> targetType() {
+		return ByteBuffer.class;
+	}
+
+	@Override
+	public ByteBuffer convert(InputStream original) {
+		return ByteBuffer.wrap(delegate.convert(original));
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.sundy.axon.serializer.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sundy.axon.common.io.ByteBufferInputStream;
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+import com.sundy.axon.serializer.CannotConvertBetweenTypesException;
+
+/**
+ * 把包含UTF-8编码JSON的{@link ByteBuffer}解析为JsonNode，直接读取缓冲区的内容，不复制数据
+ * @author Administrator
+ *
+ */
+public class ByteBufferToJsonNodeConverter extends AbstractContentTypeConverter<ByteBuffer, JsonNode> {
+
+	private final ObjectMapper objectMapper;
+
+	public ByteBufferToJsonNodeConverter(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public Class<ByteBuffer> expectedSourceType() {
+		return ByteBuffer.class;
+	}
+
+	@Override
+	public Class<JsonNode> targetType() {
+		return JsonNode.class;
+	}
+
+	@Override
+	public JsonNode convert(ByteBuffer original) {
+		try {
+			if (original.hasArray()) {
+				return objectMapper.readTree(objectMapper.getFactory().createParser(original.array(),
+						original.arrayOffset() + original.position(), original.remaining()));
+			}
+			return objectMapper.readTree(new ByteBufferInputStream(original));
+		} catch (IOException e) {
+			throw new CannotConvertBetweenTypesException("An error occurred while converting a ByteBuffer to JsonNode", e);
+		}
+	}
+
+}
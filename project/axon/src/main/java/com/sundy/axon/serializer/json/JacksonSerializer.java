@@ -18,11 +18,14 @@ package com.sundy.axon.serializer.json;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.sundy.axon.common.AxonConfigurationException;
+import com.sundy.axon.common.io.ByteBufferInputStream;
 import com.sundy.axon.domain.MetaData;
 import com.sundy.axon.serializer.AnnotationRevisionResolver;
 import com.sundy.axon.serializer.ChainingConverterFactory;
@@ -31,9 +34,9 @@ import com.sundy.axon.serializer.RevisionResolver;
 import com.sundy.axon.serializer.SerializationException;
 import com.sundy.axon.serializer.SerializedObject;
 import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.SerializedTypeCache;
 import com.sundy.axon.serializer.Serializer;
 import com.sundy.axon.serializer.SimpleSerializedObject;
-import com.sundy.axon.serializer.SimpleSerializedType;
 import com.sundy.axon.serializer.UnknownSerializedTypeException;
 
 import org.joda.time.DateTime;
@@ -46,24 +49,43 @@ import org.joda.time.MutableDateTime;
 import org.joda.time.ReadableInstant;
 import org.joda.time.YearMonth;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Serializer implementation that uses Jackson to serialize objects into a JSON format. Although the Jackson serializer
  * requires classes to be compatible with this specific serializer, it providers much more compact serialization, while
  * still being human readable.
+ * <p/>
+ * The ObjectWriter and ObjectReader for each class are created once and cached. Objects are written into a
+ * per-thread reusable buffer, so serializing to <code>byte[]</code> only allocates the resulting array. Optionally,
+ * bytecode generated property accessors can be enabled using {@link #setUseGeneratedAccessors(boolean)}.
  *
  * @author Allard Buijze
  * @since 2.2
  */
 public class JacksonSerializer implements Serializer {
 
-    private final RevisionResolver revisionResolver;
+    private final SerializedTypeCache serializedTypes;
     private final ConverterFactory converterFactory;
     private final ObjectMapper objectMapper;
     private final ClassLoader classLoader;
+    private static final String AFTERBURNER_MODULE = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
     private final ConcurrentHashMap<String, Class> classCache = new ConcurrentHashMap<String, Class>();
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+    private final ThreadLocal<ReusableByteArrayOutputStream> buffers =
+            new ThreadLocal<ReusableByteArrayOutputStream>() {
+                @Override
+                protected ReusableByteArrayOutputStream initialValue() {
+                    return new ReusableByteArrayOutputStream();
+                }
+            };
 
     /**
      * Initialize the serializer with a default ObjectMapper instance. Revisions are resolved using {@link
@@ -135,7 +157,7 @@ public class JacksonSerializer implements Serializer {
      */
     public JacksonSerializer(ObjectMapper objectMapper, RevisionResolver revisionResolver,
                              ConverterFactory converterFactory, ClassLoader classLoader) {
-        this.revisionResolver = revisionResolver;
+        this.serializedTypes = new SerializedTypeCache(revisionResolver);
         this.converterFactory = converterFactory;
         this.objectMapper = objectMapper;
         this.classLoader = classLoader == null ? getClass().getClassLoader() : classLoader;
@@ -167,26 +189,96 @@ public class JacksonSerializer implements Serializer {
     protected void registerConverters(ChainingConverterFactory converterFactory) {
         converterFactory.registerConverter(new JsonNodeToByteArrayConverter(objectMapper));
         converterFactory.registerConverter(new ByteArrayToJsonNodeConverter(objectMapper));
+        converterFactory.registerConverter(new JsonNodeToByteBufferConverter(objectMapper));
+        converterFactory.registerConverter(new ByteBufferToJsonNodeConverter(objectMapper));
+    }
+
+    /**
+     * Sets whether property accessors should be generated as bytecode, instead of using reflection to read and write
+     * properties. This requires the Jackson Afterburner module on the classpath. This method should be invoked before
+     * the serializer is first used.
+     *
+     * @param useGeneratedAccessors whether to generate property accessors
+     * @throws AxonConfigurationException if the Afterburner module is not available on the classpath
+     */
+    public void setUseGeneratedAccessors(boolean useGeneratedAccessors) {
+        if (!useGeneratedAccessors) {
+            return;
+        }
+        try {
+            objectMapper.registerModule(
+                    (Module) classLoader.loadClass(AFTERBURNER_MODULE).getDeclaredConstructor().newInstance());
+        } catch (Exception e) {
+            throw new AxonConfigurationException(
+                    "Generated accessors require the jackson-module-afterburner on the classpath", e);
+        } catch (NoClassDefFoundError e) {
+            throw new AxonConfigurationException(
+                    "Generated accessors require the jackson-module-afterburner on the classpath", e);
+        }
+        writers.clear();
+        readers.clear();
     }
 
     @Override
     public <T> SerializedObject<T> serialize(Object object, Class<T> expectedRepresentation) {
 
         try {
+            ObjectWriter writer = writerFor(object.getClass());
             if (String.class.equals(expectedRepresentation)) {
                 //noinspection unchecked
-                return new SimpleSerializedObject<T>((T) getWriter().writeValueAsString(object),
+                return new SimpleSerializedObject<T>((T) writer.writeValueAsString(object),
                                                      expectedRepresentation, typeForClass(object.getClass()));
             }
 
-            byte[] serializedBytes = getWriter().writeValueAsBytes(object);
+            byte[] serializedBytes = writeValueAsBytes(writer, object);
             T serializedContent = converterFactory.getConverter(byte[].class, expectedRepresentation)
                                                   .convert(serializedBytes);
             return new SimpleSerializedObject<T>(serializedContent, expectedRepresentation,
                                                  typeForClass(object.getClass()));
         } catch (JsonProcessingException e) {
             throw new SerializationException("Unable to serialize object", e);
+        } catch (IOException e) {
+            throw new SerializationException("Unable to serialize object", e);
+        }
+    }
+
+    private byte[] writeValueAsBytes(ObjectWriter writer, Object object) throws IOException {
+        ReusableByteArrayOutputStream buffer = buffers.get();
+        try {
+            writer.writeValue(buffer, object);
+            return buffer.toByteArray();
+        } finally {
+            if (buffer.capacity() > MAX_POOLED_BUFFER_SIZE) {
+                buffers.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+    }
+
+    private <T> T readValue(ObjectReader reader, ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            return reader.readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return reader.readValue(new ByteBufferInputStream(buffer));
+    }
+
+    private ObjectWriter writerFor(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = getWriter().withType(type);
+            writers.putIfAbsent(type, writer);
         }
+        return writer;
+    }
+
+    private ObjectReader readerFor(Class<?> type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = getReader(type);
+            readers.putIfAbsent(type, reader);
+        }
+        return reader;
     }
 
     /**
@@ -200,7 +292,8 @@ public class JacksonSerializer implements Serializer {
 
     /**
      * Provides the ObjectWriter, with which objects are serialized to JSON form. This method may be overridden to
-     * change the configuration of the writer to use.
+     * change the configuration of the writer to use. The writer is requested once for each serialized class and
+     * cached.
      *
      * @return The writer to serialize objects with
      */
@@ -210,7 +303,8 @@ public class JacksonSerializer implements Serializer {
 
     /**
      * Provides the ObjectReader, with which objects are read from the JSON form. This method may be overridden to
-     * change the configuration of the reader to use.
+     * change the configuration of the reader to use. The reader is requested once for each deserialized class and
+     * cached.
      *
      * @param type The type of object to create a reader for
      * @return The writer to serialize objects with
@@ -230,13 +324,17 @@ public class JacksonSerializer implements Serializer {
     public <S, T> T deserialize(SerializedObject<S> serializedObject) {
         try {
             if (JsonNode.class.equals(serializedObject.getContentType())) {
-                return getReader(classForType(serializedObject.getType()))
+                return readerFor(classForType(serializedObject.getType()))
                         .readValue((JsonNode) serializedObject.getData());
             }
+            if (ByteBuffer.class.equals(serializedObject.getContentType())) {
+                return readValue(readerFor(classForType(serializedObject.getType())),
+                                 (ByteBuffer) serializedObject.getData());
+            }
             SerializedObject<byte[]> byteSerialized = converterFactory.getConverter(serializedObject.getContentType(),
                                                                                     byte[].class)
                                                                       .convert(serializedObject);
-            return getReader(classForType(serializedObject.getType())).readValue(byteSerialized.getData());
+            return readerFor(classForType(serializedObject.getType())).readValue(byteSerialized.getData());
         } catch (IOException e) {
             throw new SerializationException("Error while deserializing object", e);
         }
@@ -273,11 +371,25 @@ public class JacksonSerializer implements Serializer {
 
     @Override
     public SerializedType typeForClass(Class type) {
-        return new SimpleSerializedType(type.getName(), revisionResolver.revisionOf(type));
+        return serializedTypes.typeForClass(type);
     }
 
     @Override
     public ConverterFactory getConverterFactory() {
         return converterFactory;
     }
+
+    /**
+     * ByteArrayOutputStream that is reused by a single thread, exposing the size of its internal buffer.
+     */
+    private static final class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+        private ReusableByteArrayOutputStream() {
+            super(1024);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
 }
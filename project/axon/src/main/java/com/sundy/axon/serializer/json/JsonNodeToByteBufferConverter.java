@@ -0,0 +1,43 @@
+package com.sundy.axon.serializer.json;
+
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+import com.sundy.axon.serializer.CannotConvertBetweenTypesException;
+
+/**
+ * 把JsonNode转换为包含UTF-8编码JSON的{@link ByteBuffer}
+ * @author Administrator
+ *
+ */
+public class JsonNodeToByteBufferConverter extends AbstractContentTypeConverter<JsonNode, ByteBuffer> {
+
+	private final ObjectMapper objectMapper;
+
+	public JsonNodeToByteBufferConverter(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public Class<JsonNode> expectedSourceType() {
+		return JsonNode.class;
+	}
+
+	@Override
+	public Class<ByteBuffer> targetType() {
+		return ByteBuffer.class;
+	}
+
+	@Override
+	public ByteBuffer convert(JsonNode original) {
+		try {
+			return ByteBuffer.wrap(objectMapper.writeValueAsBytes(original));
+		} catch (JsonProcessingException e) {
+			throw new CannotConvertBetweenTypesException("An error occurred while converting a JsonNode to ByteBuffer", e);
+		}
+	}
+
+}
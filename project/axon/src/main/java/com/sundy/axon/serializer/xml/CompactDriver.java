@@ -25,16 +25,18 @@ import com.thoughtworks.xstream.io.xml.XppDriver;
 import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.Charset;
 
 /**
  * XStream HierarchicalStreamDriver implementation that uses a CompactWriter to write XML without newlines and
  * indentation, while writing it using the (default) XPPReader.
  * <p/>
- * Note: this implementation does not support writing to an OutputStream, due to potential Character Set issues. Always
- * write to a text based output stream, such as the {@link java.io.OutputStreamWriter}.
+ * When writing to an OutputStream, characters are encoded using the character set the driver was created with (UTF-8
+ * by default). Make sure it matches the character set used to read the XML back.
  *
  * @author Allard Buijze
  * @since 2.0
@@ -42,6 +44,23 @@ import java.net.URL;
 public class CompactDriver implements HierarchicalStreamDriver {
 
     private final XppDriver xppDriver = new XppDriver();
+    private final Charset charset;
+
+    /**
+     * Initializes a driver that encodes characters written to an OutputStream using UTF-8.
+     */
+    public CompactDriver() {
+        this(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Initializes a driver that encodes characters written to an OutputStream using the given <code>charset</code>.
+     *
+     * @param charset The character set to encode characters with
+     */
+    public CompactDriver(Charset charset) {
+        this.charset = charset;
+    }
 
     @Override
     public HierarchicalStreamReader createReader(Reader in) {
@@ -70,6 +89,6 @@ public class CompactDriver implements HierarchicalStreamDriver {
 
     @Override
     public HierarchicalStreamWriter createWriter(OutputStream out) {
-        throw new UnsupportedOperationException("Not supported due to possible character set issues.");
+        return new CompactWriter(new OutputStreamWriter(out, charset));
     }
 }
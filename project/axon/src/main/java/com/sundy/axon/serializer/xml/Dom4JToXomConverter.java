@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2010-2014. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sundy.axon.serializer.xml;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+
+import nu.xom.converters.DOMConverter;
+import org.dom4j.Document;
+import org.dom4j.io.DocumentSource;
+
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+import com.sundy.axon.serializer.CannotConvertBetweenTypesException;
+
+/**
+ * Converter that converts Dom4j Document instances to XOM Documents by streaming the tree as SAX events into a
+ * W3C DOM. This avoids writing the document to bytes and parsing it again when consecutive upcasters use different
+ * XML representations.
+ * <p/>
+ * TransformerFactory lookup scans the classpath, so each thread creates its factory once and reuses it.
+ *
+ * @author Administrator
+ */
+public class Dom4JToXomConverter extends AbstractContentTypeConverter<Document, nu.xom.Document> {
+
+    private static final ThreadLocal<TransformerFactory> TRANSFORMER_FACTORIES = new ThreadLocal<TransformerFactory>() {
+        @Override
+        protected TransformerFactory initialValue() {
+            return TransformerFactory.newInstance();
+        }
+    };
+
+    @Override
+    public Class<Document> expectedSourceType() {
+        return Document.class;
+    }
+
+    @Override
+    public Class<nu.xom.Document> targetType() {
+        return nu.xom.Document.class;
+    }
+
+    @Override
+    public nu.xom.Document convert(Document original) {
+        try {
+            DOMResult result = new DOMResult();
+            TRANSFORMER_FACTORIES.get().newTransformer().transform(new DocumentSource(original), result);
+            return DOMConverter.convert((org.w3c.dom.Document) result.getNode());
+        } catch (TransformerException e) {
+            throw new CannotConvertBetweenTypesException("Cannot convert from Dom4j Document to XOM Document.", e);
+        }
+    }
+}
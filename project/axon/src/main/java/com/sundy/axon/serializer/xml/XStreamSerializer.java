@@ -17,15 +17,19 @@
 package com.sundy.axon.serializer.xml;
 
 import com.sundy.axon.serializer.AbstractXStreamSerializer;
+import com.sundy.axon.serializer.AnnotationRevisionResolver;
 import com.sundy.axon.serializer.ChainingConverterFactory;
 import com.sundy.axon.serializer.ConverterFactory;
 import com.sundy.axon.serializer.RevisionResolver;
+import com.sundy.axon.serializer.SerializationException;
 import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.XStreamFactory;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.Dom4JReader;
 import com.thoughtworks.xstream.io.xml.XomReader;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
@@ -38,6 +42,9 @@ import java.nio.charset.Charset;
  * When running on a Sun JVM, XStream does not pose any restrictions on classes to serialize. On other JVM's, however,
  * you need to either implement Serializable, or provide a default constructor (accessible under the JVM's security
  * policy). That means that for portability, you should do either of these two.
+ * <p/>
+ * Serializers that create their own XStream instances use a pool of XStream instances with a {@link CompactDriver},
+ * with at most one instance per available processor. Each thread writes its XML into a reusable buffer.
  *
  * @author Allard Buijze
  * @see com.thoughtworks.xstream.XStream
@@ -45,12 +52,23 @@ import java.nio.charset.Charset;
  */
 public class XStreamSerializer extends AbstractXStreamSerializer {
 
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private final ThreadLocal<ReusableBuffer> buffers = new ThreadLocal<ReusableBuffer>() {
+        @Override
+        protected ReusableBuffer initialValue() {
+            return new ReusableBuffer(getCharset());
+        }
+    };
+
     /**
-     * Initialize a generic serializer using the UTF-8 character set. A default XStream instance (with {@link
-     * com.thoughtworks.xstream.io.xml.XppDriver}) is used to perform the serialization.
+     * Initialize a generic serializer using the UTF-8 character set. A pool of default XStream instances (with {@link
+     * CompactDriver}) is used to perform the serialization.
      */
     public XStreamSerializer() {
-        super(new XStream(new CompactDriver()));
+        this(new AnnotationRevisionResolver());
     }
 
     /**
@@ -60,7 +78,8 @@ public class XStreamSerializer extends AbstractXStreamSerializer {
      * @param revisionResolver The strategy to use to resolve the revision of an object
      */
     public XStreamSerializer(RevisionResolver revisionResolver) {
-        this(new XStream(new CompactDriver()), revisionResolver);
+        this(DEFAULT_CHARSET, new CompactDriverXStreamFactory(DEFAULT_CHARSET), DEFAULT_POOL_SIZE, revisionResolver,
+             new ChainingConverterFactory());
     }
 
     /**
@@ -91,7 +110,8 @@ public class XStreamSerializer extends AbstractXStreamSerializer {
      * @param charset The character set to use
      */
     public XStreamSerializer(Charset charset) {
-        super(charset, new XStream(new CompactDriver()));
+        this(charset, new CompactDriverXStreamFactory(charset), DEFAULT_POOL_SIZE, new AnnotationRevisionResolver(),
+             new ChainingConverterFactory());
     }
 
     /**
@@ -121,11 +141,41 @@ public class XStreamSerializer extends AbstractXStreamSerializer {
         super(charset, xStream, revisionResolver, converterFactory);
     }
 
+    /**
+     * Initialize the serializer using the given <code>charset</code> and a pool of XStream instances created by the
+     * given <code>xStreamFactory</code>. Each thread is assigned one of at most <code>poolSize</code> instances. Each
+     * instance is configured with several converters for the most common types in Axon.
+     *
+     * @param charset          The character set to use
+     * @param xStreamFactory   The factory creating the pooled XStream instances
+     * @param poolSize         The maximum number of XStream instances to create
+     * @param revisionResolver The strategy to use to resolve the revision of an object
+     * @param converterFactory The factory providing the converter instances for upcasters
+     */
+    public XStreamSerializer(Charset charset, XStreamFactory xStreamFactory, int poolSize,
+                             RevisionResolver revisionResolver, ConverterFactory converterFactory) {
+        super(charset, xStreamFactory, poolSize, revisionResolver, converterFactory);
+    }
+
     @Override
     protected <T> T doSerialize(Object object, Class<T> expectedFormat, XStream xStream) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        xStream.toXML(object, new OutputStreamWriter(baos, getCharset()));
-        return convert(byte[].class, expectedFormat, baos.toByteArray());
+        ReusableBuffer buffer = buffers.get();
+        byte[] serialized = null;
+        try {
+            xStream.toXML(object, buffer.writer);
+            buffer.writer.flush();
+            serialized = buffer.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Unable to write the serialized form of the object", e);
+        } finally {
+            // the writer may still hold characters of a failed attempt, so such a buffer is not reused
+            if (serialized == null || buffer.capacity() > MAX_POOLED_BUFFER_SIZE) {
+                buffers.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+        return convert(byte[].class, expectedFormat, serialized);
     }
 
     /**
@@ -151,5 +201,41 @@ public class XStreamSerializer extends AbstractXStreamSerializer {
         converterFactory.registerConverter(InputStreamToDom4jConverter.class);
         converterFactory.registerConverter(XomToStringConverter.class);
         converterFactory.registerConverter(InputStreamToXomConverter.class);
+        converterFactory.registerConverter(Dom4JToXomConverter.class);
+        converterFactory.registerConverter(XomToDom4JConverter.class);
+    }
+
+    /**
+     * Output buffer reused by a single thread, with a writer that encodes characters into it.
+     */
+    private static final class ReusableBuffer extends ByteArrayOutputStream {
+
+        private final OutputStreamWriter writer;
+
+        private ReusableBuffer(Charset charset) {
+            super(1024);
+            this.writer = new OutputStreamWriter(this, charset);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+
+    /**
+     * Creates XStream instances that use a {@link CompactDriver}.
+     */
+    private static final class CompactDriverXStreamFactory implements XStreamFactory {
+
+        private final Charset charset;
+
+        private CompactDriverXStreamFactory(Charset charset) {
+            this.charset = charset;
+        }
+
+        @Override
+        public XStream createXStream() {
+            return new XStream(new CompactDriver(charset));
+        }
     }
 }
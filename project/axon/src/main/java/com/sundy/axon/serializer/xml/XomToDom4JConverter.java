@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2010-2014. Axon Framework
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sundy.axon.serializer.xml;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import nu.xom.Document;
+import nu.xom.converters.DOMConverter;
+import org.dom4j.io.DOMReader;
+
+import com.sundy.axon.serializer.AbstractContentTypeConverter;
+import com.sundy.axon.serializer.CannotConvertBetweenTypesException;
+
+/**
+ * Converter that converts XOM Documents to Dom4j Document instances by copying the tree through a W3C DOM. This
+ * avoids writing the document to a String and parsing it again when consecutive upcasters use different XML
+ * representations.
+ * <p/>
+ * DocumentBuilderFactory lookup scans the classpath, so each thread creates its factory once and reuses it.
+ *
+ * @author Administrator
+ */
+public class XomToDom4JConverter extends AbstractContentTypeConverter<Document, org.dom4j.Document> {
+
+    private static final ThreadLocal<DocumentBuilderFactory> BUILDER_FACTORIES =
+            new ThreadLocal<DocumentBuilderFactory>() {
+                @Override
+                protected DocumentBuilderFactory initialValue() {
+                    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                    factory.setNamespaceAware(true);
+                    return factory;
+                }
+            };
+
+    @Override
+    public Class<Document> expectedSourceType() {
+        return Document.class;
+    }
+
+    @Override
+    public Class<org.dom4j.Document> targetType() {
+        return org.dom4j.Document.class;
+    }
+
+    @Override
+    public org.dom4j.Document convert(Document original) {
+        try {
+            return new DOMReader().read(DOMConverter.convert(
+                    original, BUILDER_FACTORIES.get().newDocumentBuilder().getDOMImplementation()));
+        } catch (ParserConfigurationException e) {
+            throw new CannotConvertBetweenTypesException("Cannot convert from XOM Document to Dom4j Document.", e);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.sundy.axon.upcasting;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.sundy.axon.common.Assert;
 import com.sundy.axon.serializer.ChainingConverterFactory;
@@ -11,16 +13,26 @@ import com.sundy.axon.serializer.ContentTypeConverter;
 import com.sundy.axon.serializer.ConverterFactory;
 import com.sundy.axon.serializer.SerializedObject;
 import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.SerializedTypeCache;
 
 /**
  * UpcasterChain接口的抽象实现。 该实现负责迭代过程，并提供实用功能来转换内容类型。
+ * <p/>
+ * 每个序列化类型(名称和修订版本)第一次出现时，会预先计算出能够处理它的upcaster在链中的位置，之后同一类型的对象直接使用该计划，
+ * 不再对每个upcaster调用{@link Upcaster#canUpcast(SerializedType)}。没有upcaster能处理的类型直接原样返回。
+ * 因此{@link Upcaster#canUpcast(SerializedType)}的结果只能取决于给定的类型。计划的键和upcaster返回的类型都经过
+ * {@link SerializedTypeCache#intern(SerializedType)}规范化
  * @author Administrator
  *
  */
 public abstract class AbstractUpcasterChain implements UpcasterChain {
 
-	private final List<Upcaster> upcasters;
+	private static final int[] NO_UPCASTERS = new int[0];
+
+	private final Upcaster[] upcasters;
 	private final ConverterFactory converterFactory;
+	// 序列化类型 -> 能处理该类型的upcaster的位置(升序)
+	private final ConcurrentMap<SerializedType, int[]> plans = new ConcurrentHashMap<SerializedType, int[]>();
 	
 	protected AbstractUpcasterChain(List<Upcaster> upcasters){
 		this(new ChainingConverterFactory(),upcasters);
@@ -28,17 +40,18 @@ public abstract class AbstractUpcasterChain implements UpcasterChain {
 	
 	protected AbstractUpcasterChain(ConverterFactory converterFactory, List<Upcaster> upcasters) {
         Assert.notNull(converterFactory, "converterFactory may not be null");
-        this.upcasters = upcasters;
+        this.upcasters = upcasters.toArray(new Upcaster[upcasters.size()]);
         this.converterFactory = converterFactory;
     }
 	
 	public List<SerializedObject> upcast(SerializedObject serializedObject,
 			UpcastingContext upcastingContext) {
-		if (upcasters.isEmpty()) {
+		if (upcasters.length == 0 || planFor(serializedObject.getType()).length == 0) {
             return Collections.singletonList(serializedObject);
         }
-        Iterator<Upcaster> upcasterIterator = upcasters.iterator();
-        return upcastInternal(Collections.singletonList(serializedObject), upcasterIterator, upcastingContext);
+        List<SerializedObject> upcastObjects = new ArrayList<SerializedObject>();
+        upcastInternal(serializedObject, 0, upcastingContext, upcastObjects);
+        return upcastObjects;
 	}
 	
 	protected <S, T> SerializedObject<T> ensureCorrectContentType(SerializedObject<S> serializedObject,
@@ -66,29 +79,59 @@ public abstract class AbstractUpcasterChain implements UpcasterChain {
             List<SerializedType> targetTypes,
             UpcastingContext context);
 	
-	private List<SerializedObject> upcastInternal(List<SerializedObject> serializedObjects,
-            Iterator<Upcaster> upcasterIterator,
-            UpcastingContext context) {
-		if (!upcasterIterator.hasNext()) {
-			return serializedObjects;
+	/**
+	 * 从链中的给定位置开始向上转换给定的对象，结果按顺序添加到给定的列表中
+	 */
+	private void upcastInternal(SerializedObject serializedObject, int fromIndex, UpcastingContext context,
+			List<SerializedObject> upcastObjects) {
+		int index = nextUpcaster(planFor(serializedObject.getType()), fromIndex);
+		if (index < 0) {
+			upcastObjects.add(serializedObject);
+			return;
 		}
-		List<SerializedObject> upcastObjects = new ArrayList<SerializedObject>();
-		Upcaster<?> currentUpcaster = upcasterIterator.next();
-		for (SerializedObject serializedObject : serializedObjects) {
-		if (currentUpcaster.canUpcast(serializedObject.getType())) {
+		Upcaster<?> currentUpcaster = upcasters[index];
 		List<SerializedType> upcastTypes;
 		if (currentUpcaster instanceof ExtendedUpcaster) {
 			upcastTypes = ((ExtendedUpcaster) currentUpcaster).upcast(serializedObject.getType(), serializedObject);
 		} else {
 			upcastTypes = currentUpcaster.upcast(serializedObject.getType());
 		}
-			upcastObjects.addAll(doUpcast(currentUpcaster, serializedObject, upcastTypes, context));
-		} else {
-			upcastObjects.add(serializedObject);
+		List<SerializedType> targetTypes = new ArrayList<SerializedType>(upcastTypes.size());
+		for (SerializedType upcastType : upcastTypes) {
+			targetTypes.add(SerializedTypeCache.intern(upcastType));
 		}
+		for (SerializedObject upcastObject : doUpcast(currentUpcaster, serializedObject, targetTypes, context)) {
+			upcastInternal(upcastObject, index + 1, context, upcastObjects);
 		}
-		return upcastInternal(upcastObjects, upcasterIterator, context);
 	}
 
+	private static int nextUpcaster(int[] plan, int fromIndex) {
+		for (int index : plan) {
+			if (index >= fromIndex) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	private int[] planFor(SerializedType serializedType) {
+		SerializedType key = SerializedTypeCache.intern(serializedType);
+		int[] plan = plans.get(key);
+		if (plan == null) {
+			plan = compilePlan(key);
+			plans.putIfAbsent(key, plan);
+		}
+		return plan;
+	}
 
+	private int[] compilePlan(SerializedType serializedType) {
+		int[] plan = new int[upcasters.length];
+		int count = 0;
+		for (int i = 0; i < upcasters.length; i++) {
+			if (upcasters[i].canUpcast(serializedType)) {
+				plan[count++] = i;
+			}
+		}
+		return count == 0 ? NO_UPCASTERS : Arrays.copyOf(plan, count);
+	}
 }
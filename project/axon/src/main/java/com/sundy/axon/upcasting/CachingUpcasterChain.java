@@ -0,0 +1,131 @@
+package com.sundy.axon.upcasting;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sundy.axon.cache.Cache;
+import com.sundy.axon.common.Assert;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+import com.sundy.axon.serializer.converters.InputStreamToByteArrayConverter;
+
+/**
+ * 缓存向上转换结果的UpcasterChain装饰器。同一个事件被反复读取时(比如热点聚合的缓存未命中)，直接返回上一次向上转换的结果，
+ * 不再经过upcaster链
+ * <p/>
+ * 缓存的键由消息标识符、序列化类型(名称和修订版本)和链的版本组成。修改链中的upcaster时必须同时修改链的版本，
+ * 否则会读到旧链的结果。上下文中没有消息标识符的对象不会被缓存
+ * <p/>
+ * 缓存的是已经完成转换的序列化对象，延迟转换的结果在放入缓存前就会被计算出来，只能读取一次的InputStream会被读成byte[]。
+ * 缓存的数据对象会被多次读取共享，反序列化时不能修改它们。没有任何upcaster处理的对象原样返回，不会被缓存。缓存应该是有容量限制的堆内缓存，比如{@link com.sundy.axon.cache.TinyLfuCache}
+ * @author Administrator
+ *
+ */
+public class CachingUpcasterChain implements UpcasterChain {
+
+	private static final InputStreamToByteArrayConverter INPUT_STREAM_CONVERTER = new InputStreamToByteArrayConverter();
+
+	private final UpcasterChain delegate;
+	private final Cache cache;
+	private final String chainVersion;
+
+	/**
+	 * @param delegate 实际执行向上转换的链
+	 * @param cache 保存转换结果的缓存
+	 * @param chainVersion 链的版本，链中的upcaster改变时必须修改
+	 */
+	public CachingUpcasterChain(UpcasterChain delegate, Cache cache, String chainVersion) {
+		Assert.notNull(delegate, "delegate may not be null");
+		Assert.notNull(cache, "cache may not be null");
+		Assert.notNull(chainVersion, "chainVersion may not be null");
+		this.delegate = delegate;
+		this.cache = cache;
+		this.chainVersion = chainVersion;
+	}
+
+	@Override
+	public List<SerializedObject> upcast(SerializedObject serializedObject, UpcastingContext upcastingContext) {
+		if (upcastingContext == null || upcastingContext.getMessageIdentifier() == null) {
+			return delegate.upcast(serializedObject, upcastingContext);
+		}
+		Key key = new Key(upcastingContext.getMessageIdentifier(), serializedObject.getType(), chainVersion);
+		List<SerializedObject> upcastObjects = cache.get(key);
+		if (upcastObjects != null) {
+			return upcastObjects;
+		}
+		upcastObjects = delegate.upcast(serializedObject, upcastingContext);
+		if (upcastObjects.size() == 1 && upcastObjects.get(0) == serializedObject) {
+			return upcastObjects;
+		}
+		upcastObjects = materialize(upcastObjects);
+		cache.put(key, upcastObjects);
+		return upcastObjects;
+	}
+
+	/**
+	 * 计算出延迟转换的结果，把InputStream读成byte[]，返回不可修改的列表
+	 */
+	private static List<SerializedObject> materialize(List<SerializedObject> upcastObjects) {
+		List<SerializedObject> materialized = new ArrayList<SerializedObject>(upcastObjects.size());
+		for (SerializedObject<?> upcastObject : upcastObjects) {
+			materialized.add(materialize(upcastObject));
+		}
+		return Collections.unmodifiableList(materialized);
+	}
+
+	private static SerializedObject<?> materialize(SerializedObject<?> upcastObject) {
+		if (InputStream.class.isAssignableFrom(upcastObject.getContentType())) {
+			return INPUT_STREAM_CONVERTER.convert((SerializedObject<InputStream>) upcastObject);
+		}
+		return materializeData(upcastObject);
+	}
+
+	private static <T> SerializedObject<T> materializeData(SerializedObject<T> upcastObject) {
+		if (upcastObject instanceof SimpleSerializedObject) {
+			return upcastObject;
+		}
+		return new SimpleSerializedObject<T>(upcastObject.getData(), upcastObject.getContentType(),
+				upcastObject.getType());
+	}
+
+	private static final class Key {
+
+		private final String messageIdentifier;
+		private final String typeName;
+		private final String revision;
+		private final String chainVersion;
+
+		private Key(String messageIdentifier, SerializedType type, String chainVersion) {
+			this.messageIdentifier = messageIdentifier;
+			this.typeName = type.getName();
+			this.revision = type.getRevision();
+			this.chainVersion = chainVersion;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return messageIdentifier.equals(other.messageIdentifier) && typeName.equals(other.typeName)
+					&& (revision == null ? other.revision == null : revision.equals(other.revision))
+					&& chainVersion.equals(other.chainVersion);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = messageIdentifier.hashCode();
+			result = 31 * result + typeName.hashCode();
+			result = 31 * result + (revision == null ? 0 : revision.hashCode());
+			return 31 * result + chainVersion.hashCode();
+		}
+	}
+
+}
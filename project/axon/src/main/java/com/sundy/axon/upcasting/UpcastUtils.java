@@ -19,6 +19,7 @@ package com.sundy.axon.upcasting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sundy.axon.common.Assert;
 import com.sundy.axon.domain.DomainEventMessage;
 import com.sundy.axon.serializer.SerializedDomainEventData;
 import com.sundy.axon.serializer.SerializedDomainEventMessage;
@@ -28,6 +29,8 @@ import com.sundy.axon.serializer.UnknownSerializedTypeException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * 优化与类型提升有关的任务的实用类。
@@ -35,6 +38,7 @@ import java.util.List;
 public abstract class UpcastUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(UpcastUtils.class);
+    private static final int DEFAULT_BATCH_THRESHOLD = 64;
 
     private UpcastUtils() {
     }
@@ -71,6 +75,59 @@ public abstract class UpcastUtils {
         return events;
     }
 
+    /**
+     * Upcasts and deserializes the given entries in parallel on the given <code>pool</code>. The entries are split
+     * into slices of at most <code>batchThreshold</code> entries, and each slice is upcast and has its payload and
+     * meta data deserialized on a worker thread. The returned list keeps the order of the entries, and the events of a
+     * single entry stay in the order the upcaster chain produced them.
+     * <p/>
+     * The serializer and the upcasters in the chain must be safe to use from several threads at once.
+     *
+     * @param entries             The entries to upcast and deserialize, in order
+     * @param aggregateIdentifier The aggregate identifier to use for the events, or <code>null</code> to use the
+     *                            identifier stored in each entry
+     * @param serializer          The serializer to deserialize the events with
+     * @param upcasterChain       The chain to upcast the entries with
+     * @param skipUnknownTypes    Whether to skip events of types that cannot be resolved to a class
+     * @param pool                The pool to run the work on
+     * @param batchThreshold      The maximum number of entries handled by a single task
+     * @return the deserialized events, in the order of the entries
+     */
+    public static List<DomainEventMessage> upcastAndDeserialize(List<? extends SerializedDomainEventData> entries,
+                                                                Object aggregateIdentifier,
+                                                                Serializer serializer, UpcasterChain upcasterChain,
+                                                                boolean skipUnknownTypes, ForkJoinPool pool,
+                                                                int batchThreshold) {
+        Assert.isTrue(batchThreshold > 0, "batchThreshold must be a positive number");
+        if (entries.size() <= batchThreshold) {
+            return new UpcastAndDeserializeTask(entries, aggregateIdentifier, serializer, upcasterChain,
+                                                skipUnknownTypes, batchThreshold).compute();
+        }
+        return pool.invoke(new UpcastAndDeserializeTask(entries, aggregateIdentifier, serializer, upcasterChain,
+                                                        skipUnknownTypes, batchThreshold));
+    }
+
+    /**
+     * Upcasts and deserializes the given entries in parallel on the common fork join pool, in slices of 64 entries.
+     *
+     * @param entries             The entries to upcast and deserialize, in order
+     * @param aggregateIdentifier The aggregate identifier to use for the events, or <code>null</code> to use the
+     *                            identifier stored in each entry
+     * @param serializer          The serializer to deserialize the events with
+     * @param upcasterChain       The chain to upcast the entries with
+     * @param skipUnknownTypes    Whether to skip events of types that cannot be resolved to a class
+     * @return the deserialized events, in the order of the entries
+     * @see #upcastAndDeserialize(java.util.List, Object, Serializer, UpcasterChain, boolean,
+     *      java.util.concurrent.ForkJoinPool, int)
+     */
+    public static List<DomainEventMessage> upcastAndDeserialize(List<? extends SerializedDomainEventData> entries,
+                                                                Object aggregateIdentifier,
+                                                                Serializer serializer, UpcasterChain upcasterChain,
+                                                                boolean skipUnknownTypes) {
+        return upcastAndDeserialize(entries, aggregateIdentifier, serializer, upcasterChain, skipUnknownTypes,
+                                    ForkJoinPool.commonPool(), DEFAULT_BATCH_THRESHOLD);
+    }
+
     private static Object firstNonNull(Object... instances) {
         for (Object instance : instances) {
             if (instance != null) {
@@ -79,4 +136,59 @@ public abstract class UpcastUtils {
         }
         return null;
     }
+
+    /**
+     * Splits the entries in halves until a slice is small enough, then upcasts the slice and forces deserialization
+     * of the payload and meta data of the resulting events.
+     */
+    private static final class UpcastAndDeserializeTask extends RecursiveTask<List<DomainEventMessage>> {
+
+        private static final long serialVersionUID = 2591604717324432640L;
+
+        private final List<? extends SerializedDomainEventData> entries;
+        private final Object aggregateIdentifier;
+        private final Serializer serializer;
+        private final UpcasterChain upcasterChain;
+        private final boolean skipUnknownTypes;
+        private final int batchThreshold;
+
+        private UpcastAndDeserializeTask(List<? extends SerializedDomainEventData> entries,
+                                         Object aggregateIdentifier, Serializer serializer,
+                                         UpcasterChain upcasterChain, boolean skipUnknownTypes, int batchThreshold) {
+            this.entries = entries;
+            this.aggregateIdentifier = aggregateIdentifier;
+            this.serializer = serializer;
+            this.upcasterChain = upcasterChain;
+            this.skipUnknownTypes = skipUnknownTypes;
+            this.batchThreshold = batchThreshold;
+        }
+
+        @Override
+        protected List<DomainEventMessage> compute() {
+            if (entries.size() > batchThreshold) {
+                int middle = entries.size() / 2;
+                UpcastAndDeserializeTask tail = slice(middle, entries.size());
+                tail.fork();
+                List<DomainEventMessage> events = slice(0, middle).compute();
+                events.addAll(tail.join());
+                return events;
+            }
+            List<DomainEventMessage> events = new ArrayList<DomainEventMessage>(entries.size());
+            for (SerializedDomainEventData entry : entries) {
+                for (DomainEventMessage event : UpcastUtils.upcastAndDeserialize(entry, aggregateIdentifier,
+                                                                                 serializer, upcasterChain,
+                                                                                 skipUnknownTypes)) {
+                    event.getPayload();
+                    event.getMetaData();
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+
+        private UpcastAndDeserializeTask slice(int from, int to) {
+            return new UpcastAndDeserializeTask(entries.subList(from, to), aggregateIdentifier, serializer,
+                                                upcasterChain, skipUnknownTypes, batchThreshold);
+        }
+    }
 }
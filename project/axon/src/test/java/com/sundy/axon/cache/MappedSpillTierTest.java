@@ -0,0 +1,194 @@
+package com.sundy.axon.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.serializer.JavaSerializer;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.Serializer;
+
+public class MappedSpillTierTest extends TestCase {
+
+	private static final int SEGMENT_SIZE = 512;
+	private static final int MAX_SEGMENTS = 2;
+
+	private final Serializer serializer = new JavaSerializer();
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("spill", "test");
+		assertTrue(directory.delete());
+		assertTrue(directory.mkdirs());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		deleteDirectory(directory);
+	}
+
+	public void testWrapAroundDropsEntriesOfOldestSegment() {
+		MappedSpillTier tier = new MappedSpillTier(directory, SEGMENT_SIZE, MAX_SEGMENTS, serializer);
+		Set<Object> dropped = writeEntries(tier, 40);
+		assertFalse("Expected the oldest segments to be dropped", dropped.isEmpty());
+		for (int i = 0; i < 40; i++) {
+			String key = "key-" + i;
+			assertTrue(key, dropped.contains(key) != tier.contains(key));
+		}
+		assertTrue(tier.contains("key-39"));
+		SerializedObject<byte[]> value = tier.remove("key-39");
+		assertEquals("value-39", serializer.deserialize(value));
+		assertFalse(tier.contains("key-39"));
+		assertTrue(spillFiles().length <= MAX_SEGMENTS);
+	}
+
+	public void testRecoveryDoesNotRestoreDroppedOrRemovedEntries() {
+		MappedSpillTier tier = new MappedSpillTier(directory, SEGMENT_SIZE, MAX_SEGMENTS, serializer);
+		Set<Object> dropped = writeEntries(tier, 40);
+		tier.remove("key-38");
+		tier.delete("key-37");
+		tier.flush();
+
+		MappedSpillTier recovered = new MappedSpillTier(directory, SEGMENT_SIZE, MAX_SEGMENTS, serializer);
+		for (int i = 0; i < 40; i++) {
+			String key = "key-" + i;
+			assertEquals(key, tier.contains(key), recovered.contains(key));
+			if (dropped.contains(key)) {
+				assertFalse(key, recovered.contains(key));
+			}
+		}
+		assertEquals("value-39", serializer.deserialize(recovered.remove("key-39")));
+	}
+
+	public void testRecoverySkipsAndDeletesObsoleteSegments() throws IOException {
+		MappedSpillTier tier = new MappedSpillTier(directory, SEGMENT_SIZE, MAX_SEGMENTS, serializer);
+		writeEntries(tier, 1);
+		tier.flush();
+		File segment = spillFiles()[0];
+		File otherDirectory = new File(directory, "copy");
+		assertTrue(otherDirectory.mkdirs());
+		File obsolete = new File(otherDirectory, segment.getName());
+		copy(segment, obsolete);
+		// 模拟删除失败而留下的段
+		RandomAccessFile file = new RandomAccessFile(obsolete, "rw");
+		try {
+			file.writeInt(MappedSpillTier.OBSOLETE_MAGIC);
+		} finally {
+			file.close();
+		}
+
+		MappedSpillTier recovered = new MappedSpillTier(otherDirectory, SEGMENT_SIZE, MAX_SEGMENTS, serializer);
+		assertFalse(recovered.contains("key-0"));
+		assertFalse(obsolete.exists());
+	}
+
+	public void testRecoveryTruncatesCorruptSegments() throws IOException {
+		MappedSpillTier tier = new MappedSpillTier(directory, SEGMENT_SIZE, 8, serializer);
+		writeEntries(tier, 3);
+		tier.flush();
+		File segment = spillFiles()[0];
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		int secondRecord;
+		try {
+			// 第一条记录的长度在偏移量9处，把第二条记录的长度改成超出文件末尾
+			file.seek(9);
+			secondRecord = 8 + file.readInt();
+			file.seek(secondRecord + 1);
+			file.writeInt(Integer.MAX_VALUE - 16);
+		} finally {
+			file.close();
+		}
+
+		MappedSpillTier recovered = new MappedSpillTier(directory, SEGMENT_SIZE, 8, serializer);
+		assertEquals("value-0", serializer.deserialize(recovered.remove("key-0")));
+		assertFalse(recovered.contains("key-1"));
+		assertFalse(recovered.contains("key-2"));
+		recovered.write("key-3", serializer.serialize("key-3", byte[].class),
+				serializer.serialize("value-3", byte[].class));
+		recovered.flush();
+		assertEquals("value-3", serializer.deserialize(
+				new MappedSpillTier(directory, SEGMENT_SIZE, 8, serializer).remove("key-3")));
+	}
+
+	public void testRecoveryIgnoresWritePositionBeyondTheFile() throws IOException {
+		MappedSpillTier tier = new MappedSpillTier(directory, SEGMENT_SIZE, 8, serializer);
+		writeEntries(tier, 2);
+		tier.flush();
+		RandomAccessFile file = new RandomAccessFile(spillFiles()[0], "rw");
+		try {
+			file.seek(4);
+			file.writeInt(SEGMENT_SIZE * 4);
+		} finally {
+			file.close();
+		}
+
+		MappedSpillTier recovered = new MappedSpillTier(directory, SEGMENT_SIZE, 8, serializer);
+		assertFalse(recovered.contains("key-0"));
+		recovered.write("key-2", serializer.serialize("key-2", byte[].class),
+				serializer.serialize("value-2", byte[].class));
+		assertEquals("value-2", serializer.deserialize(recovered.remove("key-2")));
+	}
+
+	private Set<Object> writeEntries(MappedSpillTier tier, int count) {
+		Set<Object> dropped = new HashSet<Object>();
+		for (int i = 0; i < count; i++) {
+			String key = "key-" + i;
+			List<Object> droppedKeys = tier.write(key, serializer.serialize(key, byte[].class),
+					serializer.serialize("value-" + i, byte[].class));
+			dropped.addAll(droppedKeys);
+		}
+		return dropped;
+	}
+
+	private File[] spillFiles() {
+		File[] files = directory.listFiles();
+		Set<File> spillFiles = new HashSet<File>();
+		for (File file : files) {
+			if (file.getName().startsWith("spill-")) {
+				spillFiles.add(file);
+			}
+		}
+		return spillFiles.toArray(new File[spillFiles.size()]);
+	}
+
+	private static void copy(File from, File to) throws IOException {
+		FileInputStream in = new FileInputStream(from);
+		try {
+			FileOutputStream out = new FileOutputStream(to);
+			try {
+				byte[] buffer = new byte[4096];
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void deleteDirectory(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory()) {
+					deleteDirectory(file);
+				} else {
+					file.delete();
+				}
+			}
+		}
+		directory.delete();
+	}
+
+}
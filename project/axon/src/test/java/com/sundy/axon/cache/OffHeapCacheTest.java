@@ -0,0 +1,143 @@
+package com.sundy.axon.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.serializer.JavaSerializer;
+
+public class OffHeapCacheTest extends TestCase {
+
+	private static final int PAGE_SIZE = 256;
+
+	private ListenerRecorder recorder;
+
+	@Override
+	protected void setUp() throws Exception {
+		recorder = new ListenerRecorder();
+	}
+
+	public void testPutAndGet() {
+		OffHeapCache cache = createCache(4);
+		cache.put("key", "value");
+		assertTrue(cache.containsKey("key"));
+		assertEquals("value", cache.get("key"));
+		assertNull(cache.get("other"));
+		assertEquals(Arrays.<Object>asList("key"), recorder.created);
+	}
+
+	public void testOverwriteReplacesValueOfAnotherSizeClass() {
+		OffHeapCache cache = createCache(4);
+		cache.put("key", bytes(30, 1));
+		cache.put("key", bytes(100, 2));
+		assertTrue(Arrays.equals(bytes(100, 2), (byte[]) cache.get("key")));
+		assertFalse(cache.putIfAbsent("key", bytes(30, 3)));
+		assertTrue(Arrays.equals(bytes(100, 2), (byte[]) cache.get("key")));
+		assertEquals(Arrays.<Object>asList("key"), recorder.updated);
+	}
+
+	public void testRemovalReturnsChunkToItsSizeClass() {
+		// 一页正好切分成4个64字节的块
+		OffHeapCache cache = createCache(1);
+		for (int i = 0; i < 4; i++) {
+			cache.put("key" + i, bytes(30, i));
+		}
+		assertTrue(cache.remove("key1"));
+		assertFalse(cache.remove("key1"));
+		cache.put("key4", bytes(30, 4));
+		assertTrue(recorder.evicted.isEmpty());
+		for (int i : new int[] {0, 2, 3, 4}) {
+			assertTrue(Arrays.equals(bytes(30, i), (byte[]) cache.get("key" + i)));
+		}
+		assertEquals(Arrays.<Object>asList("key1"), recorder.removed);
+	}
+
+	public void testLeastRecentlyUsedEntryIsEvictedWhenPagesAreExhausted() {
+		OffHeapCache cache = createCache(1);
+		for (int i = 0; i < 4; i++) {
+			cache.put("key" + i, bytes(30, i));
+		}
+		cache.get("key0");
+		cache.put("key4", bytes(30, 4));
+		assertEquals(Arrays.<Object>asList("key1"), recorder.evicted);
+		assertFalse(cache.containsKey("key1"));
+		assertTrue(cache.containsKey("key0"));
+		assertTrue(cache.containsKey("key4"));
+	}
+
+	public void testPageIsTakenFromOtherSizeClassWhenPagesAreExhausted() {
+		OffHeapCache cache = createCache(2);
+		for (int i = 0; i < 8; i++) {
+			cache.put("key" + i, bytes(30, i));
+		}
+		cache.put("large", bytes(200, 9));
+		assertTrue(Arrays.equals(bytes(200, 9), (byte[]) cache.get("large")));
+		// 一整页的小条目被淘汰，另一页不受影响
+		assertEquals(4, recorder.evicted.size());
+		for (int i = 0; i < 8; i++) {
+			assertEquals(!recorder.evicted.contains("key" + i), cache.containsKey("key" + i));
+		}
+	}
+
+	public void testValueLargerThanAPageIsSplitOverChunks() {
+		OffHeapCache cache = createCache(4);
+		cache.put("key", bytes(600, 7));
+		assertTrue(Arrays.equals(bytes(600, 7), (byte[]) cache.get("key")));
+	}
+
+	public void testValueLargerThanTheSegmentIsNotCached() {
+		OffHeapCache cache = createCache(4);
+		cache.put("key", bytes(30, 1));
+		cache.put("key", bytes(2000, 2));
+		assertFalse(cache.containsKey("key"));
+		assertNull(cache.get("key"));
+		assertEquals(Arrays.<Object>asList("key"), recorder.removed);
+		assertFalse(cache.putIfAbsent("other", bytes(2000, 2)));
+		assertFalse(cache.containsKey("other"));
+	}
+
+	private OffHeapCache createCache(int pages) {
+		OffHeapCache cache = new OffHeapCache(new JavaSerializer(), pages * PAGE_SIZE, PAGE_SIZE, 1);
+		cache.registerCacheEntryListener(recorder);
+		return cache;
+	}
+
+	private static byte[] bytes(int length, int seed) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (seed + i);
+		}
+		return bytes;
+	}
+
+	private static class ListenerRecorder extends Cache.EntryListenerAdapter {
+
+		private final List<Object> created = new ArrayList<Object>();
+		private final List<Object> updated = new ArrayList<Object>();
+		private final List<Object> removed = new ArrayList<Object>();
+		private final List<Object> evicted = new ArrayList<Object>();
+
+		@Override
+		public void onEntryCreated(Object key, Object value) {
+			created.add(key);
+		}
+
+		@Override
+		public void onEntryUpdate(Object key, Object value) {
+			updated.add(key);
+		}
+
+		@Override
+		public void onEntryRemoved(Object key) {
+			removed.add(key);
+		}
+
+		@Override
+		public void onEntryEvicted(Object key) {
+			evicted.add(key);
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.sundy.axon.cache;
+
+import junit.framework.TestCase;
+
+public class StatisticsCacheTest extends TestCase {
+
+	public void testEvictionsAreCountedSeparatelyFromExpirations() {
+		StatisticsCache cache = new StatisticsCache("test", new TinyLfuCache(2));
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, "value" + i);
+		}
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(10, statistics.getPutCount());
+		assertEquals(8, statistics.getEvictionCount());
+		assertEquals(0, statistics.getExpirationCount());
+	}
+
+	public void testExpirationsAreCountedSeparatelyFromEvictions() {
+		ListenerCapturingCache delegate = new ListenerCapturingCache();
+		StatisticsCache cache = new StatisticsCache("test", delegate);
+		delegate.listener.onEntryExpired("a");
+		delegate.listener.onEntryExpired("b");
+		delegate.listener.onEntryEvicted("c");
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(2, statistics.getExpirationCount());
+		assertEquals(1, statistics.getEvictionCount());
+	}
+
+	public void testHitsAndMisses() {
+		StatisticsCache cache = new StatisticsCache("test", new TinyLfuCache(10));
+		cache.put("key", "value");
+		cache.get("key");
+		cache.get("other");
+		cache.remove("key");
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(1, statistics.getMissCount());
+		assertEquals(1, statistics.getRemovalCount());
+		assertEquals(0.5d, statistics.getHitRate(), 0.0001d);
+	}
+
+	public void testAdapterForwardsEvictionsToExpiredByDefault() {
+		final int[] expired = new int[1];
+		Cache.EntryListener listener = new Cache.EntryListenerAdapter() {
+			@Override
+			public void onEntryExpired(Object key) {
+				expired[0]++;
+			}
+		};
+		listener.onEntryEvicted("key");
+		assertEquals(1, expired[0]);
+	}
+
+	/**
+	 * 只记录注册的监听器，由测试直接触发回调
+	 */
+	private static class ListenerCapturingCache extends TinyLfuCache {
+
+		private EntryListener listener;
+
+		private ListenerCapturingCache() {
+			super(10);
+		}
+
+		@Override
+		public void registerCacheEntryListener(EntryListener cacheEntryListener) {
+			this.listener = cacheEntryListener;
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.sundy.axon.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TinyLfuCacheTest extends TestCase {
+
+	public void testSizeIsBoundedAndEvictionsAreReported() {
+		TinyLfuCache cache = new TinyLfuCache(100);
+		EvictionRecorder recorder = new EvictionRecorder();
+		cache.registerCacheEntryListener(recorder);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, "value" + i);
+		}
+		assertTrue("size was " + cache.size(), cache.size() <= 100);
+		assertEquals(1000 - cache.size(), recorder.evicted.size());
+		for (Object key : recorder.evicted) {
+			assertFalse(cache.containsKey(key));
+		}
+	}
+
+	public void testFrequentlyReadEntriesSurviveAScan() {
+		TinyLfuCache cache = new TinyLfuCache(100);
+		for (int i = 0; i < 50; i++) {
+			cache.put("hot" + i, i);
+		}
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 50; i++) {
+				assertNotNull(cache.get("hot" + i));
+			}
+		}
+		for (int i = 0; i < 1000; i++) {
+			cache.put("cold" + i, i);
+		}
+		for (int i = 0; i < 50; i++) {
+			assertTrue("hot" + i + " was not admitted over one-time entries", cache.containsKey("hot" + i));
+		}
+	}
+
+	public void testWeightIsBounded() {
+		TinyLfuCache cache = new TinyLfuCache(1000, new Weigher() {
+			@Override
+			public int weigh(Object key, Object value) {
+				return ((String) value).length();
+			}
+		}, 100);
+		for (int i = 0; i < 500; i++) {
+			cache.put(i, i % 2 == 0 ? "0123456789" : "0123456789012345678901234567890123456789");
+		}
+		assertTrue("weight was " + cache.weightedSize(), cache.weightedSize() <= 1000);
+	}
+
+	public void testRemoveAndUpdateAreNotEvictions() {
+		TinyLfuCache cache = new TinyLfuCache(10);
+		EvictionRecorder recorder = new EvictionRecorder();
+		cache.registerCacheEntryListener(recorder);
+		cache.put("key", "a");
+		cache.put("key", "b");
+		assertEquals("b", cache.get("key"));
+		assertFalse(cache.putIfAbsent("key", "c"));
+		assertTrue(cache.remove("key"));
+		assertFalse(cache.containsKey("key"));
+		assertTrue(recorder.evicted.isEmpty());
+		assertEquals(0, cache.weightedSize());
+	}
+
+	public void testEvictAll() {
+		TinyLfuCache cache = new TinyLfuCache(100);
+		EvictionRecorder recorder = new EvictionRecorder();
+		cache.registerCacheEntryListener(recorder);
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, i);
+		}
+		cache.evictAll();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weightedSize());
+		assertEquals(10, recorder.evicted.size());
+	}
+
+	private static class EvictionRecorder extends Cache.EntryListenerAdapter {
+
+		private final List<Object> evicted = new ArrayList<Object>();
+
+		@Override
+		public void onEntryEvicted(Object key) {
+			evicted.add(key);
+		}
+	}
+
+}
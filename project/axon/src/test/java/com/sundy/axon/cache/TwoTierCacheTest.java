@@ -0,0 +1,103 @@
+package com.sundy.axon.cache;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.serializer.JavaSerializer;
+import com.sundy.axon.serializer.Serializer;
+
+public class TwoTierCacheTest extends TestCase {
+
+	private static final int SEGMENT_SIZE = 4096;
+
+	private final Serializer serializer = new JavaSerializer();
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("two-tier", "test");
+		assertTrue(directory.delete());
+		assertTrue(directory.mkdirs());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	public void testEvictedEntriesArePromotedFromSpillTier() {
+		TwoTierCache cache = new TwoTierCache(serializer, 10, directory, SEGMENT_SIZE, 4);
+		for (int i = 0; i < 100; i++) {
+			cache.put("key-" + i, "value-" + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals("value-" + i, cache.get("key-" + i));
+		}
+	}
+
+	public void testClosedCacheIsWarmAfterReopening() {
+		TwoTierCache cache = new TwoTierCache(serializer, 10, directory, SEGMENT_SIZE, 4);
+		cache.put("key", "value");
+		cache.close();
+		assertEquals("value", new TwoTierCache(serializer, 10, directory, SEGMENT_SIZE, 4).get("key"));
+	}
+
+	public void testValueReplacedDuringEvictionIsNotSpilled() throws Exception {
+		final CountDownLatch weighing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		// 写入新值时在热数据层的put中暂停，此时键的锁已经持有，旧值还在热数据层中
+		Weigher weigher = new Weigher() {
+			@Override
+			public int weigh(Object key, Object value) {
+				if ("new".equals(value)) {
+					weighing.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return 1;
+			}
+		};
+		final TwoTierCache cache = new TwoTierCache(serializer, 10, weigher, 10, directory, SEGMENT_SIZE, 4);
+		cache.put("key", "old");
+
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				cache.put("key", "new");
+			}
+		});
+		writer.start();
+		weighing.await();
+		// 淘汰旧值，转存时等待键的锁
+		Thread evictor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				cache.close();
+			}
+		});
+		evictor.start();
+		while (evictor.getState() != Thread.State.BLOCKED && evictor.isAlive()) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+		writer.join();
+		evictor.join();
+
+		assertEquals("new", cache.get("key"));
+		// 没有调用close()就重新打开时，不能读到旧值
+		Object reopened = new TwoTierCache(serializer, 10, directory, SEGMENT_SIZE, 4).get("key");
+		assertFalse("A stale value was spilled", "old".equals(reopened));
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.sundy.axon.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class WeakReferenceCacheTest extends TestCase {
+
+	public void testAsynchronousModeNotifiesFromPurgerThread() throws Exception {
+		WeakReferenceCache cache = new WeakReferenceCache(true);
+		RecordingListener listener = new RecordingListener();
+		cache.registerCacheEntryListener(listener);
+		Object value = new Object();
+		cache.put("key", value);
+		assertTrue(listener.created.await(5, TimeUnit.SECONDS));
+		assertFalse(Thread.currentThread().getName().equals(listener.threads.get(0)));
+		cache.shutdown();
+	}
+
+	public void testShutdownSwitchesToSynchronousMode() {
+		WeakReferenceCache cache = new WeakReferenceCache(true);
+		RecordingListener listener = new RecordingListener();
+		cache.registerCacheEntryListener(listener);
+		cache.shutdown();
+		Object value = new Object();
+		cache.put("key", value);
+		assertSame(value, cache.get("key"));
+		assertEquals(2, listener.threads.size());
+		assertEquals(Thread.currentThread().getName(), listener.threads.get(0));
+		assertEquals(Thread.currentThread().getName(), listener.threads.get(1));
+	}
+
+	public void testPendingEventsDoNotKeepValuesReachable() throws Exception {
+		WeakReferenceCache cache = new WeakReferenceCache(true);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		cache.registerCacheEntryListener(new Cache.EntryListenerAdapter() {
+			@Override
+			public void onEntryCreated(Object key, Object value) {
+				if ("block".equals(key)) {
+					blocked.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+		Object blocking = new Object();
+		cache.put("block", blocking);
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		// 守护线程被阻塞，以下通知都在积压队列中
+		Object value = new Object();
+		WeakReference<Object> probe = new WeakReference<Object>(value);
+		cache.put("key", value);
+		cache.get("key");
+		value = null;
+		for (int i = 0; i < 20 && probe.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("Pending events must not keep cached values reachable", probe.get());
+		release.countDown();
+		cache.shutdown();
+	}
+
+	private static class RecordingListener extends Cache.EntryListenerAdapter {
+
+		private final List<String> threads = new CopyOnWriteArrayList<String>();
+		private final CountDownLatch created = new CountDownLatch(1);
+
+		@Override
+		public void onEntryCreated(Object key, Object value) {
+			threads.add(Thread.currentThread().getName());
+			created.countDown();
+		}
+
+		@Override
+		public void onEntryRead(Object key, Object value) {
+			threads.add(Thread.currentThread().getName());
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.sundy.axon.commandhandling;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.domain.CommandMessage;
+import com.sundy.axon.repository.ConflictingModificationException;
+
+public class ConflictRetryingCallbackTest extends TestCase {
+
+	private final CommandMessage<String> command = new GenericCommandMessage<String>("command");
+
+	public void testConflictIsRetriedUpToTheLimit() {
+		FailingCommandBus commandBus = new FailingCommandBus(Integer.MAX_VALUE,
+				new ConflictingModificationException("conflict"));
+		RecordingCallback delegate = new RecordingCallback();
+		commandBus.dispatch(command, new ConflictRetryingCallback<Object>(commandBus, command, delegate, 3));
+		assertEquals(4, commandBus.dispatches);
+		assertEquals(1, delegate.failures);
+		assertEquals(0, delegate.successes);
+	}
+
+	public void testSuccessAfterConflictIsReported() {
+		FailingCommandBus commandBus = new FailingCommandBus(2, new ConflictingModificationException("conflict"));
+		RecordingCallback delegate = new RecordingCallback();
+		commandBus.dispatch(command, new ConflictRetryingCallback<Object>(commandBus, command, delegate, 3));
+		assertEquals(3, commandBus.dispatches);
+		assertEquals(0, delegate.failures);
+		assertEquals(1, delegate.successes);
+	}
+
+	public void testWrappedConflictIsRetried() {
+		FailingCommandBus commandBus = new FailingCommandBus(1,
+				new RuntimeException(new ConflictingModificationException("conflict")));
+		RecordingCallback delegate = new RecordingCallback();
+		commandBus.dispatch(command, new ConflictRetryingCallback<Object>(commandBus, command, delegate, 3));
+		assertEquals(2, commandBus.dispatches);
+		assertEquals(1, delegate.successes);
+	}
+
+	public void testOtherFailuresAreNotRetried() {
+		FailingCommandBus commandBus = new FailingCommandBus(Integer.MAX_VALUE, new IllegalStateException());
+		RecordingCallback delegate = new RecordingCallback();
+		commandBus.dispatch(command, new ConflictRetryingCallback<Object>(commandBus, command, delegate, 3));
+		assertEquals(1, commandBus.dispatches);
+		assertEquals(1, delegate.failures);
+	}
+
+	public void testZeroRetriesDispatchesOnce() {
+		FailingCommandBus commandBus = new FailingCommandBus(Integer.MAX_VALUE,
+				new ConflictingModificationException("conflict"));
+		RecordingCallback delegate = new RecordingCallback();
+		commandBus.dispatch(command, new ConflictRetryingCallback<Object>(commandBus, command, delegate, 0));
+		assertEquals(1, commandBus.dispatches);
+		assertEquals(1, delegate.failures);
+	}
+
+	/**
+	 * 前几次分发以给定的异常失败，之后成功
+	 */
+	private static class FailingCommandBus implements CommandBus {
+
+		private final int failures;
+		private final Throwable failure;
+		private int dispatches;
+
+		private FailingCommandBus(int failures, Throwable failure) {
+			this.failures = failures;
+			this.failure = failure;
+		}
+
+		@Override
+		public void dispatch(CommandMessage<?> command) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <R> void dispatch(CommandMessage<?> command, CommandCallback<R> callback) {
+			if (dispatches++ < failures) {
+				callback.onFailure(failure);
+			} else {
+				callback.onSuccess(null);
+			}
+		}
+
+		@Override
+		public <C> void subscribe(String commandName, CommandHandler<? super C> handler) {
+		}
+
+		@Override
+		public <C> void unsubscribe(String commandName, CommandHandler<? super C> handler) {
+		}
+	}
+
+	private static class RecordingCallback implements CommandCallback<Object> {
+
+		private int successes;
+		private int failures;
+
+		@Override
+		public void onSuccess(Object result) {
+			successes++;
+		}
+
+		@Override
+		public void onFailure(Throwable cause) {
+			failures++;
+		}
+	}
+
+}
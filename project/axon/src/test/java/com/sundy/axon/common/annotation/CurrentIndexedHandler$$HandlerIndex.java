@@ -0,0 +1,20 @@
+package com.sundy.axon.common.annotation;
+
+/**
+ * 与注解处理器为{@link CurrentIndexedHandler}生成的索引相同
+ */
+public final class CurrentIndexedHandler$$HandlerIndex implements HandlerIndex {
+
+	public String[] indexedAnnotations() {
+		return new String[] {"com.sundy.axon.commandhandling.annotation.CommandHandler"};
+	}
+
+	public String[][] handlerMethods() {
+		return new String[][] {{"handle", "java.lang.String"}};
+	}
+
+	public String fingerprint() {
+		return "2:93b8e690";
+	}
+
+}
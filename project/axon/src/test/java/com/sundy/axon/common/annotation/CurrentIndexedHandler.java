@@ -0,0 +1,17 @@
+package com.sundy.axon.common.annotation;
+
+import com.sundy.axon.commandhandling.annotation.CommandHandler;
+
+/**
+ * 索引与类一致的处理器
+ */
+public class CurrentIndexedHandler {
+
+	@CommandHandler
+	public void handle(String command) {
+	}
+
+	public void helper(String value) {
+	}
+
+}
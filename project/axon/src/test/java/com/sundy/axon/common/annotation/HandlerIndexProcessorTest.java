@@ -0,0 +1,113 @@
+package com.sundy.axon.common.annotation;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.commandhandling.annotation.CommandHandler;
+import com.sundy.axon.processor.HandlerIndexProcessor;
+
+/**
+ * 使用注解处理器编译一个示例类，校验生成的索引和运行时对同一个类的计算结果一致
+ */
+public class HandlerIndexProcessorTest extends TestCase {
+
+	private static final String SAMPLE_SOURCE = "package com.example.handlers;\n"
+			+ "import java.util.List;\n"
+			+ "import com.sundy.axon.commandhandling.annotation.CommandHandler;\n"
+			+ "public class SampleHandler {\n"
+			+ "    @CommandHandler public void handle(String command) {}\n"
+			+ "    @CommandHandler public void handleAll(List<String> commands, int[][] matrix, Nested nested) {}\n"
+			+ "    public void helper(long value) {}\n"
+			+ "    private Runnable task() { return () -> helper(1L); }\n"
+			+ "    public static class Nested {}\n"
+			+ "}\n";
+
+	private static final URI SAMPLE_URI = URI.create("string:///com/example/handlers/SampleHandler.java");
+
+	private File outputDirectory;
+
+	@Override
+	protected void setUp() throws Exception {
+		outputDirectory = File.createTempFile("handler-index", "test");
+		assertTrue(outputDirectory.delete());
+		assertTrue(outputDirectory.mkdirs());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(outputDirectory);
+	}
+
+	public void testGeneratedIndexMatchesRuntimeFingerprint() throws Exception {
+		ClassLoader classLoader = compile(SAMPLE_SOURCE);
+		Class<?> sampleType = classLoader.loadClass("com.example.handlers.SampleHandler");
+		HandlerIndex index = (HandlerIndex) classLoader.loadClass(
+				"com.example.handlers.SampleHandler$$HandlerIndex").getDeclaredConstructor().newInstance();
+
+		assertEquals(HandlerIndexes.fingerprintOf(sampleType), index.fingerprint());
+		assertEquals(2, index.handlerMethods().length);
+		assertTrue(Arrays.asList(index.indexedAnnotations()).contains(CommandHandler.class.getName()));
+
+		Set<String> names = new HashSet<String>();
+		for (Method method : HandlerIndexes.methodsOf(sampleType,
+				new AbstractAnnotatedHandlerDefinition<CommandHandler>(CommandHandler.class) {
+					@Override
+					protected Class<?> getDefinedPayload(CommandHandler annotation) {
+						return null;
+					}
+				})) {
+			names.add(method.getName());
+		}
+		assertEquals(new HashSet<String>(Arrays.asList("handle", "handleAll")), names);
+	}
+
+	private ClassLoader compile(final String source) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertNotNull("Tests must run on a JDK", compiler);
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+		try {
+			JavaFileObject sourceFile = new SimpleJavaFileObject(SAMPLE_URI, JavaFileObject.Kind.SOURCE) {
+				@Override
+				public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+					return source;
+				}
+			};
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+					Arrays.asList("-classpath", System.getProperty("java.class.path"),
+							"-d", outputDirectory.getAbsolutePath()),
+					null, Arrays.asList(sourceFile));
+			task.setProcessors(Arrays.asList(new HandlerIndexProcessor()));
+			assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+		} finally {
+			fileManager.close();
+		}
+		return new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
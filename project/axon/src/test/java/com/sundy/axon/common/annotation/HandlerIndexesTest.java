@@ -0,0 +1,57 @@
+package com.sundy.axon.common.annotation;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.commandhandling.annotation.CommandHandler;
+
+public class HandlerIndexesTest extends TestCase {
+
+	private final HandlerDefinition<? super Method> commandHandlers =
+			new AbstractAnnotatedHandlerDefinition<CommandHandler>(CommandHandler.class) {
+				@Override
+				protected Class<?> getDefinedPayload(CommandHandler annotation) {
+					return null;
+				}
+			};
+
+	public void testIndexIsUsedWhenFingerprintMatches() {
+		Set<String> names = methodNames(HandlerIndexes.methodsOf(CurrentIndexedHandler.class, commandHandlers));
+		assertTrue(names.contains("handle"));
+		assertFalse("Methods that are not in the index should be skipped", names.contains("helper"));
+	}
+
+	public void testStaleIndexFallsBackToDeclaredMethods() {
+		Set<String> names = methodNames(HandlerIndexes.methodsOf(StaleIndexedHandler.class, commandHandlers));
+		assertTrue(names.contains("handle"));
+		assertTrue("A handler added after the index was generated must not be dropped", names.contains("added"));
+	}
+
+	public void testInspectorFindsHandlerAddedAfterIndexWasGenerated() {
+		MethodMessageHandlerInspector inspector = MethodMessageHandlerInspector.getInstance(StaleIndexedHandler.class,
+				CommandHandler.class, ClasspathParameterResolverFactory.forClass(StaleIndexedHandler.class), true);
+		Set<String> names = new HashSet<String>();
+		for (MethodMessageHandler handler : inspector.getHandlers()) {
+			names.add(handler.getMethodName());
+		}
+		assertEquals(2, names.size());
+		assertTrue(names.contains("added"));
+	}
+
+	public void testFingerprintDependsOnDeclaredMethods() {
+		assertEquals("2:93b8e690", HandlerIndexes.fingerprintOf(CurrentIndexedHandler.class));
+		assertFalse(HandlerIndexes.fingerprintOf(StaleIndexedHandler.class).equals("1:6a761f64"));
+	}
+
+	private static Set<String> methodNames(Iterable<Method> methods) {
+		Set<String> names = new HashSet<String>();
+		for (Method method : methods) {
+			names.add(method.getName());
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.sundy.axon.common.annotation;
+
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.commandhandling.annotation.CommandHandler;
+import com.sundy.axon.common.ParameterResolverFactory;
+import com.sundy.axon.domain.GenericEventMessage;
+
+public class HandlerInspectorWarmUpTest extends TestCase {
+
+	private ForkJoinPool pool;
+
+	@Override
+	protected void setUp() throws Exception {
+		MethodMessageHandlerInspector.clearCache();
+		pool = new ForkJoinPool(2);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		pool.shutdown();
+		MethodMessageHandlerInspector.clearCache();
+	}
+
+	public void testWarmedUpInspectorIsReused() {
+		ParameterResolverFactory parameterResolverFactory = ClasspathParameterResolverFactory.forClass(Handlers.class);
+		HandlerInspectorWarmUp warmUp = new HandlerInspectorWarmUp(pool);
+		warmUp.setLookupIterations(2);
+		warmUp.addHandlerType(Handlers.class, CommandHandler.class, false);
+		warmUp.warmUp();
+
+		MethodMessageHandlerInspector warmedUp = MethodMessageHandlerInspector.getInstance(Handlers.class,
+				CommandHandler.class, parameterResolverFactory, false);
+		assertEquals(2, warmedUp.getHandlers().size());
+		assertSame(warmedUp, MethodMessageHandlerInspector.getInstance(Handlers.class, CommandHandler.class,
+				parameterResolverFactory, false));
+		assertEquals("onString",
+				warmedUp.findHandlerMethod(GenericEventMessage.asEventMessage("payload")).getMethodName());
+	}
+
+	public void testInvalidHandlerFailsWarmUp() {
+		HandlerInspectorWarmUp warmUp = new HandlerInspectorWarmUp(pool);
+		warmUp.addHandlerType(Handlers.class, CommandHandler.class, false);
+		warmUp.addHandlerType(DuplicateHandlers.class, CommandHandler.class, false);
+		try {
+			warmUp.warmUp();
+			fail("Expected UnsupportedHandlerException");
+		} catch (UnsupportedHandlerException e) {
+			// 预期的异常
+		}
+	}
+
+	public void testDuplicatesAreAcceptedWhenAllowed() {
+		HandlerInspectorWarmUp warmUp = new HandlerInspectorWarmUp(pool);
+		warmUp.addHandlerType(DuplicateHandlers.class, CommandHandler.class, true);
+		warmUp.warmUp();
+	}
+
+	public static class Handlers {
+
+		@CommandHandler
+		public void onString(String payload) {
+		}
+
+		@CommandHandler
+		public void onInteger(Integer payload) {
+		}
+	}
+
+	public static class DuplicateHandlers {
+
+		@CommandHandler
+		public void first(String payload) {
+		}
+
+		@CommandHandler
+		public void second(String payload) {
+		}
+	}
+
+}
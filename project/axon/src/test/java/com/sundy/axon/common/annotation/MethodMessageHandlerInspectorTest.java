@@ -0,0 +1,106 @@
+package com.sundy.axon.common.annotation;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.commandhandling.annotation.CommandHandler;
+import com.sundy.axon.common.ParameterResolver;
+import com.sundy.axon.common.ParameterResolverFactory;
+import com.sundy.axon.domain.GenericEventMessage;
+import com.sundy.axon.domain.Message;
+
+public class MethodMessageHandlerInspectorTest extends TestCase {
+
+	private MethodMessageHandlerInspector inspector;
+
+	@Override
+	protected void setUp() {
+		inspector = new MethodMessageHandlerInspector(new ExtraResolverFactory(), Handlers.class, true,
+				new AbstractAnnotatedHandlerDefinition<CommandHandler>(CommandHandler.class) {
+					@Override
+					protected Class<?> getDefinedPayload(CommandHandler annotation) {
+						return null;
+					}
+				});
+	}
+
+	public void testCachedCandidatesFindTheSameHandlerAsAFullScan() {
+		Message[] messages = {message(1, null), message(1, "extra"), message(1L, null), message(1L, "extra"),
+				message("a", null), message("a", "extra"), message(new Object(), null), message(1.5d, "extra")};
+		List<MethodMessageHandler> handlers = inspector.getHandlers();
+		for (int round = 0; round < 3; round++) {
+			for (Message message : messages) {
+				assertSame(message.getPayload() + " with " + message.getMetaData(), scan(handlers, message),
+						inspector.findHandlerMethod(message));
+			}
+		}
+	}
+
+	public void testHandlerIsChosenByPayloadTypeAndParameters() {
+		assertEquals("onInteger", inspector.findHandlerMethod(message(1, null)).getMethodName());
+		assertEquals("onNumberWithExtra", inspector.findHandlerMethod(message(1L, "extra")).getMethodName());
+		assertEquals("onObject", inspector.findHandlerMethod(message(1L, null)).getMethodName());
+		assertEquals("onStringWithExtra", inspector.findHandlerMethod(message("a", "extra")).getMethodName());
+	}
+
+	private static MethodMessageHandler scan(List<MethodMessageHandler> handlers, Message message) {
+		for (MethodMessageHandler handler : handlers) {
+			if (handler.matches(message)) {
+				return handler;
+			}
+		}
+		return null;
+	}
+
+	private static Message<Object> message(Object payload, String extra) {
+		Map<String, Object> metaData = extra == null ? Collections.<String, Object>emptyMap()
+				: Collections.<String, Object>singletonMap("extra", extra);
+		return new GenericEventMessage<Object>(payload, metaData);
+	}
+
+	public static class Handlers {
+
+		@CommandHandler
+		public void onInteger(Integer payload) {
+		}
+
+		@CommandHandler
+		public void onNumberWithExtra(Number payload, String extra) {
+		}
+
+		@CommandHandler
+		public void onStringWithExtra(String payload, String extra) {
+		}
+
+		@CommandHandler
+		public void onObject(Object payload) {
+		}
+	}
+
+	/**
+	 * 从元数据的extra项解析参数，只有元数据中有该项时才匹配
+	 */
+	private static class ExtraResolverFactory implements ParameterResolverFactory {
+
+		@Override
+		public ParameterResolver createInstance(Annotation[] memberAnnotations, Class<?> parameterType,
+				Annotation[] parameterAnnotations) {
+			return new ParameterResolver<Object>() {
+				@Override
+				public Object resolveParameterValue(Message message) {
+					return message.getMetaData().get("extra");
+				}
+
+				@Override
+				public boolean matches(Message message) {
+					return message.getMetaData().containsKey("extra");
+				}
+			};
+		}
+	}
+
+}
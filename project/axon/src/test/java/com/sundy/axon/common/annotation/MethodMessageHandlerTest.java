@@ -0,0 +1,153 @@
+package com.sundy.axon.common.annotation;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.common.ParameterResolver;
+import com.sundy.axon.common.ParameterResolverFactory;
+import com.sundy.axon.domain.GenericEventMessage;
+import com.sundy.axon.domain.Message;
+
+public class MethodMessageHandlerTest extends TestCase {
+
+	private final Handlers target = new Handlers();
+
+	public void testInvokesHandlersOfEveryArity() throws Exception {
+		assertEquals("a", handler("one", String.class).invoke(target, message("a", null)));
+		assertEquals("a1", handler("two", String.class, Long.class).invoke(target, message("a", 1L)));
+		assertEquals("a11", handler("three", String.class, Long.class, Long.class).invoke(target, message("a", 1L)));
+		assertEquals("a111", handler("four", String.class, Long.class, Long.class, Long.class)
+				.invoke(target, message("a", 1L)));
+	}
+
+	public void testPrimitiveParameterAcceptsWidenedValue() throws Exception {
+		assertEquals(3L, handler("primitive", String.class, long.class).invoke(target, message("a", 3)));
+	}
+
+	public void testPrimitiveParameterAcceptsOnlyWideningConversions() throws Exception {
+		MethodMessageHandler handler = handler("primitive", String.class, long.class);
+		assertEquals(99L, handler.invoke(target, message("a", 'c')));
+		assertEquals(7L, handler.invoke(target, message("a", (byte) 7)));
+		for (Object narrowing : new Object[] {1.5f, 2.5d, true, "3"}) {
+			try {
+				handler.invoke(target, message("a", narrowing));
+				fail("Expected IllegalArgumentException for " + narrowing.getClass().getName());
+			} catch (IllegalArgumentException e) {
+				// 预期的异常
+			}
+		}
+	}
+
+	public void testNullForPrimitiveParameterIsIllegalArgument() throws Exception {
+		MethodMessageHandler handler = handler("primitive", String.class, long.class);
+		try {
+			handler.invoke(target, message("a", null));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// 预期的异常
+		}
+	}
+
+	public void testMismatchingArgumentIsIllegalArgument() throws Exception {
+		MethodMessageHandler handler = handler("two", String.class, Long.class);
+		for (MethodMessageHandler h : new MethodMessageHandler[] {handler,
+				handler("four", String.class, Long.class, Long.class, Long.class)}) {
+			try {
+				h.invoke(target, message("a", "not a long"));
+				fail("Expected IllegalArgumentException");
+			} catch (IllegalArgumentException e) {
+				// 预期的异常
+			}
+		}
+	}
+
+	public void testResolverExceptionIsNotWrapped() throws Exception {
+		MethodMessageHandler handler = handler("two", String.class, Long.class);
+		try {
+			handler.invoke(target, message("a", FailingResolverFactory.FAIL));
+			fail("Expected the resolver's exception");
+		} catch (IllegalStateException e) {
+			assertEquals("resolver failed", e.getMessage());
+		}
+	}
+
+	public void testExceptionFromHandlerIsWrapped() throws Exception {
+		MethodMessageHandler handler = handler("failing", String.class);
+		try {
+			handler.invoke(target, message("a", null));
+			fail("Expected InvocationTargetException");
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof UnsupportedOperationException);
+		}
+	}
+
+	private static MethodMessageHandler handler(String name, Class<?>... parameterTypes) throws Exception {
+		return MethodMessageHandler.createFor(Handlers.class.getMethod(name, parameterTypes), null,
+				new FailingResolverFactory());
+	}
+
+	private static Message<String> message(String payload, Object extra) {
+		Map<String, Object> metaData = Collections.<String, Object>singletonMap("extra", extra);
+		return new GenericEventMessage<String>(payload, metaData);
+	}
+
+	public static class Handlers {
+
+		public Object one(String payload) {
+			return payload;
+		}
+
+		public Object two(String payload, Long a) {
+			return payload + a;
+		}
+
+		public Object three(String payload, Long a, Long b) {
+			return payload + a + b;
+		}
+
+		public Object four(String payload, Long a, Long b, Long c) {
+			return payload + a + b + c;
+		}
+
+		public Object primitive(String payload, long a) {
+			return a;
+		}
+
+		public Object failing(String payload) {
+			throw new UnsupportedOperationException("handler failed");
+		}
+	}
+
+	/**
+	 * 从元数据的extra项解析参数，值为{@link #FAIL}时抛出异常
+	 */
+	private static class FailingResolverFactory implements ParameterResolverFactory {
+
+		static final String FAIL = "fail";
+
+		@Override
+		public ParameterResolver createInstance(Annotation[] memberAnnotations, Class<?> parameterType,
+				Annotation[] parameterAnnotations) {
+			return new ParameterResolver<Object>() {
+				@Override
+				public Object resolveParameterValue(Message message) {
+					Object value = message.getMetaData().get("extra");
+					if (FAIL.equals(value)) {
+						throw new IllegalStateException("resolver failed");
+					}
+					return value;
+				}
+
+				@Override
+				public boolean matches(Message message) {
+					return true;
+				}
+			};
+		}
+	}
+
+}
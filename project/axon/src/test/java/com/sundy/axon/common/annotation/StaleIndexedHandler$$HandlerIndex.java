@@ -0,0 +1,20 @@
+package com.sundy.axon.common.annotation;
+
+/**
+ * 注解处理器在{@link StaleIndexedHandler}只有handle方法时生成的索引
+ */
+public final class StaleIndexedHandler$$HandlerIndex implements HandlerIndex {
+
+	public String[] indexedAnnotations() {
+		return new String[] {"com.sundy.axon.commandhandling.annotation.CommandHandler"};
+	}
+
+	public String[][] handlerMethods() {
+		return new String[][] {{"handle", "java.lang.String"}};
+	}
+
+	public String fingerprint() {
+		return "1:6a761f64";
+	}
+
+}
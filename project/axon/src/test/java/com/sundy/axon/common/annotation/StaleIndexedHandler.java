@@ -0,0 +1,18 @@
+package com.sundy.axon.common.annotation;
+
+import com.sundy.axon.commandhandling.annotation.CommandHandler;
+
+/**
+ * 生成索引之后又增加了处理方法的处理器
+ */
+public class StaleIndexedHandler {
+
+	@CommandHandler
+	public void handle(String command) {
+	}
+
+	@CommandHandler
+	public void added(Integer command) {
+	}
+
+}
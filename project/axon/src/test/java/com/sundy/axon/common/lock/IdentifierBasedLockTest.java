@@ -0,0 +1,117 @@
+package com.sundy.axon.common.lock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class IdentifierBasedLockTest extends TestCase {
+
+	public void testLockIsReentrantAndDisposedWhenReleased() {
+		IdentifierBasedLock lock = new IdentifierBasedLock();
+		lock.obtainLock("a");
+		lock.obtainLock("a");
+		lock.releaseLock("a");
+		assertTrue(lock.hasLock("a"));
+		lock.releaseLock("a");
+		assertFalse(lock.hasLock("a"));
+		try {
+			lock.releaseLock("a");
+			fail("Expected IllegalLockUsageException");
+		} catch (IllegalLockUsageException e) {
+			// 预期的异常
+		}
+	}
+
+	public void testImminentDeadlockIsDetected() throws InterruptedException {
+		IdentifierBasedLock lock = new IdentifierBasedLock();
+		CountDownLatch bothLocked = new CountDownLatch(2);
+		AtomicInteger deadlocks = new AtomicInteger();
+		AtomicInteger completed = new AtomicInteger();
+		Thread first = new Thread(new CrossLocker(lock, "a", "b", bothLocked, deadlocks, completed));
+		Thread second = new Thread(new CrossLocker(lock, "b", "a", bothLocked, deadlocks, completed));
+		first.start();
+		second.start();
+		first.join(10000);
+		second.join(10000);
+		assertFalse("Threads are still deadlocked", first.isAlive() || second.isAlive());
+		assertTrue(deadlocks.get() >= 1);
+		assertEquals(2, deadlocks.get() + completed.get());
+	}
+
+	public void testWaitingForUnrelatedThreadIsNotADeadlock() throws InterruptedException {
+		final IdentifierBasedLock lock = new IdentifierBasedLock();
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread owner = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				lock.obtainLock("a");
+				locked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					lock.releaseLock("a");
+				}
+			}
+		});
+		owner.start();
+		locked.await();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(250);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				release.countDown();
+			}
+		}).start();
+		lock.obtainLock("a");
+		assertTrue(lock.hasLock("a"));
+		lock.releaseLock("a");
+		owner.join();
+	}
+
+	private static class CrossLocker implements Runnable {
+
+		private final IdentifierBasedLock lock;
+		private final String held;
+		private final String wanted;
+		private final CountDownLatch bothLocked;
+		private final AtomicInteger deadlocks;
+		private final AtomicInteger completed;
+
+		private CrossLocker(IdentifierBasedLock lock, String held, String wanted, CountDownLatch bothLocked,
+				AtomicInteger deadlocks, AtomicInteger completed) {
+			this.lock = lock;
+			this.held = held;
+			this.wanted = wanted;
+			this.bothLocked = bothLocked;
+			this.deadlocks = deadlocks;
+			this.completed = completed;
+		}
+
+		@Override
+		public void run() {
+			lock.obtainLock(held);
+			try {
+				bothLocked.countDown();
+				bothLocked.await();
+				lock.obtainLock(wanted);
+				lock.releaseLock(wanted);
+				completed.incrementAndGet();
+			} catch (DeadlockException e) {
+				deadlocks.incrementAndGet();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				lock.releaseLock(held);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.sundy.axon.common.lock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class StripedIdentifierLockTest extends TestCase {
+
+	public void testStripeCountIsRoundedToPowerOfTwo() {
+		assertEquals(8, new StripedIdentifierLock(5).getStripeCount());
+		assertEquals(256, new StripedIdentifierLock().getStripeCount());
+	}
+
+	public void testLockIsReentrant() {
+		StripedIdentifierLock lock = new StripedIdentifierLock();
+		lock.obtainLock("a");
+		lock.obtainLock("a");
+		lock.releaseLock("a");
+		assertTrue(lock.hasLock("a"));
+		lock.releaseLock("a");
+		assertFalse(lock.hasLock("a"));
+	}
+
+	public void testReleasingUnheldLockIsIllegal() {
+		try {
+			new StripedIdentifierLock().releaseLock("a");
+			fail("Expected IllegalLockUsageException");
+		} catch (IllegalLockUsageException e) {
+			// 预期的异常
+		}
+	}
+
+	public void testCollidingIdentifiersAreTrackedSeparately() {
+		StripedIdentifierLock lock = new StripedIdentifierLock(1);
+		lock.obtainLock("a");
+		assertTrue(lock.hasLock("a"));
+		assertFalse(lock.hasLock("b"));
+		try {
+			lock.releaseLock("b");
+			fail("Expected IllegalLockUsageException");
+		} catch (IllegalLockUsageException e) {
+			// 预期的异常
+		}
+		lock.obtainLock("b");
+		lock.releaseLock("a");
+		assertFalse(lock.hasLock("a"));
+		assertTrue(lock.hasLock("b"));
+		lock.releaseLock("b");
+		assertFalse(lock.hasLock("b"));
+	}
+
+	public void testLockExcludesOtherThreads() throws InterruptedException {
+		final StripedIdentifierLock lock = new StripedIdentifierLock();
+		final CountDownLatch obtained = new CountDownLatch(1);
+		lock.obtainLock("a");
+		Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				lock.obtainLock("a");
+				obtained.countDown();
+				lock.releaseLock("a");
+			}
+		});
+		other.start();
+		assertFalse(obtained.await(100, TimeUnit.MILLISECONDS));
+		lock.releaseLock("a");
+		assertTrue(obtained.await(5, TimeUnit.SECONDS));
+		other.join();
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.sundy.axon.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.domain.AggregateRoot;
+import com.sundy.axon.domain.DomainEventStream;
+import com.sundy.axon.domain.EventRegistrationCallback;
+import com.sundy.axon.domain.SimpleDomainEventStream;
+import com.sundy.axon.unitofwork.CurrentUnitOfWork;
+import com.sundy.axon.unitofwork.DefaultUnitOfWork;
+import com.sundy.axon.unitofwork.UnitOfWork;
+
+public class OptimisticLockingRepositoryTest extends TestCase {
+
+	private InMemoryRepository repository;
+
+	@Override
+	protected void setUp() throws Exception {
+		repository = new InMemoryRepository();
+		UnitOfWork uow = DefaultUnitOfWork.startAndGet();
+		repository.add(new StubAggregate("id", null));
+		uow.commit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		while (CurrentUnitOfWork.isStarted()) {
+			CurrentUnitOfWork.get().rollback();
+		}
+	}
+
+	public void testSaveIncrementsStoredVersion() {
+		assertEquals(Long.valueOf(0), repository.storedVersion("id"));
+		UnitOfWork uow = DefaultUnitOfWork.startAndGet();
+		assertEquals(Long.valueOf(0), repository.load("id").getVersion());
+		uow.commit();
+		assertEquals(Long.valueOf(1), repository.storedVersion("id"));
+	}
+
+	public void testConcurrentModificationIsDetected() throws Exception {
+		UnitOfWork uow = DefaultUnitOfWork.startAndGet();
+		repository.load("id");
+		// 另一个线程在此期间加载并保存了同一个聚合
+		Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				UnitOfWork otherUow = DefaultUnitOfWork.startAndGet();
+				repository.load("id");
+				otherUow.commit();
+			}
+		});
+		other.start();
+		other.join();
+		assertEquals(Long.valueOf(1), repository.storedVersion("id"));
+		try {
+			uow.commit();
+			fail("Expected ConflictingModificationException");
+		} catch (ConflictingModificationException e) {
+			// 预期的异常
+		}
+		assertFalse(CurrentUnitOfWork.isStarted());
+		assertEquals(Long.valueOf(1), repository.storedVersion("id"));
+	}
+
+	public void testAddingExistingAggregateIsAConflict() {
+		UnitOfWork uow = DefaultUnitOfWork.startAndGet();
+		repository.add(new StubAggregate("id", null));
+		try {
+			uow.commit();
+			fail("Expected ConflictingModificationException");
+		} catch (ConflictingModificationException e) {
+			// 预期的异常
+		}
+	}
+
+	public void testUnexpectedVersionIsRejectedOnLoad() {
+		DefaultUnitOfWork.startAndGet();
+		try {
+			repository.load("id", 5L);
+			fail("Expected ConflictingModificationException");
+		} catch (ConflictingModificationException e) {
+			// 预期的异常
+		}
+	}
+
+	public void testDeleteChecksVersion() {
+		UnitOfWork uow = DefaultUnitOfWork.startAndGet();
+		repository.load("id").deleted = true;
+		uow.commit();
+		assertNull(repository.storedVersion("id"));
+	}
+
+	private static class InMemoryRepository extends OptimisticLockingRepository<StubAggregate> {
+
+		private final Map<Object, Long> versions = new HashMap<Object, Long>();
+
+		private InMemoryRepository() {
+			super(StubAggregate.class);
+		}
+
+		private synchronized Long storedVersion(Object identifier) {
+			return versions.get(identifier);
+		}
+
+		@Override
+		protected synchronized StubAggregate doLoad(Object aggregateIdentifier, Long expectedVersion) {
+			Long version = versions.get(aggregateIdentifier);
+			if (version == null) {
+				throw new AggregateNotFoundException(aggregateIdentifier, "Aggregate not found");
+			}
+			return new StubAggregate((String) aggregateIdentifier, version);
+		}
+
+		@Override
+		protected synchronized boolean doSaveIfUnchanged(StubAggregate aggregate, Long loadedVersion) {
+			Long stored = versions.get(aggregate.getIdentifier());
+			if (loadedVersion == null ? stored != null : !loadedVersion.equals(stored)) {
+				return false;
+			}
+			versions.put(aggregate.getIdentifier(), loadedVersion == null ? 0 : loadedVersion + 1);
+			return true;
+		}
+
+		@Override
+		protected synchronized boolean doDeleteIfUnchanged(StubAggregate aggregate, Long loadedVersion) {
+			return versions.remove(aggregate.getIdentifier(), loadedVersion);
+		}
+	}
+
+	private static class StubAggregate implements AggregateRoot<String> {
+
+		private final String identifier;
+		private final Long version;
+		private boolean deleted;
+
+		private StubAggregate(String identifier, Long version) {
+			this.identifier = identifier;
+			this.version = version;
+		}
+
+		@Override
+		public String getIdentifier() {
+			return identifier;
+		}
+
+		@Override
+		public void commitEvents() {
+		}
+
+		@Override
+		public int getUncommittedEventCount() {
+			return 0;
+		}
+
+		@Override
+		public DomainEventStream getUncommittedEvents() {
+			return SimpleDomainEventStream.emptyStream();
+		}
+
+		@Override
+		public Long getVersion() {
+			return version;
+		}
+
+		@Override
+		public boolean isDeleted() {
+			return deleted;
+		}
+
+		@Override
+		public void addEventRegistrationCallback(EventRegistrationCallback eventRegistrationCallback) {
+		}
+	}
+
+}
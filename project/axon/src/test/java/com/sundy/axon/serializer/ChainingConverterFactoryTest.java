@@ -0,0 +1,84 @@
+package com.sundy.axon.serializer;
+
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+public class ChainingConverterFactoryTest extends TestCase {
+
+	private ChainingConverterFactory converterFactory;
+
+	@Override
+	protected void setUp() throws Exception {
+		converterFactory = new ChainingConverterFactory();
+	}
+
+	public void testRegisteringConverterInvalidatesMemoizedMiss() {
+		assertFalse(converterFactory.hasConverter(Integer.class, String.class));
+		converterFactory.registerConverter(new IntegerToStringConverter());
+		assertTrue(converterFactory.hasConverter(Integer.class, String.class));
+		assertEquals("42", converterFactory.getConverter(Integer.class, String.class).convert(42));
+	}
+
+	public void testRegisteringConverterMakesMemoizedMissChainable() {
+		assertFalse(converterFactory.hasConverter(Integer.class, InputStream.class));
+		converterFactory.registerConverter(new IntegerToStringConverter());
+		assertTrue(converterFactory.hasConverter(Integer.class, InputStream.class));
+	}
+
+	public void testRegisteredConverterReplacesMemoizedConverter() {
+		ContentTypeConverter<byte[], String> before = converterFactory.getConverter(byte[].class, String.class);
+		assertSame(before, converterFactory.getConverter(byte[].class, String.class));
+		UpperCaseConverter registered = new UpperCaseConverter();
+		converterFactory.registerConverter(registered);
+		assertSame(registered, converterFactory.getConverter(byte[].class, String.class));
+	}
+
+	public void testMissingConverterIsReportedOnEveryLookup() {
+		for (int i = 0; i < 2; i++) {
+			try {
+				converterFactory.getConverter(Integer.class, String.class);
+				fail("Expected CannotConvertBetweenTypesException");
+			} catch (CannotConvertBetweenTypesException e) {
+				// 预期的异常
+			}
+		}
+	}
+
+	private static class IntegerToStringConverter extends AbstractContentTypeConverter<Integer, String> {
+
+		@Override
+		public Class<Integer> expectedSourceType() {
+			return Integer.class;
+		}
+
+		@Override
+		public Class<String> targetType() {
+			return String.class;
+		}
+
+		@Override
+		public String convert(Integer original) {
+			return original.toString();
+		}
+	}
+
+	private static class UpperCaseConverter extends AbstractContentTypeConverter<byte[], String> {
+
+		@Override
+		public Class<byte[]> expectedSourceType() {
+			return byte[].class;
+		}
+
+		@Override
+		public Class<String> targetType() {
+			return String.class;
+		}
+
+		@Override
+		public String convert(byte[] original) {
+			return new String(original).toUpperCase();
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.sundy.axon.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.domain.GenericEventMessage;
+
+public class SerializedObjectHolderTest extends TestCase {
+
+	private CountingSerializer serializer;
+	private SerializedObjectHolder holder;
+
+	@Override
+	protected void setUp() throws Exception {
+		serializer = new CountingSerializer(new JavaSerializer());
+		holder = new SerializedObjectHolder(GenericEventMessage.asEventMessage("payload"));
+	}
+
+	public void testInputStreamIsCreatedFromMemoizedByteArray() throws IOException {
+		SerializedObject<InputStream> first = holder.serializePayload(serializer, InputStream.class);
+		SerializedObject<InputStream> second = holder.serializePayload(serializer, InputStream.class);
+		assertEquals(1, serializer.serializations);
+		assertNotSame("A stream can only be read once and must not be shared", first.getData(), second.getData());
+
+		SerializedObject<byte[]> bytes = holder.serializePayload(serializer, byte[].class);
+		assertEquals(1, serializer.serializations);
+		assertSame(bytes, holder.serializePayload(serializer, byte[].class));
+		assertTrue(Arrays.equals(bytes.getData(), read(first.getData())));
+		assertTrue(Arrays.equals(bytes.getData(), read(second.getData())));
+	}
+
+	public void testInputStreamReusesByteArraySerializedEarlier() throws IOException {
+		SerializedObject<byte[]> bytes = holder.serializePayload(serializer, byte[].class);
+		SerializedObject<InputStream> stream = holder.serializePayload(serializer, InputStream.class);
+		assertEquals(1, serializer.serializations);
+		assertTrue(Arrays.equals(bytes.getData(), read(stream.getData())));
+	}
+
+	public void testPayloadAndMetaDataAreMemoizedSeparately() {
+		holder.serializePayload(serializer, byte[].class);
+		holder.serializeMetaData(serializer, byte[].class);
+		holder.serializeMetaData(serializer, InputStream.class);
+		assertEquals(2, serializer.serializations);
+	}
+
+	private static byte[] read(InputStream stream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int read;
+		while ((read = stream.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static class CountingSerializer implements Serializer {
+
+		private final Serializer delegate;
+		private int serializations;
+
+		private CountingSerializer(Serializer delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public <T> SerializedObject<T> serialize(Object object, Class<T> expectedRepresentation) {
+			serializations++;
+			return delegate.serialize(object, expectedRepresentation);
+		}
+
+		@Override
+		public <T> boolean canSerializeTo(Class<T> expectedRepresentation) {
+			return delegate.canSerializeTo(expectedRepresentation);
+		}
+
+		@Override
+		public <S, T> T deserialize(SerializedObject<S> serializedObject) {
+			return delegate.deserialize(serializedObject);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public Class classForType(SerializedType type) {
+			return delegate.classForType(type);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public SerializedType typeForClass(Class type) {
+			return delegate.typeForClass(type);
+		}
+
+		@Override
+		public ConverterFactory getConverterFactory() {
+			return delegate.getConverterFactory();
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.sundy.axon.serializer;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.upcasting.AbstractSingleEntryUpcaster;
+import com.sundy.axon.upcasting.SimpleUpcasterChain;
+import com.sundy.axon.upcasting.Upcaster;
+import com.sundy.axon.upcasting.UpcastingContext;
+
+public class SerializedTypeCacheTest extends TestCase {
+
+	public void testTypesForClassesAreCanonical() {
+		SerializedTypeCache cache = new SerializedTypeCache(new SerialVersionUIDRevisionResolver());
+		SerializedType type = cache.typeForClass(String.class);
+		assertSame(type, cache.typeForClass(String.class));
+		assertSame(type, SerializedTypeCache.intern(new SimpleSerializedType(type.getName(), type.getRevision())));
+	}
+
+	public void testDeserializedTypesAreInterned() {
+		SerializedType type = SerializedTypeCache.intern("com.example.Deserialized", "1");
+		SerializedObject<byte[]> serialized = new SimpleSerializedObject<byte[]>(new byte[0], byte[].class,
+				"com.example.Deserialized", "1");
+		assertSame(type, serialized.getType());
+	}
+
+	public void testUpcastTypesAreInterned() {
+		SimpleUpcasterChain chain = new SimpleUpcasterChain(new ChainingConverterFactory(),
+				Arrays.<Upcaster>asList(new RenamingUpcaster()));
+		SerializedType upcastType = SerializedTypeCache.intern("com.example.New", "2");
+		List<SerializedObject> upcast = chain.upcast(new SimpleSerializedObject<byte[]>(new byte[0], byte[].class,
+				"com.example.Old", "1"), null);
+		assertEquals(1, upcast.size());
+		assertSame(upcastType, upcast.get(0).getType());
+	}
+
+	public void testUnusedTypesAreReleased() throws InterruptedException {
+		WeakReference<SerializedType> reference = new WeakReference<SerializedType>(
+				SerializedTypeCache.intern("com.example.Unused", "1"));
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("The intern table must not keep unused types reachable", reference.get());
+		assertEquals(new SimpleSerializedType("com.example.Unused", "1"),
+				SerializedTypeCache.intern("com.example.Unused", "1"));
+	}
+
+	private static class RenamingUpcaster extends AbstractSingleEntryUpcaster<byte[]> {
+
+		public boolean canUpcast(SerializedType serializedType) {
+			return "com.example.Old".equals(serializedType.getName());
+		}
+
+		public Class<byte[]> expectedRepresentationType() {
+			return byte[].class;
+		}
+
+		@Override
+		protected byte[] doUpcast(SerializedObject<byte[]> intermediateRepresentation, UpcastingContext context) {
+			return intermediateRepresentation.getData();
+		}
+
+		@Override
+		protected SerializedType doUpcast(SerializedType serializedType) {
+			return new SimpleSerializedType("com.example.New", "2");
+		}
+	}
+
+}
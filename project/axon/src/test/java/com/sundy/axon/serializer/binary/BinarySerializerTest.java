@@ -0,0 +1,167 @@
+package com.sundy.axon.serializer.binary;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.domain.MetaData;
+import com.sundy.axon.serializer.SerializationException;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+
+public class BinarySerializerTest extends TestCase {
+
+	private static boolean snareInitialized;
+
+	private BinarySerializer serializer;
+
+	@Override
+	protected void setUp() {
+		serializer = new BinarySerializer();
+		serializer.addAllowedType(Event.class);
+		serializer.addAllowedType(Status.class);
+		serializer.addAllowedType(Decoy.class);
+	}
+
+	public void testRoundTripOfObjectGraph() {
+		Event event = new Event("id", 42, Status.ACCEPTED);
+		event.tags.add("a");
+		event.tags.add("b");
+		event.amounts.put("total", new BigDecimal("12.50"));
+		event.sorted.addAll(Arrays.asList(3, 1, 2));
+		event.self = event;
+
+		Event copy = serializer.deserialize(serializer.serialize(event, byte[].class));
+
+		assertEquals("id", copy.id);
+		assertEquals(42, copy.sequence);
+		assertEquals(Status.ACCEPTED, copy.status);
+		assertEquals(event.tags, copy.tags);
+		assertEquals(event.amounts, copy.amounts);
+		assertEquals(event.sorted, copy.sorted);
+		assertEquals(event.uuid, copy.uuid);
+		assertTrue(Arrays.equals(event.values, copy.values));
+		assertSame("Cyclic references must be restored", copy, copy.self);
+	}
+
+	public void testRoundTripFromByteBuffer() {
+		Event event = new Event("id", 7, Status.REJECTED);
+		byte[] data = serializer.serialize(event, byte[].class).getData();
+		SerializedObject<ByteBuffer> serialized = new SimpleSerializedObject<ByteBuffer>(ByteBuffer.wrap(data),
+				ByteBuffer.class, serializer.typeForClass(Event.class));
+		Event copy = serializer.deserialize(serialized);
+		assertEquals(7, copy.sequence);
+		assertEquals(Status.REJECTED, copy.status);
+	}
+
+	public void testMetaDataIsAllowedByDefault() {
+		MetaData metaData = MetaData.from(Collections.<String, Object>singletonMap("user", "john"));
+		BinarySerializer defaultSerializer = new BinarySerializer();
+		MetaData copy = defaultSerializer.deserialize(defaultSerializer.serialize(metaData, byte[].class));
+		assertEquals(metaData, copy);
+	}
+
+	public void testTypesThatAreNotAllowedAreRejectedBeforeInitialization() {
+		SerializedObject<byte[]> serialized = serializer.serialize(new Decoy(), byte[].class);
+		byte[] data = replace(serialized.getData(), "$Decoy", "$Snare");
+		try {
+			serializer.deserialize(new SimpleSerializedObject<byte[]>(data, byte[].class, serialized.getType()));
+			fail("Expected the type to be rejected");
+		} catch (SerializationException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Snare"));
+		}
+		assertFalse("The rejected class must not be initialized", snareInitialized);
+	}
+
+	public void testJavaSerializedValuesAreFiltered() {
+		SerializedObject<byte[]> serialized = serializer.serialize(new Custom("value"), byte[].class);
+		try {
+			serializer.deserialize(serialized);
+			fail("Expected the type to be rejected");
+		} catch (SerializationException e) {
+			// 预期的异常
+		}
+		serializer.addAllowedPackage("com.sundy.axon.serializer.binary");
+		Custom copy = serializer.deserialize(serialized);
+		assertEquals("value", copy.value);
+	}
+
+	private static byte[] replace(byte[] data, String from, String to) {
+		byte[] source = from.getBytes();
+		byte[] target = to.getBytes();
+		byte[] result = data.clone();
+		for (int i = 0; i + source.length <= result.length; i++) {
+			boolean matches = true;
+			for (int j = 0; j < source.length && matches; j++) {
+				matches = result[i + j] == source[j];
+			}
+			if (matches) {
+				System.arraycopy(target, 0, result, i, target.length);
+			}
+		}
+		return result;
+	}
+
+	enum Status {
+		ACCEPTED, REJECTED
+	}
+
+	static class Event {
+
+		private final String id;
+		private final int sequence;
+		private final Status status;
+		private final List<String> tags = new ArrayList<String>();
+		private final Map<String, BigDecimal> amounts = new HashMap<String, BigDecimal>();
+		private final TreeSet<Integer> sorted = new TreeSet<Integer>();
+		private final UUID uuid = UUID.randomUUID();
+		private final long[] values = {1L, Long.MAX_VALUE, -3L};
+		private Event self;
+
+		Event(String id, int sequence, Status status) {
+			this.id = id;
+			this.sequence = sequence;
+			this.status = status;
+		}
+	}
+
+	static class Decoy {
+		private int value = 1;
+	}
+
+	static class Snare {
+		static {
+			snareInitialized = true;
+		}
+
+		private int value = 1;
+	}
+
+	static class Custom implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String value;
+
+		Custom(String value) {
+			this.value = value;
+		}
+
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			out.defaultWriteObject();
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.sundy.axon.serializer.json;
+
+import junit.framework.TestCase;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.sundy.axon.serializer.SerializationException;
+
+public class JacksonSerializerTest extends TestCase {
+
+	private JacksonSerializer serializer;
+
+	@Override
+	protected void setUp() throws Exception {
+		serializer = new JacksonSerializer();
+	}
+
+	public void testPooledBufferIsResetAfterFailedSerialization() {
+		try {
+			serializer.serialize(new FailingPayload(), byte[].class);
+			fail("Expected SerializationException");
+		} catch (SerializationException e) {
+			// 预期的异常
+		}
+		byte[] serialized = serializer.serialize(new Payload("value"), byte[].class).getData();
+		assertEquals("{\"name\":\"value\"}", new String(serialized));
+	}
+
+	public void testSerializedBytesAreNotSharedWithThePooledBuffer() {
+		byte[] first = serializer.serialize(new Payload("first"), byte[].class).getData();
+		serializer.serialize(new Payload("second"), byte[].class);
+		assertEquals("{\"name\":\"first\"}", new String(first));
+	}
+
+	public void testLargeSerializationDoesNotAffectLaterOnes() {
+		StringBuilder name = new StringBuilder();
+		while (name.length() < 2 * 1024 * 1024) {
+			name.append("0123456789");
+		}
+		Payload large = serializer.deserialize(serializer.serialize(new Payload(name.toString()), byte[].class));
+		assertEquals(name.length(), large.getName().length());
+		byte[] serialized = serializer.serialize(new Payload("small"), byte[].class).getData();
+		assertEquals("{\"name\":\"small\"}", new String(serialized));
+	}
+
+	public static class Payload {
+
+		private String name;
+
+		public Payload() {
+		}
+
+		public Payload(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * 写出第一个属性之后才失败，失败前的内容已经写入了缓冲区
+	 */
+	@JsonPropertyOrder({"name", "failing"})
+	public static class FailingPayload {
+
+		public String getName() {
+			return "partial";
+		}
+
+		public String getFailing() {
+			throw new IllegalStateException("cannot serialize");
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.sundy.axon.serializer.xml;
+
+import junit.framework.TestCase;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Namespace;
+import org.dom4j.QName;
+
+public class XmlConverterRoundTripTest extends TestCase {
+
+	private static final String NAMESPACE = "urn:example:events";
+
+	public void testDom4jToXomAndBack() {
+		org.dom4j.Document original = DocumentHelper.createDocument();
+		org.dom4j.Element root = original.addElement(new QName("event", new Namespace("ev", NAMESPACE)));
+		root.addAttribute("revision", "2");
+		root.addElement("name").setText("first & <second>");
+		root.addElement(new QName("amount", new Namespace("ev", NAMESPACE))).setText("42");
+
+		nu.xom.Document xom = new Dom4JToXomConverter().convert(original);
+		nu.xom.Element xomRoot = xom.getRootElement();
+		assertEquals("event", xomRoot.getLocalName());
+		assertEquals(NAMESPACE, xomRoot.getNamespaceURI());
+		assertEquals("2", xomRoot.getAttributeValue("revision"));
+		assertEquals("first & <second>", xomRoot.getFirstChildElement("name").getValue());
+		assertEquals("42", xomRoot.getFirstChildElement("amount", NAMESPACE).getValue());
+
+		org.dom4j.Document back = new XomToDom4JConverter().convert(xom);
+		assertEquals(original.getRootElement().asXML(), back.getRootElement().asXML());
+	}
+
+	public void testXomToDom4jAndBack() {
+		nu.xom.Element root = new nu.xom.Element("ev:event", NAMESPACE);
+		nu.xom.Element name = new nu.xom.Element("name");
+		name.appendChild("first & <second>");
+		root.appendChild(name);
+		nu.xom.Element amount = new nu.xom.Element("ev:amount", NAMESPACE);
+		amount.appendChild("42");
+		root.appendChild(amount);
+		nu.xom.Document original = new nu.xom.Document(root);
+
+		org.dom4j.Document dom4j = new XomToDom4JConverter().convert(original);
+		org.dom4j.Element dom4jRoot = dom4j.getRootElement();
+		assertEquals("event", dom4jRoot.getName());
+		assertEquals(NAMESPACE, dom4jRoot.getNamespaceURI());
+		assertEquals("first & <second>", dom4jRoot.element("name").getText());
+		assertEquals("", dom4jRoot.element("name").getNamespaceURI());
+		assertEquals("42", dom4jRoot.element(new QName("amount", new Namespace("ev", NAMESPACE))).getText());
+
+		nu.xom.Document back = new Dom4JToXomConverter().convert(dom4j);
+		assertEquals(original.toXML(), back.toXML());
+	}
+
+	public void testConvertersCanBeReusedAcrossDocuments() {
+		Dom4JToXomConverter converter = new Dom4JToXomConverter();
+		for (int i = 0; i < 3; i++) {
+			org.dom4j.Document document = DocumentHelper.createDocument();
+			document.addElement("event").setText(String.valueOf(i));
+			assertEquals(String.valueOf(i), converter.convert(document).getRootElement().getValue());
+		}
+	}
+
+}
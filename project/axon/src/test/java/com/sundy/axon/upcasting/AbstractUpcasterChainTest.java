@@ -0,0 +1,114 @@
+package com.sundy.axon.upcasting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.sundy.axon.serializer.ChainingConverterFactory;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+import com.sundy.axon.serializer.SimpleSerializedType;
+
+public class AbstractUpcasterChainTest extends TestCase {
+
+	private final TypeUpcaster toA2 = new TypeUpcaster("A", "1", type("A", "2"));
+	private final TypeUpcaster split = new TypeUpcaster("A", "2", type("B", "1"), type("C", "1"));
+	private final TypeUpcaster toC2 = new TypeUpcaster("C", "1", type("C", "2"));
+	private final TypeUpcaster unreachable = new TypeUpcaster("A", "1", type("X", "1"));
+
+	public void testUpcastersAreAppliedInChainOrder() {
+		UpcasterChain chain = chain(toA2, split, toC2, unreachable);
+		List<SerializedObject> result = chain.upcast(object("A", "1"), null);
+		assertEquals(2, result.size());
+		assertEquals(type("B", "1"), result.get(0).getType());
+		assertEquals("A/1>A/2>B/1", data(result.get(0)));
+		assertEquals(type("C", "2"), result.get(1).getType());
+		assertEquals("A/1>A/2>C/1>C/2", data(result.get(1)));
+	}
+
+	public void testEarlierUpcastersAreNotAppliedToUpcastResults() {
+		UpcasterChain chain = chain(toC2, split, toA2);
+		List<SerializedObject> result = chain.upcast(object("A", "1"), null);
+		assertEquals(1, result.size());
+		assertEquals(type("A", "2"), result.get(0).getType());
+	}
+
+	public void testTypesWithoutUpcastersAreReturnedAsIs() {
+		SerializedObject<byte[]> object = object("Z", "1");
+		List<SerializedObject> result = chain(toA2, split, toC2).upcast(object, null);
+		assertEquals(1, result.size());
+		assertSame(object, result.get(0));
+	}
+
+	public void testCanUpcastIsEvaluatedOncePerType() {
+		UpcasterChain chain = chain(toA2, split, toC2, unreachable);
+		chain.upcast(object("A", "1"), null);
+		int checks = toA2.checks + split.checks + toC2.checks + unreachable.checks;
+		chain.upcast(object("A", "1"), null);
+		chain.upcast(object("A", "1"), null);
+		assertEquals(checks, toA2.checks + split.checks + toC2.checks + unreachable.checks);
+	}
+
+	private static UpcasterChain chain(Upcaster... upcasters) {
+		return new SimpleUpcasterChain(new ChainingConverterFactory(), upcasters);
+	}
+
+	private static SerializedType type(String name, String revision) {
+		return new SimpleSerializedType(name, revision);
+	}
+
+	private static SerializedObject<byte[]> object(String name, String revision) {
+		return new SimpleSerializedObject<byte[]>((name + "/" + revision).getBytes(), byte[].class, name, revision);
+	}
+
+	private static String data(SerializedObject<?> object) {
+		return new String((byte[]) object.getData());
+	}
+
+	/**
+	 * 把一个类型转换为给定的类型，转换后的数据记录了经过的类型
+	 */
+	private static class TypeUpcaster implements Upcaster<byte[]> {
+
+		private final SerializedType source;
+		private final List<SerializedType> targets;
+		private int checks;
+
+		private TypeUpcaster(String name, String revision, SerializedType... targets) {
+			this.source = type(name, revision);
+			this.targets = Arrays.asList(targets);
+		}
+
+		@Override
+		public boolean canUpcast(SerializedType serializedType) {
+			checks++;
+			return source.equals(serializedType);
+		}
+
+		@Override
+		public Class<byte[]> expectedRepresentationType() {
+			return byte[].class;
+		}
+
+		@Override
+		public List<SerializedObject<?>> upcast(SerializedObject<byte[]> intermediateRepresentation,
+				List<SerializedType> expectedTypes, UpcastingContext context) {
+			List<SerializedObject<?>> result = new ArrayList<SerializedObject<?>>();
+			for (SerializedType expectedType : expectedTypes) {
+				String data = new String(intermediateRepresentation.getData()) + ">" + expectedType.getName() + "/"
+						+ expectedType.getRevision();
+				result.add(new SimpleSerializedObject<byte[]>(data.getBytes(), byte[].class, expectedType));
+			}
+			return result;
+		}
+
+		@Override
+		public List<SerializedType> upcast(SerializedType serializedType) {
+			return targets;
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.sundy.axon.upcasting;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.joda.time.DateTime;
+
+import com.sundy.axon.cache.TinyLfuCache;
+import com.sundy.axon.domain.MetaData;
+import com.sundy.axon.serializer.ChainingConverterFactory;
+import com.sundy.axon.serializer.JavaSerializer;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.Serializer;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+import com.sundy.axon.serializer.SimpleSerializedType;
+
+public class CachingUpcasterChainTest extends TestCase {
+
+	private final Serializer serializer = new JavaSerializer();
+	private final UpcastingContext context = new Context("event-1");
+	private TinyLfuCache cache;
+
+	@Override
+	protected void setUp() {
+		cache = new TinyLfuCache(100);
+	}
+
+	public void testCachedInputStreamResultCanBeReadRepeatedly() {
+		CachingUpcasterChain chain = new CachingUpcasterChain(new SimpleUpcasterChain(new ChainingConverterFactory(),
+				Arrays.<Upcaster>asList(new RevisionUpcaster())), cache, "1");
+
+		for (int read = 0; read < 3; read++) {
+			List<SerializedObject> upcast = chain.upcast(streamOf("payload"), context);
+			assertEquals(1, upcast.size());
+			assertEquals("2", upcast.get(0).getType().getRevision());
+			assertEquals("read " + read, "payload", serializer.deserialize(upcast.get(0)));
+		}
+		assertEquals(1, cache.size());
+	}
+
+	public void testObjectsWithoutUpcastersAreNotCached() {
+		CachingUpcasterChain chain = new CachingUpcasterChain(new SimpleUpcasterChain(new ChainingConverterFactory(),
+				Collections.<Upcaster>emptyList()), cache, "1");
+
+		for (int read = 0; read < 2; read++) {
+			SerializedObject<InputStream> serialized = streamOf("payload");
+			List<SerializedObject> upcast = chain.upcast(serialized, context);
+			assertSame(serialized, upcast.get(0));
+			assertEquals("payload", serializer.deserialize(upcast.get(0)));
+		}
+		assertEquals(0, cache.size());
+	}
+
+	private SerializedObject<InputStream> streamOf(String payload) {
+		SerializedObject<byte[]> serialized = serializer.serialize(payload, byte[].class);
+		return new SimpleSerializedObject<InputStream>(new ByteArrayInputStream(serialized.getData()),
+				InputStream.class, serialized.getType().getName(), "1");
+	}
+
+	/**
+	 * 只修改修订版本，数据原样传递
+	 */
+	private static class RevisionUpcaster implements Upcaster<InputStream> {
+
+		@Override
+		public boolean canUpcast(SerializedType serializedType) {
+			return "1".equals(serializedType.getRevision());
+		}
+
+		@Override
+		public Class<InputStream> expectedRepresentationType() {
+			return InputStream.class;
+		}
+
+		@Override
+		public List<SerializedObject<?>> upcast(SerializedObject<InputStream> intermediateRepresentation,
+				List<SerializedType> expectedTypes, UpcastingContext context) {
+			return Collections.<SerializedObject<?>>singletonList(new SimpleSerializedObject<InputStream>(
+					intermediateRepresentation.getData(), InputStream.class, expectedTypes.get(0)));
+		}
+
+		@Override
+		public List<SerializedType> upcast(SerializedType serializedType) {
+			return Collections.<SerializedType>singletonList(new SimpleSerializedType(serializedType.getName(), "2"));
+		}
+	}
+
+	private static class Context implements UpcastingContext {
+
+		private final String messageIdentifier;
+
+		private Context(String messageIdentifier) {
+			this.messageIdentifier = messageIdentifier;
+		}
+
+		@Override
+		public String getMessageIdentifier() {
+			return messageIdentifier;
+		}
+
+		@Override
+		public Object getAggregateIdentifier() {
+			return "aggregate";
+		}
+
+		@Override
+		public Long getSequenceNumber() {
+			return 0L;
+		}
+
+		@Override
+		public DateTime getTimestamp() {
+			return null;
+		}
+
+		@Override
+		public MetaData getMetaData() {
+			return MetaData.emptyInstance();
+		}
+	}
+
+}
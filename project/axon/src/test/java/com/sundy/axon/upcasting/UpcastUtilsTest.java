@@ -0,0 +1,159 @@
+package com.sundy.axon.upcasting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.joda.time.DateTime;
+
+import com.sundy.axon.domain.DomainEventMessage;
+import com.sundy.axon.domain.MetaData;
+import com.sundy.axon.serializer.ChainingConverterFactory;
+import com.sundy.axon.serializer.JavaSerializer;
+import com.sundy.axon.serializer.SerializedDomainEventData;
+import com.sundy.axon.serializer.SerializedObject;
+import com.sundy.axon.serializer.SerializedType;
+import com.sundy.axon.serializer.Serializer;
+import com.sundy.axon.serializer.SimpleSerializedObject;
+import com.sundy.axon.serializer.SimpleSerializedType;
+
+public class UpcastUtilsTest extends TestCase {
+
+	private final Serializer serializer = new JavaSerializer();
+	private ForkJoinPool pool;
+
+	@Override
+	protected void setUp() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@Override
+	protected void tearDown() {
+		pool.shutdownNow();
+	}
+
+	public void testParallelUpcastKeepsEntryAndUpcastOrder() {
+		List<SerializedDomainEventData> entries = new ArrayList<SerializedDomainEventData>();
+		for (int i = 0; i < 200; i++) {
+			entries.add(new Entry(i, serializer.serialize("event-" + i, byte[].class),
+					serializer.serialize(MetaData.emptyInstance(), byte[].class)));
+		}
+		UpcasterChain chain = new SimpleUpcasterChain(new ChainingConverterFactory(),
+				Arrays.<Upcaster>asList(new DuplicatingUpcaster()));
+
+		List<DomainEventMessage> events = UpcastUtils.upcastAndDeserialize(entries, null, serializer, chain, false,
+				pool, 8);
+
+		assertEquals(400, events.size());
+		for (int i = 0; i < 200; i++) {
+			for (int copy = 0; copy < 2; copy++) {
+				DomainEventMessage event = events.get(2 * i + copy);
+				assertEquals(i, event.getSequenceNumber());
+				assertEquals("event-" + i, event.getPayload());
+			}
+		}
+	}
+
+	public void testParallelUpcastMatchesSequentialUpcast() {
+		List<SerializedDomainEventData> entries = new ArrayList<SerializedDomainEventData>();
+		for (int i = 0; i < 50; i++) {
+			entries.add(new Entry(i, serializer.serialize("event-" + i, byte[].class),
+					serializer.serialize(MetaData.emptyInstance(), byte[].class)));
+		}
+		UpcasterChain chain = new SimpleUpcasterChain(new ChainingConverterFactory(),
+				Arrays.<Upcaster>asList(new DuplicatingUpcaster()));
+		List<Object> sequential = new ArrayList<Object>();
+		for (SerializedDomainEventData entry : entries) {
+			for (DomainEventMessage event : UpcastUtils.upcastAndDeserialize(entry, null, serializer, chain, false)) {
+				sequential.add(event.getPayload());
+			}
+		}
+		List<Object> parallel = new ArrayList<Object>();
+		for (DomainEventMessage event : UpcastUtils.upcastAndDeserialize(entries, null, serializer, chain, false,
+				pool, 4)) {
+			parallel.add(event.getPayload());
+		}
+		assertEquals(sequential, parallel);
+	}
+
+	/**
+	 * 把每个对象复制成两个修订版本不同的对象
+	 */
+	private static class DuplicatingUpcaster implements Upcaster<byte[]> {
+
+		@Override
+		public boolean canUpcast(SerializedType serializedType) {
+			return String.class.getName().equals(serializedType.getName());
+		}
+
+		@Override
+		public Class<byte[]> expectedRepresentationType() {
+			return byte[].class;
+		}
+
+		@Override
+		public List<SerializedObject<?>> upcast(SerializedObject<byte[]> intermediateRepresentation,
+				List<SerializedType> expectedTypes, UpcastingContext context) {
+			List<SerializedObject<?>> result = new ArrayList<SerializedObject<?>>();
+			for (SerializedType expectedType : expectedTypes) {
+				result.add(new SimpleSerializedObject<byte[]>(intermediateRepresentation.getData(), byte[].class,
+						expectedType));
+			}
+			return result;
+		}
+
+		@Override
+		public List<SerializedType> upcast(SerializedType serializedType) {
+			return Arrays.<SerializedType>asList(new SimpleSerializedType(serializedType.getName(), "1"),
+					new SimpleSerializedType(serializedType.getName(), "2"));
+		}
+	}
+
+	private static class Entry implements SerializedDomainEventData<byte[]> {
+
+		private final long sequenceNumber;
+		private final SerializedObject<byte[]> payload;
+		private final SerializedObject<byte[]> metaData;
+		private final DateTime timestamp = new DateTime();
+
+		private Entry(long sequenceNumber, SerializedObject<byte[]> payload, SerializedObject<byte[]> metaData) {
+			this.sequenceNumber = sequenceNumber;
+			this.payload = payload;
+			this.metaData = metaData;
+		}
+
+		@Override
+		public String getEventIdentifier() {
+			return "event-" + sequenceNumber;
+		}
+
+		@Override
+		public Object getAggregateIdentifier() {
+			return "aggregate";
+		}
+
+		@Override
+		public long getSequenceNumber() {
+			return sequenceNumber;
+		}
+
+		@Override
+		public DateTime getTimestamp() {
+			return timestamp;
+		}
+
+		@Override
+		public SerializedObject<byte[]> getMetaData() {
+			return metaData;
+		}
+
+		@Override
+		public SerializedObject<byte[]> getPayload() {
+			return payload;
+		}
+	}
+
+}